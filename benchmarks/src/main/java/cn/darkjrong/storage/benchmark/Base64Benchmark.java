@@ -0,0 +1,65 @@
+package cn.darkjrong.storage.benchmark;
+
+import cn.darkjrong.storage.utils.FileUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * base64 转换基准, inputStream2Base64、base2InputStream
+ *
+ * @author Rong.Jia
+ * @date 2020/06/23 09:35
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Base64Benchmark {
+
+    /**
+     * 数据大小, 单位字节
+     */
+    @Param({"1024", "65536", "1048576"})
+    private int size;
+
+    private byte[] data;
+    private String base64;
+    private byte[] buffer;
+
+    @Setup
+    public void setup() throws IOException {
+
+        this.data = new byte[size];
+        ThreadLocalRandom.current().nextBytes(data);
+        this.base64 = FileUtils.inputStream2Base64(new ByteArrayInputStream(data));
+        this.buffer = new byte[FileUtils.BUFFER_SIZE];
+    }
+
+    @Benchmark
+    public String inputStream2Base64() throws IOException {
+        return FileUtils.inputStream2Base64(new ByteArrayInputStream(data));
+    }
+
+    /**
+     * 包含读取解码后的流, 与实际上传时的用法一致
+     */
+    @Benchmark
+    public void base2InputStream(Blackhole blackhole) throws IOException {
+
+        try (InputStream in = FileUtils.base2InputStream(base64)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                blackhole.consume(read);
+            }
+        }
+    }
+
+}
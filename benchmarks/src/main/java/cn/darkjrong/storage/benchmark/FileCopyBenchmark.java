@@ -0,0 +1,68 @@
+package cn.darkjrong.storage.benchmark;
+
+import cn.darkjrong.storage.utils.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地文件基准, contentEquals、copyFile
+ *
+ * @author Rong.Jia
+ * @date 2020/06/23 09:50
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileCopyBenchmark {
+
+    /**
+     * 文件大小, 单位字节
+     */
+    @Param({"4096", "1048576", "16777216"})
+    private int size;
+
+    private Path dir;
+    private File source;
+    private File same;
+    private File target;
+
+    @Setup
+    public void setup() throws IOException {
+
+        byte[] data = new byte[size];
+        ThreadLocalRandom.current().nextBytes(data);
+
+        this.dir = Files.createTempDirectory("storage-benchmark");
+        this.source = Files.write(dir.resolve("source"), data).toFile();
+        this.same = Files.write(dir.resolve("same"), data).toFile();
+        this.target = dir.resolve("target").toFile();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir.toString());
+    }
+
+    /**
+     * 内容相同, 需比较全部数据
+     */
+    @Benchmark
+    public boolean contentEquals() throws IOException {
+        return FileUtils.contentEquals(source, same);
+    }
+
+    @Benchmark
+    public Path copyFile() throws IOException {
+        return FileUtils.copyFile(source.getPath(), target.getPath());
+    }
+
+}
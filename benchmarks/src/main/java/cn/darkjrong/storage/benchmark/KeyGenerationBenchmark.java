@@ -0,0 +1,66 @@
+package cn.darkjrong.storage.benchmark;
+
+import cn.darkjrong.storage.utils.KeyGenerator;
+import cn.darkjrong.storage.utils.TimeOrderedKeyGenerator;
+import cn.darkjrong.storage.utils.UUIDUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对象名生成基准
+ *
+ * @author Rong.Jia
+ * @date 2020/06/23 09:10
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyGenerationBenchmark {
+
+    private final KeyGenerator keyGenerator = TimeOrderedKeyGenerator.INSTANCE;
+
+    /**
+     * 上传路径使用的默认生成器
+     */
+    @Benchmark
+    public String timeOrdered() {
+        return keyGenerator.generate();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String timeOrderedContended() {
+        return keyGenerator.generate();
+    }
+
+    /**
+     * 对照: 原上传路径使用的生成方式
+     */
+    @Benchmark
+    public String uuidUtils() {
+        return UUIDUtils.uuid() + System.currentTimeMillis();
+    }
+
+    /**
+     * 对照: 不去除 "-" 的 UUID
+     */
+    @Benchmark
+    public String randomUuid() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * 多线程竞争下的生成吞吐量
+     */
+    @Benchmark
+    @Threads(4)
+    public String uuidUtilsContended() {
+        return UUIDUtils.uuid() + System.currentTimeMillis();
+    }
+
+}
@@ -0,0 +1,69 @@
+package cn.darkjrong.storage.benchmark;
+
+import cn.darkjrong.storage.utils.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 路径处理基准, normalize、extName、subPath
+ *
+ * @author Rong.Jia
+ * @date 2020/06/23 09:20
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathBenchmark {
+
+    /**
+     * 路径层级数
+     */
+    @Param({"2", "8", "32"})
+    private int depth;
+
+    private String path;
+    private String windowsPath;
+    private String dirPath;
+    private String fileName;
+
+    @Setup
+    public void setup() {
+
+        StringBuilder builder = new StringBuilder("/data/tmp");
+        StringBuilder windowsBuilder = new StringBuilder("C:\\data\\tmp");
+        for (int i = 0; i < depth; i++) {
+            builder.append("/dir").append(i).append("/./");
+            windowsBuilder.append("\\dir").append(i).append("\\..\\dir").append(i);
+        }
+
+        this.dirPath = "/data/tmp";
+        this.fileName = "file.part." + depth + ".jpeg";
+        this.path = builder.append(fileName).toString();
+        this.windowsPath = windowsBuilder.append('\\').append(fileName).toString();
+    }
+
+    @Benchmark
+    public String normalize() {
+        return FileUtils.normalize(path);
+    }
+
+    @Benchmark
+    public String normalizeWindows() {
+        return FileUtils.normalize(windowsPath);
+    }
+
+    @Benchmark
+    public String extName() {
+        return FileUtils.extName(fileName);
+    }
+
+    @Benchmark
+    public String subPath() {
+        return FileUtils.subPath(dirPath, path);
+    }
+
+}
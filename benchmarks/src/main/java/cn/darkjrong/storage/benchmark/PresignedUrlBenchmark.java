@@ -0,0 +1,71 @@
+package cn.darkjrong.storage.benchmark;
+
+import cn.darkjrong.storage.oss.OssClient;
+import com.aliyun.oss.OSS;
+import com.aliyun.oss.OSSClientBuilder;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 签名链接生成基准, 签名在本地完成, 不访问网络
+ *
+ * @author Rong.Jia
+ * @date 2020/06/23 10:05
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PresignedUrlBenchmark {
+
+    private static final String ENDPOINT = "oss-cn-hangzhou.aliyuncs.com";
+    private static final String INTRANET = "oss-cn-hangzhou-internal.aliyuncs.com";
+    private static final String BUCKET_NAME = "benchmark";
+
+    /**
+     * 是否开启签名链接缓存
+     */
+    @Param({"false", "true"})
+    private boolean urlCacheEnabled;
+
+    /**
+     * 是否替换内网域名
+     */
+    @Param({"0", "1"})
+    private int openIntranet;
+
+    private OSS oss;
+    private OssClient ossClient;
+
+    @Setup
+    public void setup() {
+
+        this.oss = new OSSClientBuilder().build(openIntranet == 1 ? INTRANET : ENDPOINT, "accessKeyId", "accessKeySecret");
+
+        this.ossClient = new OssClient(ENDPOINT, INTRANET, openIntranet);
+        ossClient.setUrlCacheEnabled(urlCacheEnabled);
+
+        Field field = ReflectionUtils.findField(OssClient.class, "oss");
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, ossClient, oss);
+
+        ossClient.afterPropertiesSet();
+    }
+
+    @TearDown
+    public void tearDown() {
+        ossClient.destroy();
+        oss.shutdown();
+    }
+
+    @Benchmark
+    public String getUrl() {
+        return ossClient.getUrl(BUCKET_NAME, "2020/06/23/benchmark.jpeg");
+    }
+
+}
@@ -0,0 +1,144 @@
+package cn.darkjrong.storage.benchmark.fdfs;
+
+import cn.darkjrong.spring.boot.autoconfigure.fdfs.FDfsAutoConfiguration;
+import cn.darkjrong.storage.fdfs.FastDFSClient;
+import com.github.tobato.fastdfs.domain.conn.FdfsConnectionPool;
+import com.github.tobato.fastdfs.domain.fdfs.FileInfo;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FastDFSClient 基准, 访问进程内 FastDFS 替身服务, 用于按数据调整 fdfs.pool.* 连接池参数
+ *
+ * 并发数通过 JMH 的 -t 参数指定, 每轮结束打印连接池借用等待时间,
+ * 如 java -jar benchmarks.jar FastDFSClientBenchmark -t 32 -p maxTotalPerKey=8,32
+ *
+ * @author Rong.Jia
+ * @date 2020/06/25 10:30
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class FastDFSClientBenchmark {
+
+    private static final String EXT_NAME = "bin";
+
+    /**
+     * 文件大小, 单位字节
+     */
+    @Param({"4096", "1048576", "16777216"})
+    private int fileSize;
+
+    /**
+     * fdfs.pool.max-total-per-key, 每个 tracker/storage 地址的最大连接数
+     */
+    @Param({"4", "20", "64"})
+    private int maxTotalPerKey;
+
+    /**
+     * fdfs.pool.max-total, 连接池最大数量
+     */
+    @Param({"200"})
+    private int maxTotal;
+
+    /**
+     * fdfs.pool.max-wait-millis, 连接耗尽时等待获取连接的最大毫秒数
+     */
+    @Param({"25000"})
+    private long maxWaitMillis;
+
+    private FastDfsStandInServer server;
+    private ConfigurableApplicationContext context;
+    private FastDFSClient fastDFSClient;
+    private FdfsConnectionPool pool;
+    private Path dir;
+    private byte[] data;
+    private File file;
+    private String filePath;
+
+    @Setup
+    public void setup() throws IOException {
+
+        this.dir = Files.createTempDirectory("fdfs-benchmark");
+        this.server = new FastDfsStandInServer("group1", dir.resolve("storage"));
+        server.start();
+
+        this.context = new SpringApplicationBuilder(FDfsAutoConfiguration.class)
+                .web(WebApplicationType.NONE)
+                .properties("fdfs.enabled=true",
+                        "fdfs.tracker-list=" + server.getTrackerAddress(),
+                        "fdfs.so-timeout=30000",
+                        "fdfs.pool.max-total=" + maxTotal,
+                        "fdfs.pool.max-total-per-key=" + maxTotalPerKey,
+                        "fdfs.pool.max-wait-millis=" + maxWaitMillis)
+                .run();
+        // 自动配置同时注册了 FDfsFactoryBean, 按名称获取
+        this.fastDFSClient = context.getBean("fastDFSClient", FastDFSClient.class);
+        this.pool = context.getBean(FdfsConnectionPool.class);
+
+        this.data = new byte[fileSize];
+        ThreadLocalRandom.current().nextBytes(data);
+        this.file = Files.write(dir.resolve("upload." + EXT_NAME), data).toFile();
+
+        this.filePath = fastDFSClient.uploadFile(data, EXT_NAME, Boolean.FALSE);
+    }
+
+    /**
+     * 连接池借用等待时间反映连接数是否不足
+     */
+    @TearDown(Level.Iteration)
+    public void printPoolStats() {
+        System.out.printf("%npool: active=%d, idle=%d, meanBorrowWait=%dms, maxBorrowWait=%dms, created=%d%n",
+                pool.getNumActive(), pool.getNumIdle(), pool.getMeanBorrowWaitTimeMillis(),
+                pool.getMaxBorrowWaitTimeMillis(), pool.getCreatedCount());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        server.close();
+        cn.darkjrong.storage.utils.FileUtils.deleteDirectory(dir.toString());
+    }
+
+    /**
+     * 上传后删除, 避免本地目录持续增长
+     */
+    @Benchmark
+    public Boolean uploadBytesAndDelete() {
+        return fastDFSClient.deleteFile(fastDFSClient.uploadFile(data, EXT_NAME, Boolean.FALSE));
+    }
+
+    @Benchmark
+    public Boolean uploadFileAndDelete() throws IOException {
+        return fastDFSClient.deleteFile(fastDFSClient.uploadFile(file, Boolean.FALSE));
+    }
+
+    @Benchmark
+    public byte[] downFile() throws IOException {
+        return fastDFSClient.downFile(filePath);
+    }
+
+    @Benchmark
+    public Long streamingDownFile() {
+        return fastDFSClient.downFile(filePath, NullOutputStream.NULL_OUTPUT_STREAM);
+    }
+
+    @Benchmark
+    public FileInfo findFileInfo() {
+        return fastDFSClient.findFileInfo(filePath);
+    }
+
+}
@@ -0,0 +1,350 @@
+package cn.darkjrong.storage.benchmark.fdfs;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * 进程内 FastDFS 替身服务, 同时提供 tracker 和 storage 端口, 文件保存在本地目录
+ *
+ * 支持 FastDFSClient 使用的协议子集:
+ *  tracker: 获取上传/下载/更新 storage, 连接检测
+ *  storage: 上传, 下载, 删除, 查询文件信息, 连接检测
+ *
+ * @author Rong.Jia
+ * @date 2020/06/25 09:20
+ */
+public class FastDfsStandInServer implements Closeable {
+
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    private static final int HEADER_LENGTH = 10;
+    private static final int GROUP_NAME_LENGTH = 16;
+    private static final int IP_ADDRESS_SIZE = 16;
+    private static final int LONG_LENGTH = 8;
+    private static final int EXT_NAME_LENGTH = 6;
+
+    private static final byte CMD_RESP = 100;
+    private static final byte CMD_ACTIVE_TEST = 111;
+    private static final byte CMD_QUIT = 82;
+
+    private static final byte TRACKER_QUERY_STORE_WITHOUT_GROUP_ONE = 101;
+    private static final byte TRACKER_QUERY_FETCH_ONE = 102;
+    private static final byte TRACKER_QUERY_UPDATE = 103;
+    private static final byte TRACKER_QUERY_STORE_WITH_GROUP_ONE = 104;
+
+    private static final byte STORAGE_UPLOAD_FILE = 11;
+    private static final byte STORAGE_DELETE_FILE = 12;
+    private static final byte STORAGE_DOWNLOAD_FILE = 14;
+    private static final byte STORAGE_QUERY_FILE_INFO = 22;
+
+    private static final byte STATUS_OK = 0;
+    private static final byte STATUS_ENOENT = 2;
+    private static final byte STATUS_EINVAL = 22;
+
+    private static final String HOST = "127.0.0.1";
+    private static final String STORE_PATH = "M00";
+
+    private final String group;
+    private final Path root;
+    private final ServerSocket trackerSocket;
+    private final ServerSocket storageSocket;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * 上传时计算的文件 crc32, 查询文件信息时不再读取文件
+     */
+    private final Map<String, Long> crc32s = new ConcurrentHashMap<>();
+
+    /**
+     * 创建替身服务, 使用随机端口
+     *
+     * @param group 组名
+     * @param root  文件保存目录
+     */
+    public FastDfsStandInServer(String group, Path root) throws IOException {
+        this(group, root, 0, 0);
+    }
+
+    /**
+     * 创建替身服务
+     *
+     * @param group       组名
+     * @param root        文件保存目录
+     * @param trackerPort tracker 端口, 0 为随机端口
+     * @param storagePort storage 端口, 0 为随机端口
+     */
+    public FastDfsStandInServer(String group, Path root, int trackerPort, int storagePort) throws IOException {
+        this.group = group;
+        this.root = root;
+        this.trackerSocket = new ServerSocket(trackerPort, 0, InetAddress.getByName(HOST));
+        this.storageSocket = new ServerSocket(storagePort, 0, InetAddress.getByName(HOST));
+    }
+
+    public void start() {
+        executor.execute(() -> accept(trackerSocket, this::tracker));
+        executor.execute(() -> accept(storageSocket, this::storage));
+    }
+
+    @Override
+    public void close() throws IOException {
+        trackerSocket.close();
+        storageSocket.close();
+        executor.shutdownNow();
+    }
+
+    /**
+     * fdfs.tracker-list 使用的 tracker 地址
+     *
+     * @return tracker 地址, 如 127.0.0.1:22122
+     */
+    public String getTrackerAddress() {
+        return HOST + ":" + trackerSocket.getLocalPort();
+    }
+
+    private void accept(ServerSocket serverSocket, Handler handler) {
+
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(Boolean.TRUE);
+                executor.execute(() -> serve(socket, handler));
+            } catch (IOException e) {
+                // 服务关闭
+            }
+        }
+    }
+
+    /**
+     * 连接池复用连接, 同一连接上循环处理请求, 直到客户端退出或断开
+     */
+    private void serve(Socket socket, Handler handler) {
+
+        try (Socket client = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(client.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(client.getOutputStream()))) {
+
+            while (true) {
+                long length;
+                try {
+                    length = in.readLong();
+                } catch (EOFException e) {
+                    return;
+                }
+                byte cmd = in.readByte();
+                in.readByte();
+
+                if (cmd == CMD_QUIT) {
+                    return;
+                }
+                if (cmd == CMD_ACTIVE_TEST) {
+                    IOUtils.skipFully(in, length);
+                    header(out, 0L, STATUS_OK);
+                } else {
+                    handler.handle(cmd, length, in, out);
+                }
+                out.flush();
+            }
+        } catch (SocketException e) {
+            // 客户端断开
+        } catch (IOException e) {
+            // 连接异常, 丢弃连接
+        }
+    }
+
+    private void tracker(byte cmd, long length, DataInputStream in, DataOutputStream out) throws IOException {
+
+        IOUtils.skipFully(in, length);
+
+        switch (cmd) {
+            case TRACKER_QUERY_STORE_WITHOUT_GROUP_ONE:
+            case TRACKER_QUERY_STORE_WITH_GROUP_ONE:
+                header(out, GROUP_NAME_LENGTH + IP_ADDRESS_SIZE - 1 + LONG_LENGTH + 1, STATUS_OK);
+                fixed(out, group, GROUP_NAME_LENGTH);
+                fixed(out, HOST, IP_ADDRESS_SIZE - 1);
+                out.writeLong(storageSocket.getLocalPort());
+                out.writeByte(0);
+                break;
+            case TRACKER_QUERY_FETCH_ONE:
+            case TRACKER_QUERY_UPDATE:
+                header(out, GROUP_NAME_LENGTH + IP_ADDRESS_SIZE - 1 + LONG_LENGTH, STATUS_OK);
+                fixed(out, group, GROUP_NAME_LENGTH);
+                fixed(out, HOST, IP_ADDRESS_SIZE - 1);
+                out.writeLong(storageSocket.getLocalPort());
+                break;
+            default:
+                header(out, 0L, STATUS_EINVAL);
+        }
+    }
+
+    private void storage(byte cmd, long length, DataInputStream in, DataOutputStream out) throws IOException {
+
+        switch (cmd) {
+            case STORAGE_UPLOAD_FILE:
+                upload(length, in, out);
+                break;
+            case STORAGE_DOWNLOAD_FILE:
+                download(length, in, out);
+                break;
+            case STORAGE_DELETE_FILE:
+                delete(length, in, out);
+                break;
+            case STORAGE_QUERY_FILE_INFO:
+                queryFileInfo(length, in, out);
+                break;
+            default:
+                IOUtils.skipFully(in, length);
+                header(out, 0L, STATUS_EINVAL);
+        }
+    }
+
+    /**
+     * 请求: store_path_index(1) + file_size(8) + ext_name(6) + 文件内容; 响应: group(16) + 文件名
+     */
+    private void upload(long length, DataInputStream in, DataOutputStream out) throws IOException {
+
+        in.readByte();
+        long fileSize = in.readLong();
+        String extName = readFixed(in, EXT_NAME_LENGTH);
+
+        String id = Long.toHexString(sequence.incrementAndGet()) + UUID.randomUUID().toString().replace("-", "");
+        String fileName = String.format("%s/%s/%s/%s", STORE_PATH, id.substring(0, 2), id.substring(2, 4), id)
+                + (extName.isEmpty() ? StringUtils.EMPTY : "." + extName);
+
+        File file = file(fileName);
+        Files.createDirectories(file.getParentFile().toPath());
+        CRC32 crc32 = new CRC32();
+        try (OutputStream fileOut = new BufferedOutputStream(new FileOutputStream(file))) {
+            IOUtils.copyLarge(new CheckedInputStream(in, crc32), fileOut, 0L, fileSize);
+        }
+        crc32s.put(file.getPath(), crc32.getValue());
+        IOUtils.skipFully(in, length - 1 - LONG_LENGTH - EXT_NAME_LENGTH - fileSize);
+
+        byte[] name = fileName.getBytes(CHARSET);
+        header(out, GROUP_NAME_LENGTH + name.length, STATUS_OK);
+        fixed(out, group, GROUP_NAME_LENGTH);
+        out.write(name);
+    }
+
+    /**
+     * 请求: offset(8) + bytes(8, 0 为到文件末尾) + group(16) + 文件名; 响应: 文件内容
+     */
+    private void download(long length, DataInputStream in, DataOutputStream out) throws IOException {
+
+        long offset = in.readLong();
+        long bytes = in.readLong();
+        File file = readFile(in, length - LONG_LENGTH * 2);
+
+        if (!file.isFile() || offset > file.length()) {
+            header(out, 0L, STATUS_ENOENT);
+            return;
+        }
+
+        long size = bytes == 0 ? file.length() - offset : Math.min(bytes, file.length() - offset);
+        header(out, size, STATUS_OK);
+        try (InputStream fileIn = new FileInputStream(file)) {
+            IOUtils.copyLarge(fileIn, out, offset, size);
+        }
+    }
+
+    /**
+     * 请求: group(16) + 文件名
+     */
+    private void delete(long length, DataInputStream in, DataOutputStream out) throws IOException {
+
+        File file = readFile(in, length);
+        crc32s.remove(file.getPath());
+        header(out, 0L, file.delete() ? STATUS_OK : STATUS_ENOENT);
+    }
+
+    /**
+     * 请求: group(16) + 文件名; 响应: file_size(8) + create_timestamp(8) + crc32(8) + source_ip(16)
+     */
+    private void queryFileInfo(long length, DataInputStream in, DataOutputStream out) throws IOException {
+
+        File file = readFile(in, length);
+        if (!file.isFile()) {
+            header(out, 0L, STATUS_ENOENT);
+            return;
+        }
+
+        header(out, LONG_LENGTH * 3 + IP_ADDRESS_SIZE, STATUS_OK);
+        out.writeLong(file.length());
+        out.writeLong(file.lastModified() / 1000);
+        out.writeLong(crc32s.getOrDefault(file.getPath(), 0L));
+        fixed(out, HOST, IP_ADDRESS_SIZE);
+    }
+
+    private File readFile(DataInputStream in, long length) throws IOException {
+
+        readFixed(in, GROUP_NAME_LENGTH);
+        byte[] name = new byte[(int) (length - GROUP_NAME_LENGTH)];
+        in.readFully(name);
+
+        return file(new String(name, CHARSET));
+    }
+
+    private File file(String fileName) {
+        return root.resolve(group).resolve(fileName).toFile();
+    }
+
+    private static void header(DataOutputStream out, long length, byte status) throws IOException {
+        out.writeLong(length);
+        out.writeByte(CMD_RESP);
+        out.writeByte(status);
+    }
+
+    private static void fixed(DataOutputStream out, String value, int length) throws IOException {
+        byte[] bytes = value.getBytes(CHARSET);
+        out.write(bytes, 0, Math.min(bytes.length, length));
+        for (int i = bytes.length; i < length; i++) {
+            out.writeByte(0);
+        }
+    }
+
+    private static String readFixed(DataInputStream in, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return StringUtils.substringBefore(new String(bytes, CHARSET), "\0");
+    }
+
+    /**
+     * 单独启动: java -cp benchmarks.jar cn.darkjrong.storage.benchmark.fdfs.FastDfsStandInServer [目录] [tracker端口] [storage端口]
+     */
+    public static void main(String[] args) throws IOException {
+
+        Path root = args.length > 0 ? new File(args[0]).toPath() : Files.createTempDirectory("fdfs-standin");
+        int trackerPort = args.length > 1 ? Integer.parseInt(args[1]) : 22122;
+        int storagePort = args.length > 2 ? Integer.parseInt(args[2]) : 23000;
+
+        FastDfsStandInServer server = new FastDfsStandInServer("group1", root, trackerPort, storagePort);
+        server.start();
+
+        System.out.println("FastDFS stand-in tracker listening on " + server.getTrackerAddress() + ", files in " + root);
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+
+        void handle(byte cmd, long length, DataInputStream in, DataOutputStream out) throws IOException;
+    }
+
+}
@@ -0,0 +1,152 @@
+package cn.darkjrong.storage.benchmark.oss;
+
+import cn.darkjrong.storage.oss.OssClient;
+import cn.darkjrong.storage.oss.OssStandInServer;
+import com.aliyun.oss.ClientBuilderConfiguration;
+import com.aliyun.oss.OSS;
+import com.aliyun.oss.OSSClientBuilder;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.ReflectionUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * OssClient 上传下载基准, 访问进程内 OSS 替身服务, 不依赖网络
+ *
+ * 并发数通过 JMH 的 -t 参数指定, 如 java -jar benchmarks.jar OssClientBenchmark -t 8 -p objectSize=16777216
+ *
+ * @author Rong.Jia
+ * @date 2020/06/24 10:40
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class OssClientBenchmark {
+
+    private static final String BUCKET_NAME = "benchmark";
+    private static final String DOWNLOAD_OBJECT = "download/object";
+
+    /**
+     * 上传对象名循环使用, 避免替身服务内存持续增长
+     */
+    private static final int UPLOAD_OBJECTS = 16;
+
+    /**
+     * 文件大小, 单位字节, 不小于 multipartThreshold 时走分片上传
+     */
+    @Param({"65536", "1048576", "16777216"})
+    private long objectSize;
+
+    /**
+     * 每个请求的注入延迟, 单位毫秒
+     */
+    @Param({"0", "20"})
+    private long latencyMillis;
+
+    /**
+     * 单连接带宽, 单位字节/秒, 0 为不限速
+     */
+    @Param({"0", "104857600"})
+    private long bandwidth;
+
+    /**
+     * 分片上传、分段下载的并发数
+     */
+    @Param({"5"})
+    private int taskNum;
+
+    /**
+     * 分片上传阈值及分片大小, 单位字节
+     */
+    @Param({"5242880"})
+    private long partSize;
+
+    private OssStandInServer server;
+    private OSS oss;
+    private OssClient ossClient;
+    private Path dir;
+    private File file;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup
+    public void setup() throws IOException {
+
+        this.server = new OssStandInServer(0, latencyMillis, bandwidth);
+        server.createBucket(BUCKET_NAME);
+        server.start();
+
+        ClientBuilderConfiguration configuration = new ClientBuilderConfiguration();
+        configuration.setSLDEnabled(Boolean.TRUE);
+        configuration.setMaxConnections(1024);
+        this.oss = new OSSClientBuilder().build(server.getEndpoint(), "accessKeyId", "accessKeySecret", configuration);
+
+        this.ossClient = new OssClient(server.getEndpoint(), null, 0);
+        ossClient.setTaskNum(taskNum);
+        ossClient.setDownloadTaskNum(taskNum);
+        ossClient.setPartSize(partSize);
+        ossClient.setDownloadPartSize(partSize);
+        ossClient.setMultipartThreshold(partSize);
+
+        Field field = ReflectionUtils.findField(OssClient.class, "oss");
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, ossClient, oss);
+        ossClient.afterPropertiesSet();
+
+        byte[] data = new byte[(int) objectSize];
+        ThreadLocalRandom.current().nextBytes(data);
+
+        this.dir = Files.createTempDirectory("oss-benchmark");
+        this.file = Files.write(dir.resolve("upload"), data).toFile();
+
+        ossClient.uploadObject(BUCKET_NAME, DOWNLOAD_OBJECT, file.toPath());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        ossClient.destroy();
+        oss.shutdown();
+        server.close();
+        cn.darkjrong.storage.utils.FileUtils.deleteDirectory(dir.toString());
+    }
+
+    /**
+     * 按大小自动选择普通上传或并发分片上传
+     */
+    @Benchmark
+    public String upload() throws IOException {
+        return ossClient.uploadObject(BUCKET_NAME, "upload/" + sequence.incrementAndGet() % UPLOAD_OBJECTS, file.toPath());
+    }
+
+    @Benchmark
+    public byte[] download() {
+        return ossClient.download(BUCKET_NAME, DOWNLOAD_OBJECT);
+    }
+
+    @Benchmark
+    public long streamingDownload() throws IOException {
+        return ossClient.download(BUCKET_NAME, DOWNLOAD_OBJECT, NullOutputStream.NULL_OUTPUT_STREAM);
+    }
+
+    @Benchmark
+    public File shardDownload() throws IOException {
+        File target = dir.resolve("download-" + sequence.incrementAndGet()).toFile();
+        try {
+            return ossClient.shardDownload(BUCKET_NAME, DOWNLOAD_OBJECT, target.getPath());
+        } finally {
+            target.delete();
+        }
+    }
+
+}
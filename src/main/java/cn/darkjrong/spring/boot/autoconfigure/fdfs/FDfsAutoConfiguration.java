@@ -1,13 +1,23 @@
 package cn.darkjrong.spring.boot.autoconfigure.fdfs;
 
+import cn.darkjrong.storage.cache.LocalFileCache;
+import cn.darkjrong.storage.dedup.DedupIndex;
+import cn.darkjrong.storage.dedup.FileDedupIndex;
+import cn.darkjrong.storage.dedup.LruDedupIndex;
 import cn.darkjrong.storage.fdfs.FastDFSClient;
+import cn.darkjrong.storage.utils.KeyGenerator;
 import com.github.tobato.fastdfs.FdfsClientConfig;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
+import org.springframework.util.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
 
 /**
  * Fast DFS 加载配置
@@ -21,15 +31,61 @@ import org.springframework.context.annotation.Import;
 @ConditionalOnProperty(prefix = "fdfs", name = "enabled", havingValue = "true")
 public class FDfsAutoConfiguration {
 
+    private final FDfsProperties fDfsProperties;
+
+    public FDfsAutoConfiguration(FDfsProperties fDfsProperties) {
+        this.fDfsProperties = fDfsProperties;
+    }
+
     @Bean
     public FDfsFactoryBean fDfsFactoryBean() {
         return new FDfsFactoryBean();
     }
 
+    /**
+     * FastDFS 工具类
+     *
+     * @param keyGenerator 上传文件名生成器, 未注册时使用按时间排序的默认实现
+     * @param dedupIndex 上传去重索引, 开启去重且未注册时按 fdfs.dedup 配置创建
+     * @return FastDFS 工具类
+     * @throws IOException 读取去重索引文件或本地缓存目录异常
+     */
     @Bean
-    public FastDFSClient fastDFSClient() {
-        return new FastDFSClient();
+    public FastDFSClient fastDFSClient(ObjectProvider<KeyGenerator> keyGenerator, ObjectProvider<DedupIndex> dedupIndex) throws IOException {
+        FastDFSClient fastDFSClient = new FastDFSClient();
+        keyGenerator.ifAvailable(fastDFSClient::setKeyGenerator);
+        fastDFSClient.setIntegrity(fDfsProperties.isIntegrity());
+
+        FDfsProperties.Dedup dedup = fDfsProperties.getDedup();
+        if (dedup.getEnabled()) {
+            DedupIndex index = dedupIndex.getIfAvailable();
+            fastDFSClient.setDedupIndex(index != null ? index : newDedupIndex(dedup));
+        }
+
+        FDfsProperties.FileCache fileCache = fDfsProperties.getFileCache();
+        if (fileCache.getEnabled()) {
+            fastDFSClient.setFileCache(newFileCache(fileCache));
+        }
+        return fastDFSClient;
     }
 
+    /**
+     * 创建去重索引, 配置了索引文件时持久化到本地文件
+     */
+    private static DedupIndex newDedupIndex(FDfsProperties.Dedup dedup) throws IOException {
+
+        if (StringUtils.isEmpty(dedup.getIndexFile())) {
+            return new LruDedupIndex(dedup.getMaxSize());
+        }
+
+        return new FileDedupIndex(new File(dedup.getIndexFile()), dedup.getMaxSize());
+    }
+
+    /**
+     * 创建下载文件的本地磁盘缓存, 扫描缓存目录重建索引
+     */
+    private static LocalFileCache newFileCache(FDfsProperties.FileCache fileCache) throws IOException {
+        return new LocalFileCache(new File(fileCache.getDir()), fileCache.getMaxBytes(), fileCache.getRevalidateInterval());
+    }
 
 }
@@ -1,5 +1,8 @@
 package cn.darkjrong.spring.boot.autoconfigure.fdfs;
 
+import cn.darkjrong.storage.cache.LocalFileCache;
+import cn.darkjrong.storage.dedup.LruDedupIndex;
+import cn.darkjrong.storage.utils.FileUtils;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 /**
@@ -17,6 +20,21 @@ public class FDfsProperties {
      */
     private String enabled = ENABLED;
 
+    /**
+     * 是否在上传下载时校验 CRC32
+     */
+    private boolean integrity;
+
+    /**
+     *  上传去重配置
+     */
+    private Dedup dedup = new Dedup();
+
+    /**
+     *  下载文件的本地磁盘缓存配置
+     */
+    private FileCache fileCache = new FileCache();
+
     public String getEnabled() {
         return enabled;
     }
@@ -24,4 +42,131 @@ public class FDfsProperties {
     public void setEnabled(String enabled) {
         this.enabled = enabled;
     }
+
+    public boolean isIntegrity() {
+        return integrity;
+    }
+
+    public void setIntegrity(boolean integrity) {
+        this.integrity = integrity;
+    }
+
+    public Dedup getDedup() {
+        return dedup;
+    }
+
+    public void setDedup(Dedup dedup) {
+        this.dedup = dedup;
+    }
+
+    public FileCache getFileCache() {
+        return fileCache;
+    }
+
+    public void setFileCache(FileCache fileCache) {
+        this.fileCache = fileCache;
+    }
+
+    /**
+     *  上传去重配置
+     */
+    public static class Dedup {
+
+        /**
+         *  是否开启上传去重, 默认false
+         */
+        private Boolean enabled = Boolean.FALSE;
+
+        /**
+         *  内存中最大索引条目数, 默认10000
+         */
+        private Integer maxSize = LruDedupIndex.DEFAULT_MAX_SIZE;
+
+        /**
+         *  索引持久化文件, 为空时只保存在内存
+         */
+        private String indexFile;
+
+        public Boolean getEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(Boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Integer getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(Integer maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public String getIndexFile() {
+            return indexFile;
+        }
+
+        public void setIndexFile(String indexFile) {
+            this.indexFile = indexFile;
+        }
+    }
+
+    /**
+     *  下载文件的本地磁盘缓存配置
+     */
+    public static class FileCache {
+
+        /**
+         *  是否开启本地缓存, 默认false
+         */
+        private Boolean enabled = Boolean.FALSE;
+
+        /**
+         *  缓存目录
+         */
+        private String dir = FileUtils.TMP_DIR + "/cache/fdfs";
+
+        /**
+         *  最大字节数, 默认1GB, 单个文件超过1/4时不缓存
+         */
+        private Long maxBytes = LocalFileCache.DEFAULT_MAX_BYTES;
+
+        /**
+         *  重新校验间隔, 单位毫秒, 默认0每次使用前向服务端确认版本
+         */
+        private Long revalidateInterval = 0L;
+
+        public Boolean getEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(Boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDir() {
+            return dir;
+        }
+
+        public void setDir(String dir) {
+            this.dir = dir;
+        }
+
+        public Long getMaxBytes() {
+            return maxBytes;
+        }
+
+        public void setMaxBytes(Long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        public Long getRevalidateInterval() {
+            return revalidateInterval;
+        }
+
+        public void setRevalidateInterval(Long revalidateInterval) {
+            this.revalidateInterval = revalidateInterval;
+        }
+    }
 }
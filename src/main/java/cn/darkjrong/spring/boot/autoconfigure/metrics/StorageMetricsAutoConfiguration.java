@@ -0,0 +1,30 @@
+package cn.darkjrong.spring.boot.autoconfigure.metrics;
+
+import cn.darkjrong.storage.metrics.StorageMetricsPostProcessor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 存储操作指标自动配置, 存在 MeterRegistry 时生效
+ * @author Rong.Jia
+ * @date 2020/06/22 11:02
+ */
+@Configuration
+@ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+@ConditionalOnBean(type = "io.micrometer.core.instrument.MeterRegistry")
+@AutoConfigureAfter(name = {
+        "org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration",
+        "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration"})
+public class StorageMetricsAutoConfiguration {
+
+    @Bean
+    public static StorageMetricsPostProcessor storageMetricsPostProcessor(ObjectProvider<MeterRegistry> registry) {
+        return new StorageMetricsPostProcessor(registry);
+    }
+
+}
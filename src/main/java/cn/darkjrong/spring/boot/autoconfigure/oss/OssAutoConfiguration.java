@@ -1,12 +1,27 @@
 package cn.darkjrong.spring.boot.autoconfigure.oss;
 
+import cn.darkjrong.storage.cache.LocalFileCache;
+import cn.darkjrong.storage.dedup.DedupIndex;
+import cn.darkjrong.storage.dedup.FileDedupIndex;
+import cn.darkjrong.storage.dedup.LruDedupIndex;
+import cn.darkjrong.storage.oss.AsyncOssClient;
+import cn.darkjrong.storage.oss.HashPrefixObjectKeyLayout;
+import cn.darkjrong.storage.oss.ObjectKeyLayout;
 import cn.darkjrong.storage.oss.OssClient;
+import cn.darkjrong.storage.oss.PlainObjectKeyLayout;
+import cn.darkjrong.storage.oss.ReactiveOssClient;
+import cn.darkjrong.storage.utils.KeyGenerator;
 import com.aliyun.oss.OSS;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
 
 /**
  * 阿里云oss 自动配置
@@ -32,10 +47,130 @@ public class OssAutoConfiguration {
         return factoryBean;
     }
 
+    /**
+     * oss 工具类
+     *
+     * @param keyGenerator 上传文件名生成器, 未注册时使用按时间排序的默认实现
+     * @param objectKeyLayout 上传对象名布局, 未注册时按 aliyun.oss.key-layout 配置创建
+     * @param dedupIndex 上传去重索引, 开启去重且未注册时按 aliyun.oss.dedup 配置创建
+     * @return oss 工具类
+     * @throws IOException 读取去重索引文件或本地缓存目录异常
+     */
     @Bean
-    public OssClient ossClient() {
+    public OssClient ossClient(ObjectProvider<KeyGenerator> keyGenerator, ObjectProvider<ObjectKeyLayout> objectKeyLayout,
+                               ObjectProvider<DedupIndex> dedupIndex) throws IOException {
+
+        OssClient ossClient = new OssClient(properties.getEndpoint(), properties.getIntranet(), properties.getOpenIntranet());
+
+        ossClient.setListMaxKeys(properties.getListMaxKeys());
+        ossClient.setListParallelism(properties.getListParallelism());
+        keyGenerator.ifAvailable(ossClient::setKeyGenerator);
+        ossClient.setObjectKeyLayout(objectKeyLayout.getIfAvailable(this::objectKeyLayout));
+        ossClient.setIntegrityMode(properties.getIntegrity());
+
+        OssProperties.Dedup dedup = properties.getDedup();
+        if (dedup.getEnabled()) {
+            DedupIndex index = dedupIndex.getIfAvailable();
+            ossClient.setDedupIndex(index != null ? index : newDedupIndex(dedup));
+        }
+
+        OssProperties.FileCache fileCache = properties.getFileCache();
+        if (fileCache.getEnabled()) {
+            ossClient.setFileCache(newFileCache(fileCache));
+        }
+
+        OssProperties.Multipart multipart = properties.getMultipart();
+        ossClient.setPartSize(multipart.getPartSize());
+        ossClient.setMultipartThreshold(multipart.getThreshold());
+        ossClient.setTaskNum(multipart.getTaskNum());
+        ossClient.setCheckpointDir(multipart.getCheckpointDir());
+
+        OssProperties.Download download = properties.getDownload();
+        ossClient.setDownloadPartSize(download.getPartSize());
+        ossClient.setDownloadTaskNum(download.getTaskNum());
+        ossClient.setDownloadRetries(download.getRetries());
+
+        OssProperties.UrlCache urlCache = properties.getUrlCache();
+        ossClient.setUrlCacheEnabled(urlCache.getEnabled());
+        ossClient.setUrlCacheMaxSize(urlCache.getMaxSize());
+        ossClient.setUrlCacheRefreshRatio(urlCache.getRefreshRatio());
+
+        OssProperties.MetaCache metaCache = properties.getMetaCache();
+        ossClient.setMetaCacheEnabled(metaCache.getEnabled());
+        ossClient.setMetaCacheMaxSize(metaCache.getMaxSize());
+        ossClient.setMetaCacheTtl(metaCache.getTtl());
+        ossClient.setMetaCacheNegativeTtl(metaCache.getNegativeTtl());
+
+        OssProperties.BucketCache bucketCache = properties.getBucketCache();
+        ossClient.setBucketCacheEnabled(bucketCache.getEnabled());
+        ossClient.setBucketCacheTtl(bucketCache.getTtl());
+
+        OssProperties.Progress progress = properties.getProgress();
+        ossClient.setProgressRetention(progress.getRetention());
+        ossClient.setProgressLogInterval(progress.getLogInterval());
+
+        return ossClient;
+    }
+
+    /**
+     * 创建去重索引, 配置了索引文件时持久化到本地文件
+     */
+    private static DedupIndex newDedupIndex(OssProperties.Dedup dedup) throws IOException {
+
+        if (StringUtils.isEmpty(dedup.getIndexFile())) {
+            return new LruDedupIndex(dedup.getMaxSize());
+        }
+
+        return new FileDedupIndex(new File(dedup.getIndexFile()), dedup.getMaxSize());
+    }
+
+    /**
+     * 创建下载文件的本地磁盘缓存, 扫描缓存目录重建索引
+     */
+    private static LocalFileCache newFileCache(OssProperties.FileCache fileCache) throws IOException {
+        return new LocalFileCache(new File(fileCache.getDir()), fileCache.getMaxBytes(), fileCache.getRevalidateInterval());
+    }
+
+    private ObjectKeyLayout objectKeyLayout() {
+
+        OssProperties.KeyLayout keyLayout = properties.getKeyLayout();
+        if (OssProperties.KeyLayout.HASH_PREFIX.equalsIgnoreCase(keyLayout.getType())) {
+            return new HashPrefixObjectKeyLayout(keyLayout.getPrefixLength());
+        }
+
+        return PlainObjectKeyLayout.INSTANCE;
+    }
+
+    /**
+     * 异步工具类, 使用独立的有界线程池, 与 OssClient 内部分片、下载线程池互不占用
+     *
+     * @param ossClient oss 工具类
+     * @return 异步工具类
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "aliyun.oss.async", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public AsyncOssClient asyncOssClient(OssClient ossClient) {
+
+        OssProperties.Async async = properties.getAsync();
+        return new AsyncOssClient(ossClient, async.getCorePoolSize(), async.getMaxPoolSize(), async.getQueueCapacity());
+    }
+
+    /**
+     * 响应式工具类, 引入 reactor-core 时生效
+     */
+    @Configuration
+    @ConditionalOnClass(name = "reactor.core.publisher.Flux")
+    @ConditionalOnProperty(prefix = "aliyun.oss.reactive", name = "enabled", havingValue = "true", matchIfMissing = true)
+    static class ReactiveConfiguration {
+
+        @Bean
+        public ReactiveOssClient reactiveOssClient(OssProperties properties, OssClient ossClient) {
 
-        return new OssClient(properties.getEndpoint(), properties.getIntranet(), properties.getOpenIntranet());
+            OssProperties.Multipart multipart = properties.getMultipart();
+            OssProperties.Reactive reactive = properties.getReactive();
+            return new ReactiveOssClient(ossClient, multipart.getPartSize(), multipart.getTaskNum(),
+                    reactive.getThreadCap(), reactive.getQueuedTaskCap());
+        }
     }
 
 }
@@ -1,6 +1,15 @@
 package cn.darkjrong.spring.boot.autoconfigure.oss;
 
+import cn.darkjrong.storage.cache.LocalFileCache;
+import cn.darkjrong.storage.dedup.LruDedupIndex;
+import cn.darkjrong.storage.oss.AsyncOssClient;
+import cn.darkjrong.storage.oss.HashPrefixObjectKeyLayout;
+import cn.darkjrong.storage.oss.IntegrityMode;
+import cn.darkjrong.storage.oss.OssClient;
+import cn.darkjrong.storage.oss.ReactiveOssClient;
+import cn.darkjrong.storage.utils.FileUtils;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.Assert;
 
 /**
  * 阿里云oss 配置文件
@@ -42,6 +51,76 @@ public class OssProperties {
      */
     private String enabled = ENABLED;
 
+    /**
+     *  分片上传配置
+     */
+    private Multipart multipart = new Multipart();
+
+    /**
+     *  分段下载配置
+     */
+    private Download download = new Download();
+
+    /**
+     *  签名链接缓存配置
+     */
+    private UrlCache urlCache = new UrlCache();
+
+    /**
+     *  文件元信息缓存配置
+     */
+    private MetaCache metaCache = new MetaCache();
+
+    /**
+     *  存储空间状态缓存配置
+     */
+    private BucketCache bucketCache = new BucketCache();
+
+    /**
+     *  异步操作线程池配置
+     */
+    private Async async = new Async();
+
+    /**
+     *  响应式接口调度器配置
+     */
+    private Reactive reactive = new Reactive();
+
+    /**
+     *  上传对象名布局配置
+     */
+    private KeyLayout keyLayout = new KeyLayout();
+
+    /**
+     *  传输进度配置
+     */
+    private Progress progress = new Progress();
+
+    /**
+     *  上传下载的数据校验方式: none/crc64/md5/all, 默认none
+     */
+    private IntegrityMode integrity = IntegrityMode.NONE;
+
+    /**
+     *  上传去重配置
+     */
+    private Dedup dedup = new Dedup();
+
+    /**
+     *  下载文件的本地磁盘缓存配置
+     */
+    private FileCache fileCache = new FileCache();
+
+    /**
+     *  分页列举每页文件数, 最大1000
+     */
+    private Integer listMaxKeys = 1000;
+
+    /**
+     *  并发列举线程数, 每次列举使用独立线程池, 默认5
+     */
+    private Integer listParallelism = OssClient.DEFAULT_TASK_NUM;
+
     public String getEndpoint() {
         return endpoint;
     }
@@ -89,4 +168,635 @@ public class OssProperties {
     public void setEnabled(String enabled) {
         this.enabled = enabled;
     }
+
+    public Multipart getMultipart() {
+        return multipart;
+    }
+
+    public void setMultipart(Multipart multipart) {
+        this.multipart = multipart;
+    }
+
+    public Download getDownload() {
+        return download;
+    }
+
+    public void setDownload(Download download) {
+        this.download = download;
+    }
+
+    public UrlCache getUrlCache() {
+        return urlCache;
+    }
+
+    public void setUrlCache(UrlCache urlCache) {
+        this.urlCache = urlCache;
+    }
+
+    public MetaCache getMetaCache() {
+        return metaCache;
+    }
+
+    public void setMetaCache(MetaCache metaCache) {
+        this.metaCache = metaCache;
+    }
+
+    public BucketCache getBucketCache() {
+        return bucketCache;
+    }
+
+    public void setBucketCache(BucketCache bucketCache) {
+        this.bucketCache = bucketCache;
+    }
+
+    public Async getAsync() {
+        return async;
+    }
+
+    public void setAsync(Async async) {
+        this.async = async;
+    }
+
+    public Reactive getReactive() {
+        return reactive;
+    }
+
+    public void setReactive(Reactive reactive) {
+        this.reactive = reactive;
+    }
+
+    public KeyLayout getKeyLayout() {
+        return keyLayout;
+    }
+
+    public void setKeyLayout(KeyLayout keyLayout) {
+        this.keyLayout = keyLayout;
+    }
+
+    public Progress getProgress() {
+        return progress;
+    }
+
+    public void setProgress(Progress progress) {
+        this.progress = progress;
+    }
+
+    public IntegrityMode getIntegrity() {
+        return integrity;
+    }
+
+    public void setIntegrity(IntegrityMode integrity) {
+        this.integrity = integrity;
+    }
+
+    public Dedup getDedup() {
+        return dedup;
+    }
+
+    public void setDedup(Dedup dedup) {
+        this.dedup = dedup;
+    }
+
+    public FileCache getFileCache() {
+        return fileCache;
+    }
+
+    public void setFileCache(FileCache fileCache) {
+        this.fileCache = fileCache;
+    }
+
+    public Integer getListMaxKeys() {
+        return listMaxKeys;
+    }
+
+    public void setListMaxKeys(Integer listMaxKeys) {
+        this.listMaxKeys = listMaxKeys;
+    }
+
+    public Integer getListParallelism() {
+        return listParallelism;
+    }
+
+    public void setListParallelism(Integer listParallelism) {
+        this.listParallelism = listParallelism;
+    }
+
+    /**
+     *  分片上传配置
+     */
+    public static class Multipart {
+
+        /**
+         *  分片大小, 单位字节, 默认5MB
+         */
+        private Long partSize = OssClient.DEFAULT_PART_SIZE;
+
+        /**
+         *  分片上传阈值, 不小于该大小的文件自动使用分片上传, 默认10MB
+         */
+        private Long threshold = OssClient.DEFAULT_MULTIPART_THRESHOLD;
+
+        /**
+         *  分片上传并发数, 默认5
+         */
+        private Integer taskNum = OssClient.DEFAULT_TASK_NUM;
+
+        /**
+         *  断点续传记录目录
+         */
+        private String checkpointDir = OssClient.DEFAULT_CHECKPOINT_DIR;
+
+        public Long getPartSize() {
+            return partSize;
+        }
+
+        public void setPartSize(Long partSize) {
+            this.partSize = partSize;
+        }
+
+        public Long getThreshold() {
+            return threshold;
+        }
+
+        public void setThreshold(Long threshold) {
+            this.threshold = threshold;
+        }
+
+        public Integer getTaskNum() {
+            return taskNum;
+        }
+
+        public void setTaskNum(Integer taskNum) {
+            this.taskNum = taskNum;
+        }
+
+        public String getCheckpointDir() {
+            return checkpointDir;
+        }
+
+        public void setCheckpointDir(String checkpointDir) {
+            this.checkpointDir = checkpointDir;
+        }
+    }
+
+    /**
+     *  分段下载配置
+     */
+    public static class Download {
+
+        /**
+         *  分段大小, 单位字节, 默认5MB
+         */
+        private Long partSize = OssClient.DEFAULT_PART_SIZE;
+
+        /**
+         *  分段下载并发数, 默认5
+         */
+        private Integer taskNum = OssClient.DEFAULT_TASK_NUM;
+
+        /**
+         *  分段失败重试次数, 默认3
+         */
+        private Integer retries = OssClient.DEFAULT_DOWNLOAD_RETRIES;
+
+        public Long getPartSize() {
+            return partSize;
+        }
+
+        public void setPartSize(Long partSize) {
+            this.partSize = partSize;
+        }
+
+        public Integer getTaskNum() {
+            return taskNum;
+        }
+
+        public void setTaskNum(Integer taskNum) {
+            this.taskNum = taskNum;
+        }
+
+        public Integer getRetries() {
+            return retries;
+        }
+
+        public void setRetries(Integer retries) {
+            this.retries = retries;
+        }
+    }
+
+    /**
+     *  签名链接缓存配置
+     */
+    public static class UrlCache {
+
+        /**
+         *  是否开启, 默认false
+         */
+        private Boolean enabled = Boolean.FALSE;
+
+        /**
+         *  最大缓存条数, 默认10000
+         */
+        private Integer maxSize = OssClient.DEFAULT_CACHE_MAX_SIZE;
+
+        /**
+         *  链接有效期过去该比例后重新签名, 取值 (0, 1), 默认0.5
+         */
+        private Double refreshRatio = OssClient.DEFAULT_URL_CACHE_REFRESH_RATIO;
+
+        public Boolean getEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(Boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Integer getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(Integer maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public Double getRefreshRatio() {
+            return refreshRatio;
+        }
+
+        public void setRefreshRatio(Double refreshRatio) {
+            Assert.isTrue(refreshRatio != null && refreshRatio > 0 && refreshRatio < 1, "'refreshRatio' must be between 0 and 1 (exclusive)");
+            this.refreshRatio = refreshRatio;
+        }
+    }
+
+    /**
+     *  文件元信息缓存配置
+     */
+    public static class MetaCache {
+
+        /**
+         *  是否开启, 默认false
+         */
+        private Boolean enabled = Boolean.FALSE;
+
+        /**
+         *  最大缓存条数, 默认10000
+         */
+        private Integer maxSize = OssClient.DEFAULT_CACHE_MAX_SIZE;
+
+        /**
+         *  元信息过期时间, 单位毫秒, 默认60秒
+         */
+        private Long ttl = OssClient.DEFAULT_META_CACHE_TTL;
+
+        /**
+         *  文件不存在的过期时间, 单位毫秒, 默认10秒
+         */
+        private Long negativeTtl = OssClient.DEFAULT_META_CACHE_NEGATIVE_TTL;
+
+        public Boolean getEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(Boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Integer getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(Integer maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public Long getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Long ttl) {
+            this.ttl = ttl;
+        }
+
+        public Long getNegativeTtl() {
+            return negativeTtl;
+        }
+
+        public void setNegativeTtl(Long negativeTtl) {
+            this.negativeTtl = negativeTtl;
+        }
+    }
+
+    /**
+     *  存储空间状态缓存配置
+     */
+    public static class BucketCache {
+
+        /**
+         *  是否开启, 默认false
+         */
+        private Boolean enabled = Boolean.FALSE;
+
+        /**
+         *  过期时间, 单位毫秒, 默认5分钟
+         */
+        private Long ttl = OssClient.DEFAULT_BUCKET_CACHE_TTL;
+
+        public Boolean getEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(Boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Long getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Long ttl) {
+            this.ttl = ttl;
+        }
+    }
+
+    /**
+     *  异步操作线程池配置
+     */
+    public static class Async {
+
+        /**
+         *  是否开启, 默认true
+         */
+        private Boolean enabled = Boolean.TRUE;
+
+        /**
+         *  核心线程数, 默认8
+         */
+        private Integer corePoolSize = AsyncOssClient.DEFAULT_CORE_POOL_SIZE;
+
+        /**
+         *  最大线程数, 默认32
+         */
+        private Integer maxPoolSize = AsyncOssClient.DEFAULT_MAX_POOL_SIZE;
+
+        /**
+         *  等待队列容量, 默认1000
+         */
+        private Integer queueCapacity = AsyncOssClient.DEFAULT_QUEUE_CAPACITY;
+
+        public Boolean getEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(Boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Integer getCorePoolSize() {
+            return corePoolSize;
+        }
+
+        public void setCorePoolSize(Integer corePoolSize) {
+            this.corePoolSize = corePoolSize;
+        }
+
+        public Integer getMaxPoolSize() {
+            return maxPoolSize;
+        }
+
+        public void setMaxPoolSize(Integer maxPoolSize) {
+            this.maxPoolSize = maxPoolSize;
+        }
+
+        public Integer getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(Integer queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    /**
+     *  响应式接口调度器配置
+     */
+    public static class Reactive {
+
+        /**
+         *  是否开启, 默认true, 需引入 reactor-core
+         */
+        private Boolean enabled = Boolean.TRUE;
+
+        /**
+         *  调度器最大线程数, 默认32
+         */
+        private Integer threadCap = ReactiveOssClient.DEFAULT_THREAD_CAP;
+
+        /**
+         *  调度器等待任务数, 默认1000
+         */
+        private Integer queuedTaskCap = ReactiveOssClient.DEFAULT_QUEUED_TASK_CAP;
+
+        public Boolean getEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(Boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Integer getThreadCap() {
+            return threadCap;
+        }
+
+        public void setThreadCap(Integer threadCap) {
+            this.threadCap = threadCap;
+        }
+
+        public Integer getQueuedTaskCap() {
+            return queuedTaskCap;
+        }
+
+        public void setQueuedTaskCap(Integer queuedTaskCap) {
+            this.queuedTaskCap = queuedTaskCap;
+        }
+    }
+
+    /**
+     *  上传对象名布局配置
+     */
+    public static class KeyLayout {
+
+        /**
+         *  目录/文件名
+         */
+        public static final String PLAIN = "plain";
+
+        /**
+         *  哈希前缀/目录/文件名
+         */
+        public static final String HASH_PREFIX = "hash-prefix";
+
+        /**
+         *  布局类型, plain 或 hash-prefix, 默认plain
+         */
+        private String type = PLAIN;
+
+        /**
+         *  hash-prefix 布局的前缀长度(十六进制位数), 1 - 8, 默认2
+         */
+        private Integer prefixLength = HashPrefixObjectKeyLayout.DEFAULT_PREFIX_LENGTH;
+
+        public String getType() {
+            return type;
+        }
+
+        public void setType(String type) {
+            this.type = type;
+        }
+
+        public Integer getPrefixLength() {
+            return prefixLength;
+        }
+
+        public void setPrefixLength(Integer prefixLength) {
+            this.prefixLength = prefixLength;
+        }
+    }
+
+    /**
+     *  传输进度配置
+     */
+    public static class Progress {
+
+        /**
+         *  结束的传输进度保留时间, 单位毫秒, 默认10分钟
+         */
+        private Long retention = OssClient.DEFAULT_PROGRESS_RETENTION;
+
+        /**
+         *  进度日志最小间隔, 单位毫秒, 默认0不输出
+         */
+        private Long logInterval = 0L;
+
+        public Long getRetention() {
+            return retention;
+        }
+
+        public void setRetention(Long retention) {
+            this.retention = retention;
+        }
+
+        public Long getLogInterval() {
+            return logInterval;
+        }
+
+        public void setLogInterval(Long logInterval) {
+            this.logInterval = logInterval;
+        }
+    }
+
+    /**
+     *  上传去重配置
+     */
+    public static class Dedup {
+
+        /**
+         *  是否开启上传去重, 默认false
+         */
+        private Boolean enabled = Boolean.FALSE;
+
+        /**
+         *  内存中最大索引条目数, 默认10000
+         */
+        private Integer maxSize = LruDedupIndex.DEFAULT_MAX_SIZE;
+
+        /**
+         *  索引持久化文件, 为空时只保存在内存
+         */
+        private String indexFile;
+
+        public Boolean getEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(Boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Integer getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(Integer maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public String getIndexFile() {
+            return indexFile;
+        }
+
+        public void setIndexFile(String indexFile) {
+            this.indexFile = indexFile;
+        }
+    }
+
+    /**
+     *  下载文件的本地磁盘缓存配置
+     */
+    public static class FileCache {
+
+        /**
+         *  是否开启本地缓存, 默认false
+         */
+        private Boolean enabled = Boolean.FALSE;
+
+        /**
+         *  缓存目录
+         */
+        private String dir = FileUtils.TMP_DIR + "/cache/oss";
+
+        /**
+         *  最大字节数, 默认1GB, 单个文件超过1/4时不缓存
+         */
+        private Long maxBytes = LocalFileCache.DEFAULT_MAX_BYTES;
+
+        /**
+         *  重新校验间隔, 单位毫秒, 默认0每次使用前向服务端确认版本
+         */
+        private Long revalidateInterval = 0L;
+
+        public Boolean getEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(Boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDir() {
+            return dir;
+        }
+
+        public void setDir(String dir) {
+            this.dir = dir;
+        }
+
+        public Long getMaxBytes() {
+            return maxBytes;
+        }
+
+        public void setMaxBytes(Long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        public Long getRevalidateInterval() {
+            return revalidateInterval;
+        }
+
+        public void setRevalidateInterval(Long revalidateInterval) {
+            this.revalidateInterval = revalidateInterval;
+        }
+    }
 }
@@ -0,0 +1,467 @@
+package cn.darkjrong.storage.cache;
+
+import cn.darkjrong.storage.dedup.ContentDigest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * 本地磁盘读穿缓存, 按字节数限制容量, 超过容量时淘汰最久未访问的文件
+ *
+ * 每个条目由数据文件(.data)和元信息文件(.meta: 大小、版本、键)组成, 均先写临时文件再重命名;
+ * 先提交数据文件再提交元信息文件, 启动时扫描目录重建索引, 缺少元信息或大小不一致的文件视为未完成的写入删除
+ *
+ * 版本由调用方定义(如 ETag), 条目在重新校验间隔内直接使用, 超过间隔后由调用方向服务端确认版本
+ *
+ * @author Rong.Jia
+ * @date 2020/07/01 09:30
+ */
+public class LocalFileCache {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalFileCache.class);
+
+    /**
+     * 默认容量 1GB
+     */
+    public static final long DEFAULT_MAX_BYTES = 1024L * 1024 * 1024;
+
+    private static final String DATA_SUFFIX = ".data";
+    private static final String META_SUFFIX = ".meta";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    /**
+     * 单个文件最多占用容量的比例, 避免一个大文件挤出全部热点文件
+     */
+    private static final int MAX_ENTRY_RATIO = 4;
+
+    /**
+     * 边写入缓存边写入目标通道时的缓冲区大小
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path dir;
+    private final long maxBytes;
+    private final long revalidateInterval;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private long totalBytes;
+
+    /**
+     * 构造缓存, 扫描缓存目录重建索引
+     *
+     * @param dir                缓存目录
+     * @param maxBytes           最大字节数
+     * @param revalidateInterval 重新校验间隔, 单位毫秒, 0 表示每次使用前都校验
+     * @throws IOException 缓存目录读写异常
+     */
+    public LocalFileCache(File dir, long maxBytes, long revalidateInterval) throws IOException {
+        this.dir = dir.toPath();
+        this.maxBytes = maxBytes;
+        this.revalidateInterval = revalidateInterval;
+
+        Files.createDirectories(this.dir);
+        rebuild();
+    }
+
+    /**
+     * 文件大小是否适合缓存
+     *
+     * @param size 文件大小, 未知时为 -1
+     * @return true/false
+     */
+    public boolean fits(long size) {
+        return size >= 0 && size <= maxBytes / MAX_ENTRY_RATIO;
+    }
+
+    /**
+     * 获取缓存的版本
+     *
+     * @param key 键
+     * @return 版本, 不存在时返回null
+     */
+    public synchronized String getVersion(String key) {
+        Entry entry = entries.get(key);
+        return entry == null ? null : entry.version;
+    }
+
+    /**
+     * 是否在重新校验间隔内, 可不经服务端确认直接使用
+     *
+     * @param key 键
+     * @return true/false
+     */
+    public synchronized boolean isFresh(String key) {
+        Entry entry = entries.get(key);
+        return entry != null && System.currentTimeMillis() - entry.validatedAt < revalidateInterval;
+    }
+
+    /**
+     * 服务端确认版本未变化, 重新计算校验间隔
+     *
+     * @param key 键
+     */
+    public synchronized void validated(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.validatedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 打开缓存文件, 打开后即使被淘汰也可继续读取
+     *
+     * @param key     键
+     * @param version 版本, 与缓存的版本不一致时视为未命中
+     * @return 文件通道, 未命中返回null
+     * @throws IOException 打开文件异常
+     */
+    public synchronized FileChannel open(String key, String version) throws IOException {
+
+        Entry entry = entries.get(key);
+        if (entry == null || !entry.version.equals(version)) {
+            return null;
+        }
+
+        Path data = dataPath(entry.name);
+        try {
+            FileChannel channel = FileChannel.open(data, StandardOpenOption.READ);
+            hitCount.incrementAndGet();
+
+            // 访问时间用于重启后恢复淘汰顺序
+            data.toFile().setLastModified(System.currentTimeMillis());
+            return channel;
+        } catch (NoSuchFileException e) {
+            remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * 写入缓存, 读取输入流到结尾, 不关闭输入流
+     *
+     * @param key         键
+     * @param version     版本
+     * @param inputStream 文件内容
+     * @return 新写入文件的通道
+     * @throws IOException 写入异常
+     */
+    public FileChannel put(String key, String version, InputStream inputStream) throws IOException {
+
+        missCount.incrementAndGet();
+
+        String name = ContentDigest.sha256Hex(key.getBytes(UTF_8));
+        Path tmpData = createTempData(name);
+        try {
+            long size = Files.copy(inputStream, tmpData, StandardCopyOption.REPLACE_EXISTING);
+            return commit(key, name, version, size, tmpData, Boolean.TRUE);
+        } finally {
+            Files.deleteIfExists(tmpData);
+        }
+    }
+
+    /**
+     * 写入缓存的同时写入目标通道, 读取输入流到结尾, 不关闭输入流和目标通道
+     *
+     * 数据边读取边写入目标通道, 不等待整个文件落盘; 读取完成后调用校验, 通过后才提交到缓存
+     *
+     * @param key         键
+     * @param version     版本
+     * @param inputStream 文件内容
+     * @param target      目标通道
+     * @param validator   提交前的校验, 抛出异常时丢弃已写入的数据, 为空时不校验
+     * @return 写入目标通道的字节数
+     * @throws IOException 读取或写入异常
+     */
+    public long put(String key, String version, InputStream inputStream, WritableByteChannel target, Runnable validator) throws IOException {
+
+        missCount.incrementAndGet();
+
+        String name = ContentDigest.sha256Hex(key.getBytes(UTF_8));
+        Path tmpData = createTempData(name);
+        try {
+            long size = 0;
+            try (FileChannel data = FileChannel.open(tmpData, StandardOpenOption.WRITE)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int length;
+                while ((length = inputStream.read(buffer)) != -1) {
+                    write(ByteBuffer.wrap(buffer, 0, length), data);
+                    write(ByteBuffer.wrap(buffer, 0, length), target);
+                    size += length;
+                }
+            }
+
+            if (validator != null) {
+                validator.run();
+            }
+
+            commit(key, name, version, size, tmpData, Boolean.FALSE);
+            return size;
+        } finally {
+            Files.deleteIfExists(tmpData);
+        }
+    }
+
+    private Path createTempData(String name) throws IOException {
+        Path parent = dataPath(name).getParent();
+        Files.createDirectories(parent);
+        return Files.createTempFile(parent, name, DATA_SUFFIX + TMP_SUFFIX);
+    }
+
+    /**
+     * 写入元信息后将临时数据文件提交为缓存条目, 先提交数据文件再提交元信息文件
+     *
+     * @param open 是否打开提交后的数据文件, 在淘汰前打开避免被立即删除
+     * @return 数据文件通道, 不打开时返回null
+     */
+    private FileChannel commit(String key, String name, String version, long size, Path tmpData, boolean open) throws IOException {
+
+        Path tmpMeta = Files.createTempFile(dataPath(name).getParent(), name, META_SUFFIX + TMP_SUFFIX);
+        try {
+            try (Writer writer = Files.newBufferedWriter(tmpMeta, UTF_8)) {
+                writer.write(size + "\n" + version + "\n" + key);
+            }
+
+            synchronized (this) {
+                remove(key);
+
+                move(tmpData, dataPath(name));
+                move(tmpMeta, metaPath(name));
+
+                entries.put(key, new Entry(key, name, version, size, System.currentTimeMillis()));
+                totalBytes += size;
+
+                FileChannel channel = open ? FileChannel.open(dataPath(name), StandardOpenOption.READ) : null;
+                evict();
+                return channel;
+            }
+        } finally {
+            Files.deleteIfExists(tmpMeta);
+        }
+    }
+
+    private static void write(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * 移除缓存
+     *
+     * @param key 键
+     */
+    public synchronized void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            totalBytes -= entry.size;
+            delete(entry.name);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * 命中次数, 从缓存读取的次数
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * 未命中次数, 从服务端下载并写入缓存的次数
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * 将文件通道的全部内容写入目标通道, 不关闭通道
+     *
+     * @param channel 文件通道
+     * @param target  目标通道
+     * @return 写入的字节数
+     * @throws IOException 写入异常
+     */
+    public static long transferTo(FileChannel channel, WritableByteChannel target) throws IOException {
+
+        long size = channel.size();
+        long position = 0;
+        while (position < size) {
+            position += channel.transferTo(position, size - position, target);
+        }
+
+        return position;
+    }
+
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            iterator.remove();
+            totalBytes -= entry.size;
+            delete(entry.name);
+        }
+    }
+
+    /**
+     * 扫描缓存目录重建索引, 按数据文件的修改时间恢复访问顺序
+     */
+    private void rebuild() throws IOException {
+
+        List<Path> metas = new ArrayList<>();
+        List<Path> orphans = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(dir, 2)) {
+            paths.filter(Files::isRegularFile).forEach(path -> {
+                String fileName = path.getFileName().toString();
+                if (fileName.endsWith(META_SUFFIX)) {
+                    metas.add(path);
+                } else if (fileName.endsWith(TMP_SUFFIX)) {
+                    orphans.add(path);
+                }
+            });
+        }
+
+        for (Path orphan : orphans) {
+            Files.deleteIfExists(orphan);
+        }
+
+        List<Entry> loaded = new ArrayList<>();
+        for (Path meta : metas) {
+            String fileName = meta.getFileName().toString();
+            String name = fileName.substring(0, fileName.length() - META_SUFFIX.length());
+            Entry entry = readMeta(name);
+            if (entry == null) {
+                delete(name);
+            } else {
+                loaded.add(entry);
+            }
+        }
+
+        loaded.sort(Comparator.comparingLong(entry -> entry.lastAccess));
+        for (Entry entry : loaded) {
+            entries.put(entry.key, entry);
+            totalBytes += entry.size;
+        }
+
+        // 删除只有数据文件、没有元信息文件的未完成写入
+        try (Stream<Path> paths = Files.walk(dir, 2)) {
+            paths.filter(path -> path.getFileName().toString().endsWith(DATA_SUFFIX))
+                    .filter(path -> !Files.exists(metaPath(nameOf(path))))
+                    .forEach(path -> path.toFile().delete());
+        }
+
+        evict();
+        log.info("Local file cache {} loaded {} entries, {} bytes", dir, entries.size(), totalBytes);
+    }
+
+    /**
+     * 读取元信息, 数据文件缺失或大小不一致时返回null
+     */
+    private Entry readMeta(String name) {
+
+        try (BufferedReader reader = Files.newBufferedReader(metaPath(name), UTF_8)) {
+
+            long size = Long.parseLong(reader.readLine());
+            String version = reader.readLine();
+
+            StringBuilder key = new StringBuilder();
+            int c;
+            while ((c = reader.read()) != -1) {
+                key.append((char) c);
+            }
+
+            Path data = dataPath(name);
+            if (version == null || key.length() == 0 || !Files.exists(data) || Files.size(data) != size) {
+                return null;
+            }
+
+            Entry entry = new Entry(key.toString(), name, version, size, 0L);
+            entry.lastAccess = Files.getLastModifiedTime(data).toMillis();
+            return entry;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Discard local file cache entry {}: {}", name, e.getMessage());
+            return null;
+        }
+    }
+
+    private void delete(String name) {
+        try {
+
+            // 先删除元信息, 中途退出时剩余的数据文件在启动时清理
+            Files.deleteIfExists(metaPath(name));
+            Files.deleteIfExists(dataPath(name));
+        } catch (IOException e) {
+            log.warn("Delete local file cache entry {} failed: {}", name, e.getMessage());
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String nameOf(Path data) {
+        String fileName = data.getFileName().toString();
+        return fileName.substring(0, fileName.length() - DATA_SUFFIX.length());
+    }
+
+    private Path dataPath(String name) {
+        return dir.resolve(name.substring(0, 2)).resolve(name + DATA_SUFFIX);
+    }
+
+    private Path metaPath(String name) {
+        return dir.resolve(name.substring(0, 2)).resolve(name + META_SUFFIX);
+    }
+
+    private static class Entry {
+
+        private final String key;
+        private final String name;
+        private final String version;
+        private final long size;
+        private long validatedAt;
+        private long lastAccess;
+
+        Entry(String key, String name, String version, long size, long validatedAt) {
+            this.key = key;
+            this.name = name;
+            this.version = version;
+            this.size = size;
+            this.validatedAt = validatedAt;
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+package cn.darkjrong.storage.dedup;
+
+import org.springframework.core.io.InputStreamSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 计算上传内容的 SHA-256 摘要, 使用固定大小的缓冲区流式读取, 不将内容读入内存
+ *
+ * @author Rong.Jia
+ * @date 2020/06/30 10:50
+ */
+public final class ContentDigest {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ContentDigest() {
+    }
+
+    public static String sha256Hex(byte[] bytes) {
+        return toHex(newSha256().digest(bytes));
+    }
+
+    public static String sha256Hex(File file) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+            return sha256Hex(inputStream);
+        }
+    }
+
+    public static String sha256Hex(InputStreamSource source) throws IOException {
+        try (InputStream inputStream = source.getInputStream()) {
+            return sha256Hex(inputStream);
+        }
+    }
+
+    /**
+     * 读取输入流到结尾并计算摘要, 不关闭输入流
+     *
+     * @param inputStream 输入流
+     * @return 摘要十六进制
+     * @throws IOException 读取异常
+     */
+    public static String sha256Hex(InputStream inputStream) throws IOException {
+
+        MessageDigest digest = newSha256();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int n;
+        while ((n = inputStream.read(buffer)) != -1) {
+            digest.update(buffer, 0, n);
+        }
+
+        return toHex(digest.digest());
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+            chars[i * 2 + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+        }
+        return new String(chars);
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
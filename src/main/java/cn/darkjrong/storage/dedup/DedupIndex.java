@@ -0,0 +1,40 @@
+package cn.darkjrong.storage.dedup;
+
+/**
+ * 上传去重索引, 记录内容摘要与已上传文件位置的对应关系
+ *
+ * 索引只作为提示, 命中后由客户端确认文件仍然存在, 不存在时移除条目重新上传
+ *
+ * 内容相同的上传返回同一个路径, 索引不记录引用数: 任一上传方删除该路径后, 其他上传方得到的路径同时失效,
+ * 索引条目在下次命中时才被移除; 条目可能被淘汰, 引用数无法由索引可靠维护, 需要单独删除文件的场景不要开启去重,
+ * 或由业务自行记录引用后再删除
+ *
+ * @author Rong.Jia
+ * @date 2020/06/30 10:12
+ */
+public interface DedupIndex {
+
+    /**
+     * 查询已上传文件的位置
+     *
+     * @param key 去重键, 由客户端根据内容摘要生成
+     * @return 文件位置, 不存在时返回null
+     */
+    String get(String key);
+
+    /**
+     * 记录已上传文件的位置
+     *
+     * @param key      去重键
+     * @param location 文件位置
+     */
+    void put(String key, String location);
+
+    /**
+     * 移除已失效的条目
+     *
+     * @param key 去重键
+     */
+    void remove(String key);
+
+}
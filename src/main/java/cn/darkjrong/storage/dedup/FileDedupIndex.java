@@ -0,0 +1,141 @@
+package cn.darkjrong.storage.dedup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * 持久化到本地文件的去重索引, 重启后保留已上传文件的位置
+ *
+ * 文件按行追加 "键\t位置", 位置为空表示已移除; 启动时加载到内存,
+ * 只保留最近的 maxSize 个条目, 无效行过多时重写文件
+ *
+ * @author Rong.Jia
+ * @date 2020/06/30 10:35
+ */
+public class FileDedupIndex extends LruDedupIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(FileDedupIndex.class);
+
+    private static final char SEPARATOR = '\t';
+
+    private final File file;
+
+    /**
+     * 构造索引, 加载已有的索引文件
+     *
+     * @param file    索引文件
+     * @param maxSize 内存中最大条目数
+     * @throws IOException 读取索引文件异常
+     */
+    public FileDedupIndex(File file, int maxSize) throws IOException {
+        super(maxSize);
+        this.file = file;
+
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Could not create directory " + dir);
+        }
+
+        load(maxSize);
+    }
+
+    @Override
+    public synchronized void put(String key, String location) {
+        if (!valid(key) || !valid(location)) {
+            return;
+        }
+        super.put(key, location);
+        append(key, location);
+    }
+
+    @Override
+    public synchronized void remove(String key) {
+        if (get(key) == null) {
+            return;
+        }
+        super.remove(key);
+        append(key, "");
+    }
+
+    /**
+     * 加载索引文件, 后写入的行覆盖先写入的行
+     */
+    private void load(int maxSize) throws IOException {
+
+        if (!file.exists()) {
+            return;
+        }
+
+        Map<String, String> latest = new LinkedHashMap<>();
+        int lines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines++;
+                int index = line.indexOf(SEPARATOR);
+                if (index <= 0) {
+                    continue;
+                }
+                String key = line.substring(0, index);
+                String location = line.substring(index + 1);
+
+                // 重新放入, 保证按最后写入的顺序排列
+                latest.remove(key);
+                if (!location.isEmpty()) {
+                    latest.put(key, location);
+                }
+            }
+        }
+
+        latest.forEach(super::put);
+
+        if (lines > Math.max(size(), maxSize / 2) * 2) {
+            rewrite(latest);
+        }
+    }
+
+    /**
+     * 重写索引文件, 只保留内存中的条目
+     */
+    private void rewrite(Map<String, String> latest) throws IOException {
+
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmpFile.toPath(), UTF_8)) {
+            for (Map.Entry<String, String> entry : latest.entrySet()) {
+                if (get(entry.getKey()) != null) {
+                    writer.write(entry.getKey() + SEPARATOR + entry.getValue() + "\n");
+                }
+            }
+        }
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void append(String key, String location) {
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(key + SEPARATOR + location + "\n");
+        } catch (IOException e) {
+
+            // 写入失败只影响重启后的命中率
+            log.warn("append dedup index {} failed: {}", file, e.getMessage());
+        }
+    }
+
+    private static boolean valid(String value) {
+        return value.indexOf(SEPARATOR) < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0;
+    }
+
+}
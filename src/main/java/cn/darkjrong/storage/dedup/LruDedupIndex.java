@@ -0,0 +1,58 @@
+package cn.darkjrong.storage.dedup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 内存去重索引, 超过容量时淘汰最久未访问的条目
+ *
+ * @author Rong.Jia
+ * @date 2020/06/30 10:20
+ */
+public class LruDedupIndex implements DedupIndex {
+
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    private final LinkedHashMap<String, String> entries;
+
+    public LruDedupIndex() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * 构造索引
+     *
+     * @param maxSize 最大条目数
+     */
+    public LruDedupIndex(int maxSize) {
+        this.entries = new LinkedHashMap<String, String>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    @Override
+    public synchronized String get(String key) {
+        return entries.get(key);
+    }
+
+    @Override
+    public synchronized void put(String key, String location) {
+        entries.put(key, location);
+    }
+
+    @Override
+    public synchronized void remove(String key) {
+        entries.remove(key);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+}
@@ -1,10 +1,18 @@
 package cn.darkjrong.storage.fdfs;
 
-import cn.darkjrong.storage.utils.UUIDUtils;
+import cn.darkjrong.storage.cache.LocalFileCache;
+import cn.darkjrong.storage.dedup.ContentDigest;
+import cn.darkjrong.storage.dedup.DedupIndex;
+import cn.darkjrong.storage.metrics.StorageErrorRecorder;
+import cn.darkjrong.storage.utils.IntegrityException;
+import cn.darkjrong.storage.utils.KeyGenerator;
+import cn.darkjrong.storage.utils.TimeOrderedKeyGenerator;
 import com.github.tobato.fastdfs.domain.conn.FdfsWebServer;
 import com.github.tobato.fastdfs.domain.fdfs.FileInfo;
 import com.github.tobato.fastdfs.domain.fdfs.StorePath;
 import com.github.tobato.fastdfs.domain.fdfs.ThumbImageConfig;
+import com.github.tobato.fastdfs.domain.proto.storage.DownloadCallback;
+import com.github.tobato.fastdfs.exception.FdfsServerException;
 import com.github.tobato.fastdfs.service.FastFileStorageClient;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
@@ -13,13 +21,20 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.Base64;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 
 import static cn.darkjrong.storage.utils.FileUtils.*;
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -42,8 +57,62 @@ public class FastDFSClient {
     @Autowired
     private FdfsWebServer fdfsWebServer;
 
+    /**
+     *  上传文件名生成器
+     */
+    private KeyGenerator keyGenerator = TimeOrderedKeyGenerator.INSTANCE;
+
+    /**
+     *  是否校验上传下载的 CRC32
+     */
+    private boolean integrity;
+
+    /**
+     *  上传去重索引, 为空时不去重
+     */
+    private DedupIndex dedupIndex;
+
+    /**
+     *  下载文件的本地磁盘缓存, 为空时不缓存
+     */
+    private LocalFileCache fileCache;
+
+    /**
+     *  记录捕获后未抛出的异常, 开启指标时计入当前操作
+     */
+    private StorageErrorRecorder errorRecorder = StorageErrorRecorder.NONE;
+
+    public void setKeyGenerator(KeyGenerator keyGenerator) {
+        this.keyGenerator = keyGenerator;
+    }
+
+    public void setIntegrity(boolean integrity) {
+        this.integrity = integrity;
+    }
+
+    public void setDedupIndex(DedupIndex dedupIndex) {
+        this.dedupIndex = dedupIndex;
+    }
+
+    public void setFileCache(LocalFileCache fileCache) {
+        this.fileCache = fileCache;
+    }
+
+    public void setErrorRecorder(StorageErrorRecorder errorRecorder) {
+        this.errorRecorder = errorRecorder;
+    }
+
+    /**
+     *  下载文件的本地磁盘缓存, 用于查询命中次数、未命中次数和占用字节数
+     * @return 本地缓存, 未开启时返回null
+     */
+    public LocalFileCache getFileCache() {
+        return fileCache;
+    }
+
     /**
      *  上传文件
+     *  开启上传去重时可能返回与其他上传共用的路径, 见 {@link DedupIndex}
      * @param file 文件对象
      * @param identifier 是否拼接全路径
      * @return String 文件路径
@@ -51,29 +120,39 @@ public class FastDFSClient {
      */
     public String uploadFile(MultipartFile file, Boolean identifier) throws IOException {
 
-        InputStream inputStream = file.getInputStream();
-        StorePath storePath = storageClient.uploadFile(inputStream, file.getSize(),
-                FilenameUtils.getExtension(file.getOriginalFilename()), null);
-        IOUtils.closeQuietly(inputStream);
+        String fileExtName = FilenameUtils.getExtension(file.getOriginalFilename());
+        String dedupKey = dedupKey(fileExtName, file);
+        StorePath storePath = findDuplicate(dedupKey, file.getSize());
+        if (storePath == null) {
+            InputStream inputStream = file.getInputStream();
+            storePath = uploadFile(inputStream, file.getSize(), fileExtName, dedupKey);
+            IOUtils.closeQuietly(inputStream);
+        }
         return identifier ? getResAccessUrl(storePath) : storePath.getFullPath();
     }
 
     /**
      *  上传文件
+     *  开启上传去重时可能返回与其他上传共用的路径, 见 {@link DedupIndex}
      * @param bytes 文件数据
      * @param identifier 是否拼接全路径
      * @param format 文件格式（后缀）
      * @return String 文件路径
      */
     public String uploadFile(byte[] bytes, String format, Boolean identifier) {
-        ByteArrayInputStream inputStream = new ByteArrayInputStream(bytes);
-        StorePath storePath = storageClient.uploadFile(inputStream, bytes.length, format, null);
-        IOUtils.closeQuietly(inputStream);
+        String dedupKey = dedupKey(format, bytes);
+        StorePath storePath = findDuplicate(dedupKey, bytes.length);
+        if (storePath == null) {
+            ByteArrayInputStream inputStream = new ByteArrayInputStream(bytes);
+            storePath = uploadFile(inputStream, bytes.length, format, dedupKey);
+            IOUtils.closeQuietly(inputStream);
+        }
         return identifier ? getResAccessUrl(storePath) : storePath.getFullPath();
     }
 
     /**
      *  上传文件
+     *  开启上传去重时可能返回与其他上传共用的路径, 见 {@link DedupIndex}
      * @param file 文件对象
      * @param identifier 是否拼接全路径
      * @return String 文件路径
@@ -81,15 +160,20 @@ public class FastDFSClient {
      */
     public String uploadFile(File file, Boolean identifier) throws IOException {
 
-        FileInputStream fileInputStream = FileUtils.openInputStream(file);
-        StorePath storePath = storageClient.uploadFile(fileInputStream, file.length(),
-                FilenameUtils.getExtension(file.getName()), null);
-        IOUtils.closeQuietly(fileInputStream);
+        String fileExtName = FilenameUtils.getExtension(file.getName());
+        String dedupKey = dedupKey(fileExtName, new FileSystemResource(file));
+        StorePath storePath = findDuplicate(dedupKey, file.length());
+        if (storePath == null) {
+            FileInputStream fileInputStream = FileUtils.openInputStream(file);
+            storePath = uploadFile(fileInputStream, file.length(), fileExtName, dedupKey);
+            IOUtils.closeQuietly(fileInputStream);
+        }
         return  identifier ? getResAccessUrl(storePath) : storePath.getFullPath();
     }
 
     /**
      *  上传文件
+     *  开启上传去重时可能返回与其他上传共用的路径, 见 {@link DedupIndex}
      * @param base64 base64
      * @param identifier 是否拼接全路径
      * @return String 文件路径
@@ -98,8 +182,15 @@ public class FastDFSClient {
     public String uploadFile(String base64, Boolean identifier) throws IOException {
 
         base64 = base64.replaceAll(BASE64_REG, StringUtils.EMPTY);
+        byte[] bytes = Base64.getDecoder().decode(base64);
 
-        String filename = UUIDUtils.uuid() + System.currentTimeMillis() + JPEG_SUFFIX;
+        String dedupKey = dedupKey(FilenameUtils.getExtension(JPEG_SUFFIX), bytes);
+        StorePath duplicate = findDuplicate(dedupKey, bytes.length);
+        if (duplicate != null) {
+            return identifier ? getResAccessUrl(duplicate) : duplicate.getFullPath();
+        }
+
+        String filename = keyGenerator.generate() + JPEG_SUFFIX;
 
         // 判断文件夹是否存在
         String dirPath = TMP_DIR;
@@ -107,11 +198,10 @@ public class FastDFSClient {
 
         String filePath = dirPath + File.separator + filename;
 
-        File file = Files.write(Paths.get(filePath), Base64.getDecoder().decode(base64), StandardOpenOption.CREATE).toFile();
+        File file = Files.write(Paths.get(filePath), bytes, StandardOpenOption.CREATE).toFile();
 
         FileInputStream fileInputStream = FileUtils.openInputStream(file);
-        StorePath storePath = storageClient.uploadFile(fileInputStream, file.length(),
-                FilenameUtils.getExtension(file.getName()), null);
+        StorePath storePath = uploadFile(fileInputStream, file.length(), FilenameUtils.getExtension(file.getName()), dedupKey);
 
         IOUtils.closeQuietly(fileInputStream);
         FileUtils.deleteQuietly(file);
@@ -121,6 +211,7 @@ public class FastDFSClient {
 
     /**
      *  把字符串作为指定格式的文件上传
+     *  开启上传去重时可能返回与其他上传共用的路径, 见 {@link DedupIndex}
      * @param content 字符串
      * @param identifier 是否拼接全路径
      * @param fileExtension 文件格式
@@ -128,9 +219,13 @@ public class FastDFSClient {
      */
     public String uploadFile(String content, String fileExtension, Boolean identifier) {
         byte[] buff = content.getBytes(UTF_8);
-        ByteArrayInputStream stream = new ByteArrayInputStream(buff);
-        StorePath storePath = storageClient.uploadFile(stream, buff.length, fileExtension, null);
-        IOUtils.closeQuietly(stream);
+        String dedupKey = dedupKey(fileExtension, buff);
+        StorePath storePath = findDuplicate(dedupKey, buff.length);
+        if (storePath == null) {
+            ByteArrayInputStream stream = new ByteArrayInputStream(buff);
+            storePath = uploadFile(stream, buff.length, fileExtension, dedupKey);
+            IOUtils.closeQuietly(stream);
+        }
         return identifier ? getResAccessUrl(storePath) : storePath.getFullPath();
     }
 
@@ -143,13 +238,116 @@ public class FastDFSClient {
      */
     public String uploadImageAndCrtThumbImage(MultipartFile file, Boolean identifier) throws IOException {
 
-        InputStream inputStream = file.getInputStream();
+        InputStream inputStream = checked(file.getInputStream());
         StorePath storePath = storageClient.uploadImageAndCrtThumbImage(inputStream, file.getSize(),
                 FilenameUtils.getExtension(file.getOriginalFilename()), null);
         IOUtils.closeQuietly(inputStream);
+        verifyCrc32(inputStream, storePath);
         return identifier ? getResAccessUrl(storePath) : storePath.getFullPath();
     }
 
+    /**
+     *  上传文件, 开启校验时在上传的同时计算 CRC32, 与服务端记录的 CRC32 比较
+     * @param inputStream 输入流
+     * @param fileSize 文件大小
+     * @param fileExtName 文件格式（后缀）
+     * @param dedupKey 去重键, 不为空时记录上传后的文件路径
+     * @return 文件路径
+     */
+    private StorePath uploadFile(InputStream inputStream, long fileSize, String fileExtName, String dedupKey) {
+        InputStream checked = checked(inputStream);
+        StorePath storePath = storageClient.uploadFile(checked, fileSize, fileExtName, null);
+        verifyCrc32(checked, storePath);
+        if (dedupKey != null) {
+            dedupIndex.put(dedupKey, storePath.getFullPath());
+        }
+        return storePath;
+    }
+
+    /**
+     *  去重键: 文件格式和内容摘要, 未开启去重时返回null
+     */
+    private String dedupKey(String fileExtName, byte[] bytes) {
+        return dedupIndex == null ? null : StringUtils.defaultString(fileExtName) + COLON + ContentDigest.sha256Hex(bytes);
+    }
+
+    private String dedupKey(String fileExtName, InputStreamSource source) throws IOException {
+        return dedupIndex == null ? null : StringUtils.defaultString(fileExtName) + COLON + ContentDigest.sha256Hex(source);
+    }
+
+    /**
+     *  查找内容相同的已上传文件, 文件已删除或大小不一致时移除索引条目
+     * @param dedupKey 去重键
+     * @param fileSize 文件大小
+     * @return 已上传的文件路径, 不存在时返回null
+     */
+    private StorePath findDuplicate(String dedupKey, long fileSize) {
+
+        if (dedupKey == null) {
+            return null;
+        }
+
+        String fullPath = dedupIndex.get(dedupKey);
+        if (fullPath == null) {
+            return null;
+        }
+
+        StorePath storePath = StorePath.parseFromUrl(fullPath);
+        try {
+            FileInfo fileInfo = storageClient.queryFileInfo(storePath.getGroup(), storePath.getPath());
+            if (fileInfo != null && fileInfo.getFileSize() == fileSize) {
+                return storePath;
+            }
+        } catch (FdfsServerException e) {
+            logger.debug("Dedup entry {} is stale: {}", fullPath, e.getMessage());
+        }
+
+        dedupIndex.remove(dedupKey);
+        return null;
+    }
+
+    /**
+     *  开启校验时包装输入流, 读取的同时计算 CRC32
+     */
+    private InputStream checked(InputStream inputStream) {
+        return integrity ? new CheckedInputStream(inputStream, new CRC32()) : inputStream;
+    }
+
+    /**
+     *  下载回调, 开启校验时读取完成后比较 CRC32
+     */
+    private <T> DownloadCallback<T> verified(StorePath storePath, DownloadCallback<T> callback) {
+
+        if (!integrity) {
+            return callback;
+        }
+
+        return ins -> {
+            InputStream inputStream = checked(ins);
+            T result = callback.recv(inputStream);
+            verifyCrc32(inputStream, storePath);
+            return result;
+        };
+    }
+
+    /**
+     *  比较读取数据的 CRC32 与服务端记录的 CRC32
+     * @throws IntegrityException 校验值不一致
+     */
+    private void verifyCrc32(InputStream inputStream, StorePath storePath) {
+
+        if (!(inputStream instanceof CheckedInputStream)) {
+            return;
+        }
+
+        int clientCrc32 = (int) ((CheckedInputStream) inputStream).getChecksum().getValue();
+        int serverCrc32 = storageClient.queryFileInfo(storePath.getGroup(), storePath.getPath()).getCrc32();
+        if (clientCrc32 != serverCrc32) {
+            throw new IntegrityException("CRC32", storePath.getFullPath(),
+                    Integer.toUnsignedString(clientCrc32), Integer.toUnsignedString(serverCrc32));
+        }
+    }
+
     /**
      *  封装图片完整URL地址
      * @param storePath  文件路径
@@ -179,17 +377,104 @@ public class FastDFSClient {
     }
 
     /**
-     *  根据文件路径下载文件
+     *  根据文件路径下载文件, 本地缓存读写失败时记录日志后直接下载
      * @param filePath 文件路径
      * @return byte[] 文件字节数据
      */
     public byte[] downFile(String filePath) throws IOException {
         StorePath storePath = StorePath.parseFromUrl(filePath);
-        return storageClient.downloadFile(storePath.getGroup(), storePath.getPath(), org.apache.commons.io.IOUtils::toByteArray);
+        if (fileCache != null) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            try {
+                downFileCached(storePath, Channels.newChannel(outputStream));
+                return outputStream.toByteArray();
+            } catch (IOException e) {
+                logger.warn("Local file cache failed, download directly {}", e.getMessage());
+            }
+        }
+        return storageClient.downloadFile(storePath.getGroup(), storePath.getPath(),
+                verified(storePath, org.apache.commons.io.IOUtils::toByteArray));
+    }
+
+    /**
+     *  根据文件路径流式下载文件, 使用固定大小的缓冲区写入输出流, 不关闭输出流
+     * @param filePath 文件路径
+     * @param outputStream 输出流
+     * @return 下载的字节数
+     */
+    public Long downFile(String filePath, OutputStream outputStream) {
+        StorePath storePath = StorePath.parseFromUrl(filePath);
+        if (fileCache != null) {
+            try {
+                return downFileCached(storePath, Channels.newChannel(outputStream));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return storageClient.downloadFile(storePath.getGroup(), storePath.getPath(), verified(storePath, ins -> copy(ins, outputStream)));
+    }
+
+    /**
+     *  根据文件路径流式下载文件, 使用固定大小的缓冲区写入通道, 不关闭通道
+     * @param filePath 文件路径
+     * @param channel 输出通道
+     * @return 下载的字节数
+     */
+    public Long downFile(String filePath, WritableByteChannel channel) {
+        StorePath storePath = StorePath.parseFromUrl(filePath);
+        if (fileCache != null) {
+            try {
+                return downFileCached(storePath, channel);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return storageClient.downloadFile(storePath.getGroup(), storePath.getPath(), verified(storePath, ins -> copy(ins, channel)));
+    }
+
+    /**
+     *  经本地缓存下载文件, 缓存超过重新校验间隔时查询文件信息, 以文件大小和 CRC32 作为版本确认未变化;
+     *  未命中时边写入缓存边写入目标通道, 校验通过后提交到缓存, 超过缓存单文件上限时直接下载
+     * @param storePath 文件路径
+     * @param target 目标通道
+     * @return 下载的字节数
+     * @throws IOException 下载异常
+     */
+    private long downFileCached(StorePath storePath, WritableByteChannel target) throws IOException {
+
+        String key = storePath.getFullPath();
+        String version = fileCache.getVersion(key);
+        if (version == null || !fileCache.isFresh(key)) {
+
+            FileInfo fileInfo = storageClient.queryFileInfo(storePath.getGroup(), storePath.getPath());
+            String current = fileInfo.getFileSize() + "-" + Integer.toHexString(fileInfo.getCrc32());
+            if (!current.equals(version)) {
+
+                if (!fileCache.fits(fileInfo.getFileSize())) {
+                    return storageClient.downloadFile(storePath.getGroup(), storePath.getPath(), verified(storePath, ins -> copy(ins, target)));
+                }
+
+                return storageClient.downloadFile(storePath.getGroup(), storePath.getPath(), ins -> {
+                    InputStream inputStream = checked(ins);
+                    return fileCache.put(key, current, inputStream, target, () -> verifyCrc32(inputStream, storePath));
+                });
+            }
+            fileCache.validated(key);
+        }
+
+        try (FileChannel channel = fileCache.open(key, version)) {
+            if (channel != null) {
+                return LocalFileCache.transferTo(channel, target);
+            }
+        }
+
+        // 校验期间缓存已被淘汰, 直接下载
+        return storageClient.downloadFile(storePath.getGroup(), storePath.getPath(), verified(storePath, ins -> copy(ins, target)));
     }
 
     /**
      *  根据文件地址删除文件
+     *  删除上传去重共用的路径会使其他上传方得到的路径一并失效, 见 {@link DedupIndex}
      * @param filePath 文件访问地址
      * @return true/false 成功/失败
      */
@@ -198,9 +483,13 @@ public class FastDFSClient {
             filePath = StringUtils.replace(filePath, HTTP_PREFIX + fdfsWebServer.getWebServerUrl() + SLASH, StringUtils.EMPTY);
             StorePath storePath = StorePath.parseFromUrl(filePath);
             storageClient.deleteFile(storePath.getGroup(), storePath.getPath());
+            if (fileCache != null) {
+                fileCache.remove(storePath.getFullPath());
+            }
             return Boolean.TRUE;
         }catch (Exception e) {
             logger.error("Delete file failed {}", e.getMessage());
+            errorRecorder.record(e);
         }
         return Boolean.FALSE;
     }
@@ -0,0 +1,58 @@
+package cn.darkjrong.storage.metrics;
+
+import cn.darkjrong.storage.cache.LocalFileCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * 本地磁盘缓存指标
+ *
+ * 指标:
+ *  storage.file.cache.hits     命中次数
+ *  storage.file.cache.misses   未命中次数(从服务端下载并写入缓存)
+ *  storage.file.cache.size     占用字节数
+ *  storage.file.cache.entries  缓存文件数
+ *
+ * @author Rong.Jia
+ * @date 2020/07/01 14:20
+ */
+public class LocalFileCacheMetrics implements MeterBinder {
+
+    private final LocalFileCache fileCache;
+    private final String backend;
+
+    /**
+     * 构造缓存指标
+     *
+     * @param fileCache 本地缓存
+     * @param backend   存储类型
+     */
+    public LocalFileCacheMetrics(LocalFileCache fileCache, String backend) {
+        this.fileCache = fileCache;
+        this.backend = backend;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+
+        FunctionCounter.builder("storage.file.cache.hits", fileCache, LocalFileCache::getHitCount)
+                .tag("backend", backend)
+                .register(registry);
+
+        FunctionCounter.builder("storage.file.cache.misses", fileCache, LocalFileCache::getMissCount)
+                .tag("backend", backend)
+                .register(registry);
+
+        Gauge.builder("storage.file.cache.size", fileCache, LocalFileCache::getTotalBytes)
+                .baseUnit("bytes")
+                .tag("backend", backend)
+                .register(registry);
+
+        Gauge.builder("storage.file.cache.entries", fileCache, LocalFileCache::size)
+                .tag("backend", backend)
+                .register(registry);
+    }
+
+}
@@ -0,0 +1,36 @@
+package cn.darkjrong.storage.metrics;
+
+/**
+ * 记录客户端捕获后未抛出的异常, 使指标能区分失败与空结果
+ *
+ * 客户端在捕获异常并返回 null/false 的位置调用, 开启指标时由指标拦截器实现, 计入当前操作;
+ * 在线程池中执行的任务使用调用线程上 {@link #bind()} 得到的记录器
+ *
+ * @author Rong.Jia
+ * @date 2020/06/22 11:05
+ */
+@FunctionalInterface
+public interface StorageErrorRecorder {
+
+    /**
+     * 不记录
+     */
+    StorageErrorRecorder NONE = e -> { };
+
+    /**
+     * 记录当前操作捕获的异常
+     *
+     * @param e 异常
+     */
+    void record(Throwable e);
+
+    /**
+     * 绑定当前线程正在执行的操作, 返回的记录器在其他线程中调用时仍计入该操作
+     *
+     * @return 绑定当前操作的记录器
+     */
+    default StorageErrorRecorder bind() {
+        return this;
+    }
+
+}
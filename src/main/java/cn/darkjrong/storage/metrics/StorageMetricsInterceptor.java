@@ -0,0 +1,377 @@
+package cn.darkjrong.storage.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 存储操作指标, 记录公开方法的耗时、传输字节数和异常次数
+ *
+ * 指标:
+ *  storage.operation         耗时, 标签 backend, operation, 存储空间/组, outcome(success, empty, error)
+ *                            客户端捕获后通过 {@link StorageErrorRecorder} 记录的异常、非查询方法返回 false 均计为 error;
+ *                            返回 CompletableFuture 的操作在完成时记录, 返回 Stream 的操作在流关闭时记录, 读取流时抛出的异常计为 error
+ *  storage.operation.errors  异常次数, 另有标签 exception
+ *  storage.bytes             上传/下载字节数
+ *
+ * @author Rong.Jia
+ * @date 2020/06/22 10:15
+ */
+public class StorageMetricsInterceptor implements MethodInterceptor, StorageErrorRecorder {
+
+    private static final String OUTCOME_SUCCESS = "success";
+    private static final String OUTCOME_EMPTY = "empty";
+    private static final String OUTCOME_ERROR = "error";
+    private static final String UNKNOWN = "unknown";
+
+    /**
+     * 返回 false 表示结果而非失败的查询方法前缀
+     */
+    private static final List<String> QUERY_PREFIXES = Arrays.asList("does", "is", "exists", "has");
+
+    /**
+     * 不计入的方法参数位置
+     */
+    private static final int NO_PARAMETER = -1;
+
+    private static final ParameterNameDiscoverer PARAMETER_NAME_DISCOVERER = new DefaultParameterNameDiscoverer();
+
+    private final MeterRegistry registry;
+    private final String backend;
+    private final String targetTag;
+    private final List<String> targetParameterNames;
+    private final Function<String, String> targetExtractor;
+    private final Function<Object, String> resultTargetExtractor;
+
+    /**
+     * 当前线程正在执行的操作中捕获的异常, 绑定后可在其他线程中记录
+     */
+    private final ThreadLocal<AtomicReference<Throwable>> recorded = new ThreadLocal<>();
+
+    private final Map<Method, Integer> targetParameters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> errors = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    /**
+     * 构造指标拦截器
+     *
+     * @param registry             指标注册中心
+     * @param backend              存储类型
+     * @param targetTag            存储空间/组的标签名
+     * @param targetParameterNames 取存储空间/组的参数名
+     * @param targetExtractor      从参数值中取出存储空间/组
+     */
+    public StorageMetricsInterceptor(MeterRegistry registry, String backend, String targetTag,
+                                     List<String> targetParameterNames, Function<String, String> targetExtractor) {
+        this(registry, backend, targetTag, targetParameterNames, targetExtractor, null);
+    }
+
+    /**
+     * 构造指标拦截器
+     *
+     * @param registry              指标注册中心
+     * @param backend               存储类型
+     * @param targetTag             存储空间/组的标签名
+     * @param targetParameterNames  取存储空间/组的参数名
+     * @param targetExtractor       从参数值中取出存储空间/组
+     * @param resultTargetExtractor 参数中没有存储空间/组时从返回值中取出, 为空时不取
+     */
+    public StorageMetricsInterceptor(MeterRegistry registry, String backend, String targetTag,
+                                     List<String> targetParameterNames, Function<String, String> targetExtractor,
+                                     Function<Object, String> resultTargetExtractor) {
+        this.registry = registry;
+        this.backend = backend;
+        this.targetTag = targetTag;
+        this.targetParameterNames = targetParameterNames;
+        this.targetExtractor = targetExtractor;
+        this.resultTargetExtractor = resultTargetExtractor;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+
+        Method method = invocation.getMethod();
+        if (!isOperation(method)) {
+            return invocation.proceed();
+        }
+
+        String operation = method.getName();
+        String target = target(method, invocation.getArguments());
+
+        AtomicReference<Throwable> previous = recorded.get();
+        AtomicReference<Throwable> current = new AtomicReference<>();
+        recorded.set(current);
+
+        long start = System.nanoTime();
+        try {
+            Object result = invocation.proceed();
+            if (UNKNOWN.equals(target) && resultTargetExtractor != null && result != null) {
+                target = StringUtils.defaultIfEmpty(resultTargetExtractor.apply(result), UNKNOWN);
+            }
+
+            String resultTarget = target;
+            Object[] arguments = invocation.getArguments();
+            if (result instanceof CompletableFuture) {
+                ((CompletableFuture<?>) result).whenComplete((value, e) -> {
+                    if (e != null) {
+                        current.compareAndSet(null, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                    }
+                    complete(operation, resultTarget, arguments, value, current.get(), start);
+                });
+                return result;
+            }
+
+            if (result instanceof Stream) {
+                Stream<?> stream = (Stream<?>) result;
+                return StreamSupport.stream(new RecordingSpliterator<>(stream.spliterator(), current), stream.isParallel())
+                        .onClose(stream::close)
+                        .onClose(() -> complete(operation, resultTarget, arguments, stream, current.get(), start));
+            }
+
+            complete(operation, target, arguments, result, current.get(), start);
+            return result;
+        } catch (Throwable e) {
+            timer(operation, target, OUTCOME_ERROR).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            error(operation, target, e.getClass().getSimpleName()).increment();
+            throw e;
+        } finally {
+            if (previous == null) {
+                recorded.remove();
+            } else {
+                recorded.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 记录当前操作捕获的异常, 只保留第一个, 不在拦截的操作中调用时忽略
+     *
+     * @param e 异常
+     */
+    @Override
+    public void record(Throwable e) {
+        AtomicReference<Throwable> current = recorded.get();
+        if (current != null) {
+            current.compareAndSet(null, e);
+        }
+    }
+
+    @Override
+    public StorageErrorRecorder bind() {
+        AtomicReference<Throwable> current = recorded.get();
+        return current == null ? StorageErrorRecorder.NONE : e -> current.compareAndSet(null, e);
+    }
+
+    /**
+     * 操作结束后记录耗时和传输字节数, 有捕获的异常时计为 error
+     *
+     * @param result 返回值
+     * @param error  捕获的异常, 没有时为null
+     */
+    private void complete(String operation, String target, Object[] arguments, Object result, Throwable error, long start) {
+
+        if (error != null) {
+            timer(operation, target, OUTCOME_ERROR).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            error(operation, target, error.getClass().getSimpleName()).increment();
+            return;
+        }
+
+        String outcome = result == null ? OUTCOME_EMPTY
+                : Boolean.FALSE.equals(result) && !isQuery(operation) ? OUTCOME_ERROR : OUTCOME_SUCCESS;
+        timer(operation, target, outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        long bytes = bytes(operation, arguments, result);
+        if (bytes > 0) {
+            summary(operation, target).record(bytes);
+        }
+    }
+
+    /**
+     * 只记录公开的存储操作, 排除配置和生命周期方法
+     */
+    private static boolean isOperation(Method method) {
+
+        Class<?> declaringClass = method.getDeclaringClass();
+        if (!Modifier.isPublic(method.getModifiers()) || declaringClass == Object.class
+                || declaringClass == InitializingBean.class || declaringClass == DisposableBean.class) {
+            return false;
+        }
+
+        String name = method.getName();
+        return !name.startsWith("set") && !"afterPropertiesSet".equals(name) && !"destroy".equals(name);
+    }
+
+    private static boolean isQuery(String operation) {
+        return QUERY_PREFIXES.stream().anyMatch(operation::startsWith);
+    }
+
+    private String target(Method method, Object[] arguments) {
+
+        int index = targetParameters.computeIfAbsent(method, this::targetParameter);
+        if (index == NO_PARAMETER || !(arguments[index] instanceof String)) {
+            return UNKNOWN;
+        }
+
+        String target = targetExtractor.apply((String) arguments[index]);
+        return StringUtils.isEmpty(target) ? UNKNOWN : target;
+    }
+
+    private int targetParameter(Method method) {
+
+        String[] names = PARAMETER_NAME_DISCOVERER.getParameterNames(method);
+        if (names == null) {
+            return NO_PARAMETER;
+        }
+
+        for (String targetParameterName : targetParameterNames) {
+            int index = Arrays.asList(names).indexOf(targetParameterName);
+            if (index >= 0) {
+                return index;
+            }
+        }
+
+        return NO_PARAMETER;
+    }
+
+    /**
+     * 上传取文件参数大小, 下载取返回数据大小
+     */
+    private static long bytes(String operation, Object[] arguments, Object result) {
+
+        if (result instanceof byte[]) {
+            return ((byte[]) result).length;
+        }
+
+        if (StringUtils.startsWithIgnoreCase(operation, "down")) {
+            if (result instanceof Long) {
+                return (Long) result;
+            }
+            if (result instanceof File) {
+                return ((File) result).length();
+            }
+            return 0L;
+        }
+
+        for (Object argument : arguments) {
+            if (argument instanceof MultipartFile) {
+                return ((MultipartFile) argument).getSize();
+            } else if (argument instanceof File) {
+                return ((File) argument).length();
+            } else if (argument instanceof Path) {
+                return ((Path) argument).toFile().length();
+            } else if (argument instanceof byte[]) {
+                return ((byte[]) argument).length;
+            }
+        }
+
+        return 0L;
+    }
+
+    private Timer timer(String operation, String target, String outcome) {
+        return timers.computeIfAbsent(operation + '|' + target + '|' + outcome, key -> Timer.builder("storage.operation")
+                .tag("backend", backend)
+                .tag("operation", operation)
+                .tag(targetTag, target)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    private Counter error(String operation, String target, String exception) {
+        return errors.computeIfAbsent(operation + '|' + target + '|' + exception, key -> Counter.builder("storage.operation.errors")
+                .tag("backend", backend)
+                .tag("operation", operation)
+                .tag(targetTag, target)
+                .tag("exception", exception)
+                .register(registry));
+    }
+
+    private DistributionSummary summary(String operation, String target) {
+        return summaries.computeIfAbsent(operation + '|' + target, key -> DistributionSummary.builder("storage.bytes")
+                .baseUnit("bytes")
+                .tag("backend", backend)
+                .tag("operation", operation)
+                .tag(targetTag, target)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    /**
+     * 读取流时抛出的异常计入操作
+     */
+    private static class RecordingSpliterator<T> implements Spliterator<T> {
+
+        private final Spliterator<T> spliterator;
+        private final AtomicReference<Throwable> recorded;
+
+        RecordingSpliterator(Spliterator<T> spliterator, AtomicReference<Throwable> recorded) {
+            this.spliterator = spliterator;
+            this.recorded = recorded;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            try {
+                return spliterator.tryAdvance(action);
+            } catch (RuntimeException e) {
+                recorded.compareAndSet(null, e);
+                throw e;
+            }
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            try {
+                spliterator.forEachRemaining(action);
+            } catch (RuntimeException e) {
+                recorded.compareAndSet(null, e);
+                throw e;
+            }
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            Spliterator<T> split = spliterator.trySplit();
+            return split == null ? null : new RecordingSpliterator<>(split, recorded);
+        }
+
+        @Override
+        public long estimateSize() {
+            return spliterator.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return spliterator.characteristics();
+        }
+    }
+
+}
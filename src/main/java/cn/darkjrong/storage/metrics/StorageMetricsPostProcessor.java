@@ -0,0 +1,83 @@
+package cn.darkjrong.storage.metrics;
+
+import cn.darkjrong.storage.cache.LocalFileCache;
+import cn.darkjrong.storage.fdfs.FastDFSClient;
+import cn.darkjrong.storage.oss.OssClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * 为 OssClient、FastDFSClient 创建记录指标的代理, 开启本地缓存时注册缓存指标
+ *
+ * @author Rong.Jia
+ * @date 2020/06/22 10:40
+ */
+public class StorageMetricsPostProcessor implements BeanPostProcessor {
+
+    private final ObjectProvider<MeterRegistry> registry;
+
+    public StorageMetricsPostProcessor(ObjectProvider<MeterRegistry> registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+
+        if (bean instanceof OssClient) {
+            StorageMetricsInterceptor interceptor = new StorageMetricsInterceptor(registry.getObject(), "oss", "bucket",
+                    Arrays.asList("bucketName", "sourceBucketName"), bucketName -> bucketName);
+            ((OssClient) bean).setErrorRecorder(interceptor);
+            bindFileCache(((OssClient) bean).getFileCache(), "oss");
+            return proxy(bean, interceptor);
+        }
+
+        if (bean instanceof FastDFSClient) {
+
+            // 上传没有文件路径参数, 从返回的文件路径中取组名
+            StorageMetricsInterceptor interceptor = new StorageMetricsInterceptor(registry.getObject(), "fastdfs", "group",
+                    Collections.singletonList("filePath"), StorageMetricsPostProcessor::group,
+                    result -> result instanceof String ? group((String) result) : null);
+            ((FastDFSClient) bean).setErrorRecorder(interceptor);
+            bindFileCache(((FastDFSClient) bean).getFileCache(), "fastdfs");
+            return proxy(bean, interceptor);
+        }
+
+        return bean;
+    }
+
+    private void bindFileCache(LocalFileCache fileCache, String backend) {
+        if (fileCache != null) {
+            new LocalFileCacheMetrics(fileCache, backend).bindTo(registry.getObject());
+        }
+    }
+
+    private static Object proxy(Object bean, StorageMetricsInterceptor interceptor) {
+
+        ProxyFactory proxyFactory = new ProxyFactory(bean);
+        proxyFactory.setProxyTargetClass(Boolean.TRUE);
+        proxyFactory.addAdvice(interceptor);
+
+        return proxyFactory.getProxy(bean.getClass().getClassLoader());
+    }
+
+    /**
+     * 文件路径的第一段为组名, 如 group1/M00/00/00/xxx.jpg, 访问地址先去掉协议和域名
+     */
+    private static String group(String filePath) {
+
+        String path = filePath;
+        if (StringUtils.contains(path, "://")) {
+            path = StringUtils.substringAfter(StringUtils.substringAfter(path, "://"), "/");
+        }
+
+        path = StringUtils.removeStart(path, "/");
+        return path.contains("/") ? StringUtils.substringBefore(path, "/") : null;
+    }
+
+}
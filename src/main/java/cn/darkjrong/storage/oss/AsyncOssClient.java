@@ -0,0 +1,233 @@
+package cn.darkjrong.storage.oss;
+
+import cn.darkjrong.storage.oss.domain.DeleteResult;
+import cn.darkjrong.storage.oss.domain.ObjectMetaInfo;
+import com.aliyun.oss.model.OSSObjectSummary;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * oss 异步工具类, 在独立的有界线程池中执行 OssClient 的操作, 返回 CompletableFuture
+ *
+ * 线程池和队列已满时返回的 CompletableFuture 以 RejectedExecutionException 结束
+ *
+ * @author Rong.Jia
+ * @date 2020/06/18 10:12
+ */
+public class AsyncOssClient implements DisposableBean {
+
+    /**
+     *  默认核心线程数
+     */
+    public static final int DEFAULT_CORE_POOL_SIZE = 8;
+
+    /**
+     *  默认最大线程数
+     */
+    public static final int DEFAULT_MAX_POOL_SIZE = 32;
+
+    /**
+     *  默认队列容量
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+    private final OssClient ossClient;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * 构造异步工具类
+     *
+     * @param ossClient     oss 工具类
+     * @param corePoolSize  核心线程数
+     * @param maxPoolSize   最大线程数
+     * @param queueCapacity 队列容量
+     */
+    public AsyncOssClient(OssClient ossClient, int corePoolSize, int maxPoolSize, int queueCapacity) {
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("oss-async-");
+        threadFactory.setDaemon(true);
+
+        this.ossClient = ossClient;
+        this.executor = new ThreadPoolExecutor(corePoolSize, Math.max(corePoolSize, maxPoolSize), 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public OssClient getOssClient() {
+        return ossClient;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    /**
+     * 上传文件
+     * @see OssClient#upload(String, String, File)
+     */
+    public CompletableFuture<String> upload(String bucketName, String dir, File file) {
+        return submit(() -> ossClient.upload(bucketName, dir, file));
+    }
+
+    /**
+     * 上传文件
+     * @see OssClient#upload(String, String, String, InputStream)
+     */
+    public CompletableFuture<String> upload(String bucketName, String fileName, String dir, InputStream inputStream) {
+        return submit(() -> ossClient.upload(bucketName, fileName, dir, inputStream));
+    }
+
+    /**
+     * 分片上传本地文件
+     * @see OssClient#shardUpload(String, File)
+     */
+    public CompletableFuture<String> shardUpload(String bucketName, File file) {
+        return submit(() -> ossClient.shardUpload(bucketName, file));
+    }
+
+    /**
+     * 断点续传
+     * @see OssClient#resumableUpload(String, String, File)
+     */
+    public CompletableFuture<String> resumableUpload(String bucketName, String objectName, File file) {
+        return submit(() -> ossClient.resumableUpload(bucketName, objectName, file));
+    }
+
+    /**
+     * 下载文件
+     * @see OssClient#download(String, String)
+     */
+    public CompletableFuture<byte[]> download(String bucketName, String objectName) {
+        return submit(() -> ossClient.download(bucketName, objectName));
+    }
+
+    /**
+     * 流式下载文件
+     * @see OssClient#download(String, String, OutputStream)
+     */
+    public CompletableFuture<Long> download(String bucketName, String objectName, OutputStream outputStream) {
+        return submit(() -> ossClient.download(bucketName, objectName, outputStream));
+    }
+
+    /**
+     * 下载文件到本地
+     * @see OssClient#download(String, String, String)
+     */
+    public CompletableFuture<File> download(String bucketName, String objectName, String localFileName) {
+        return submit(() -> ossClient.download(bucketName, objectName, localFileName));
+    }
+
+    /**
+     * 并发分段下载文件到本地
+     * @see OssClient#shardDownload(String, String, String)
+     */
+    public CompletableFuture<File> shardDownload(String bucketName, String objectName, String localFileName) {
+        return submit(() -> ossClient.shardDownload(bucketName, objectName, localFileName));
+    }
+
+    /**
+     * 判断文件是否存在
+     * @see OssClient#doesObjectExist(String, String)
+     */
+    public CompletableFuture<Boolean> doesObjectExist(String bucketName, String objectName) {
+        return submit(() -> ossClient.doesObjectExist(bucketName, objectName));
+    }
+
+    /**
+     * 获取文件全部元信息
+     * @see OssClient#getObjectMetadata(String, String)
+     */
+    public CompletableFuture<ObjectMetaInfo> getObjectMetadata(String bucketName, String objectName) {
+        return submit(() -> ossClient.getObjectMetadata(bucketName, objectName));
+    }
+
+    /**
+     * 获取文件部分元信息
+     * @see OssClient#getSimplifiedObjectMeta(String, String)
+     */
+    public CompletableFuture<ObjectMetaInfo> getSimplifiedObjectMeta(String bucketName, String objectName) {
+        return submit(() -> ossClient.getSimplifiedObjectMeta(bucketName, objectName));
+    }
+
+    /**
+     * 获取文件信息
+     * @see OssClient#getFileInfo(String, String)
+     */
+    public CompletableFuture<Map<String, Object>> getFileInfo(String bucketName, String objectName) {
+        return submit(() -> ossClient.getFileInfo(bucketName, objectName));
+    }
+
+    /**
+     * 获得url链接
+     * @see OssClient#getUrl(String, String, Long)
+     */
+    public CompletableFuture<String> getUrl(String bucketName, String objectName, Long expirationTime) {
+        return submit(() -> ossClient.getUrl(bucketName, objectName, expirationTime));
+    }
+
+    /**
+     * 获取指定前缀的文件(第一页)
+     * @see OssClient#listFile(String, String)
+     */
+    public CompletableFuture<List<OSSObjectSummary>> listFile(String bucketName, String filePrefix) {
+        return submit(() -> ossClient.listFile(bucketName, filePrefix));
+    }
+
+    /**
+     * 删除文件
+     * @see OssClient#delete(String, String)
+     */
+    public CompletableFuture<Boolean> delete(String bucketName, String objectName) {
+        return submit(() -> ossClient.delete(bucketName, objectName));
+    }
+
+    /**
+     * 批量删除文件
+     * @see OssClient#delete(String, Collection)
+     */
+    public CompletableFuture<DeleteResult> delete(String bucketName, Collection<String> objectNames) {
+        return submit(() -> ossClient.delete(bucketName, objectNames));
+    }
+
+    /**
+     * 删除指定前缀的全部文件
+     * @see OssClient#deleteByPrefix(String, String)
+     */
+    public CompletableFuture<DeleteResult> deleteByPrefix(String bucketName, String prefix) {
+        return submit(() -> ossClient.deleteByPrefix(bucketName, prefix));
+    }
+
+    /**
+     * 在线程池中执行任务, 线程池已满时返回失败的 CompletableFuture
+     *
+     * @param task 任务
+     * @return 任务结果
+     */
+    private <T> CompletableFuture<T> submit(Callable<T> task) {
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(task.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+}
@@ -0,0 +1,190 @@
+package cn.darkjrong.storage.oss;
+
+import cn.darkjrong.storage.metrics.StorageErrorRecorder;
+import cn.darkjrong.storage.oss.domain.DeleteResult;
+import com.aliyun.oss.OSS;
+import com.aliyun.oss.model.DeleteObjectsRequest;
+import com.aliyun.oss.model.DeleteObjectsResult;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiConsumer;
+
+/**
+ * 批量删除, 每1000个文件一次请求, 并发数受限
+ *
+ * @author Rong.Jia
+ * @date 2020/06/16 09:48
+ */
+class BatchDeleter {
+
+    /**
+     * 单次请求最多删除1000个文件
+     */
+    static final int MAX_KEYS_PER_REQUEST = DeleteObjectsRequest.DELETE_OBJECTS_ONETIME_LIMIT;
+
+    private final OSS oss;
+    private final ExecutorService executor;
+    private final int concurrency;
+
+    /**
+     * 删除成功后回调(存储空间, 文件名)
+     */
+    private final BiConsumer<String, String> onDeleted;
+
+    /**
+     * 记录删除请求的异常, 在线程池中调用, 需绑定发起删除的操作
+     */
+    private final StorageErrorRecorder errorRecorder;
+
+    BatchDeleter(OSS oss, ExecutorService executor, int concurrency, BiConsumer<String, String> onDeleted,
+                 StorageErrorRecorder errorRecorder) {
+        this.oss = oss;
+        this.executor = executor;
+        this.concurrency = concurrency;
+        this.onDeleted = onDeleted;
+        this.errorRecorder = errorRecorder;
+    }
+
+    /**
+     * 批量删除文件
+     *
+     * @param bucketName  存储空间
+     * @param objectNames 文件名
+     * @return 删除结果
+     */
+    DeleteResult delete(String bucketName, Iterator<String> objectNames) {
+
+        DeleteResult result = new DeleteResult();
+        Semaphore permits = new Semaphore(concurrency);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        List<String> chunk = new ArrayList<>(MAX_KEYS_PER_REQUEST);
+        while (objectNames.hasNext()) {
+            chunk.add(objectNames.next());
+            if (chunk.size() == MAX_KEYS_PER_REQUEST) {
+                futures.add(submit(bucketName, chunk, permits, result));
+                chunk = new ArrayList<>(MAX_KEYS_PER_REQUEST);
+            }
+        }
+
+        if (!chunk.isEmpty()) {
+            futures.add(submit(bucketName, chunk, permits, result));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        return result;
+    }
+
+    /**
+     * 开始增量删除, 由调用方逐个添加文件, 每满1000个提交一次请求
+     *
+     * @param bucketName 存储空间
+     * @return 增量删除
+     */
+    Batch batch(String bucketName) {
+        return new Batch(bucketName);
+    }
+
+    /**
+     * 提交一次删除请求, 正在执行的请求数达到上限时等待
+     */
+    private CompletableFuture<Void> submit(String bucketName, List<String> chunk, Semaphore permits, DeleteResult result) {
+
+        permits.acquireUninterruptibly();
+        try {
+            return CompletableFuture.runAsync(() -> deleteChunk(bucketName, chunk, result), executor)
+                    .whenComplete((v, e) -> permits.release());
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void deleteChunk(String bucketName, List<String> chunk, DeleteResult result) {
+
+        Set<String> deleted;
+        String reason;
+        try {
+            DeleteObjectsResult deleteObjectsResult = oss.deleteObjects(new DeleteObjectsRequest(bucketName)
+                    .withKeys(chunk)
+                    .withQuiet(Boolean.FALSE));
+            deleted = new HashSet<>(deleteObjectsResult.getDeletedObjects());
+            reason = "not deleted";
+        } catch (Exception e) {
+            errorRecorder.record(e);
+            deleted = Collections.emptySet();
+            reason = e.getMessage();
+        }
+
+        synchronized (result) {
+            for (String objectName : chunk) {
+                if (deleted.contains(objectName)) {
+                    result.setDeletedCount(result.getDeletedCount() + 1);
+                } else {
+                    result.getFailedKeys().put(objectName, reason);
+                }
+            }
+        }
+
+        deleted.forEach(objectName -> onDeleted.accept(bucketName, objectName));
+    }
+
+    /**
+     * 增量删除, 可在多个线程中添加文件
+     *
+     * 添加文件的线程可能是请求线程池中的线程, 为避免互相等待提交时不限制并发数, 请求数受添加文件的速度限制
+     */
+    class Batch {
+
+        private final String bucketName;
+        private final DeleteResult result = new DeleteResult();
+        private final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        private List<String> chunk = new ArrayList<>(MAX_KEYS_PER_REQUEST);
+
+        private Batch(String bucketName) {
+            this.bucketName = bucketName;
+        }
+
+        /**
+         * 添加待删除的文件, 满1000个时提交删除请求
+         *
+         * @param objectName 文件名
+         */
+        synchronized void add(String objectName) {
+            chunk.add(objectName);
+            if (chunk.size() == MAX_KEYS_PER_REQUEST) {
+                flush();
+            }
+        }
+
+        /**
+         * 提交剩余的文件并等待全部删除请求完成
+         *
+         * @return 删除结果
+         */
+        DeleteResult finish() {
+
+            CompletableFuture<?>[] pending;
+            synchronized (this) {
+                if (!chunk.isEmpty()) {
+                    flush();
+                }
+                pending = futures.toArray(new CompletableFuture[0]);
+            }
+            CompletableFuture.allOf(pending).join();
+
+            return result;
+        }
+
+        private void flush() {
+            List<String> objectNames = chunk;
+            futures.add(CompletableFuture.runAsync(() -> deleteChunk(bucketName, objectNames, result), executor));
+            chunk = new ArrayList<>(MAX_KEYS_PER_REQUEST);
+        }
+    }
+
+}
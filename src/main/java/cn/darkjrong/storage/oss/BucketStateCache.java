@@ -0,0 +1,111 @@
+package cn.darkjrong.storage.oss;
+
+import cn.darkjrong.storage.utils.ExpiringLruCache;
+import com.aliyun.oss.OSS;
+import com.aliyun.oss.model.AccessControlList;
+import com.aliyun.oss.model.BucketInfo;
+
+/**
+ * 存储空间状态缓存(是否存在, 地域, 访问权限, 空间信息)
+ *
+ * @author Rong.Jia
+ * @date 2020/06/15 11:26
+ */
+class BucketStateCache {
+
+    private final OSS oss;
+    private final ExpiringLruCache<String, Boolean> existences;
+    private final ExpiringLruCache<String, String> locations;
+    private final ExpiringLruCache<String, AccessControlList> acls;
+    private final ExpiringLruCache<String, BucketInfo> infos;
+
+    /**
+     * 构造缓存
+     *
+     * @param oss     oss
+     * @param maxSize 最大缓存条数
+     * @param ttl     过期时间, 单位毫秒
+     */
+    BucketStateCache(OSS oss, int maxSize, long ttl) {
+        this.oss = oss;
+        this.existences = new ExpiringLruCache<>(maxSize, ttl);
+        this.locations = new ExpiringLruCache<>(maxSize, ttl);
+        this.acls = new ExpiringLruCache<>(maxSize, ttl);
+        this.infos = new ExpiringLruCache<>(maxSize, ttl);
+    }
+
+    boolean doesBucketExist(String bucketName) {
+
+        Boolean exists = existences.get(bucketName);
+        if (exists == null) {
+            exists = oss.doesBucketExist(bucketName);
+            existences.put(bucketName, exists);
+        }
+
+        return exists;
+    }
+
+    /**
+     * 记录存储空间是否存在
+     */
+    void setExists(String bucketName, boolean exists) {
+        existences.put(bucketName, exists);
+    }
+
+    String getBucketLocation(String bucketName) {
+
+        String location = locations.get(bucketName);
+        if (location == null) {
+            location = oss.getBucketLocation(bucketName);
+            locations.put(bucketName, location);
+        }
+
+        return location;
+    }
+
+    AccessControlList getBucketAcl(String bucketName) {
+
+        AccessControlList acl = acls.get(bucketName);
+        if (acl == null) {
+            acl = oss.getBucketAcl(bucketName);
+            acls.put(bucketName, acl);
+        }
+
+        return acl;
+    }
+
+    BucketInfo getBucketInfo(String bucketName) {
+
+        BucketInfo info = infos.get(bucketName);
+        if (info == null) {
+            info = oss.getBucketInfo(bucketName);
+            infos.put(bucketName, info);
+            existences.put(bucketName, Boolean.TRUE);
+        }
+
+        return info;
+    }
+
+    /**
+     * 移除存储空间的全部缓存状态
+     *
+     * @param bucketName 存储空间
+     */
+    void refresh(String bucketName) {
+        existences.remove(bucketName);
+        locations.remove(bucketName);
+        acls.remove(bucketName);
+        infos.remove(bucketName);
+    }
+
+    /**
+     * 清空缓存
+     */
+    void refreshAll() {
+        existences.clear();
+        locations.clear();
+        acls.clear();
+        infos.clear();
+    }
+
+}
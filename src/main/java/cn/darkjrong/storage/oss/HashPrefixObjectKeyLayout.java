@@ -0,0 +1,94 @@
+package cn.darkjrong.storage.oss;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.util.Assert;
+
+import static cn.darkjrong.storage.utils.FileUtils.SLASH;
+
+/**
+ * 哈希前缀布局, 对象名为 哈希前缀/目录/文件名
+ *
+ * OSS 按对象名范围分区, 同一目录下的文件名前缀相同, 高并发写入时集中在同一分区而被限流;
+ * 在前面加上由路径哈希得到的短前缀, 使写入分散到多个分区. 前缀由路径确定, 可通过 {@link #layout} 重新计算,
+ * 或通过 {@link #resolve} 去除
+ *
+ * 同一目录下的文件分散在不同前缀中, 不能再按目录前缀列举
+ *
+ * @author Rong.Jia
+ * @date 2020/06/27 09:30
+ */
+public class HashPrefixObjectKeyLayout implements ObjectKeyLayout {
+
+    /**
+     * 默认前缀长度, 2位十六进制, 共256个前缀
+     */
+    public static final int DEFAULT_PREFIX_LENGTH = 2;
+
+    private static final int MAX_PREFIX_LENGTH = 8;
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    private final int prefixLength;
+
+    public HashPrefixObjectKeyLayout() {
+        this(DEFAULT_PREFIX_LENGTH);
+    }
+
+    /**
+     * 构造哈希前缀布局
+     *
+     * @param prefixLength 前缀长度(十六进制位数), 1 - 8
+     */
+    public HashPrefixObjectKeyLayout(int prefixLength) {
+        Assert.isTrue(prefixLength > 0 && prefixLength <= MAX_PREFIX_LENGTH, "'prefixLength' must be between 1 and 8");
+        this.prefixLength = prefixLength;
+    }
+
+    @Override
+    public String layout(String dir, String fileName) {
+
+        String path = PlainObjectKeyLayout.INSTANCE.layout(dir, fileName);
+        return prefix(path) + SLASH + path;
+    }
+
+    @Override
+    public String resolve(String objectName) {
+
+        if (StringUtils.length(objectName) <= prefixLength + 1 || objectName.charAt(prefixLength) != '/') {
+            return objectName;
+        }
+
+        String path = objectName.substring(prefixLength + 1);
+        return objectName.startsWith(prefix(path)) ? path : objectName;
+    }
+
+    /**
+     * 路径的哈希前缀
+     *
+     * @param path 目录/文件名
+     * @return 前缀
+     */
+    public String prefix(String path) {
+
+        int hash = mix(path.hashCode());
+
+        char[] chars = new char[prefixLength];
+        for (int i = 0; i < prefixLength; i++) {
+            chars[i] = DIGITS[(hash >>> (28 - 4 * i)) & 0xF];
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * murmur3 混淆, 使相近的路径得到分散的高位
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+}
@@ -0,0 +1,201 @@
+package cn.darkjrong.storage.oss;
+
+import cn.darkjrong.storage.utils.IntegrityException;
+import com.aliyun.oss.common.utils.CRC64;
+import com.aliyun.oss.model.ObjectMetadata;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * 读取数据的同时计算 CRC64 和 MD5
+ *
+ * mark/reset 透传给被包装的流, reset 时校验状态同时回到 mark 的位置, 重试时重复读取的数据只计算一次
+ *
+ * @author Rong.Jia
+ * @date 2020/06/29 09:40
+ */
+class IntegrityInputStream extends FilterInputStream {
+
+    private static final String NORMAL_OBJECT_TYPE = "Normal";
+
+    private CRC64 crc64;
+    private MessageDigest md5;
+    private long count;
+
+    /**
+     * mark 时的校验状态, 未调用 mark 时为初始状态
+     */
+    private long markedCrc64;
+    private MessageDigest markedMd5;
+    private long markedCount;
+
+    IntegrityInputStream(InputStream in, IntegrityMode mode) {
+        super(in);
+        this.crc64 = mode.isCrc64() ? new CRC64() : null;
+        this.md5 = mode.isMd5() ? newMd5() : null;
+        this.markedMd5 = copy(md5);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            update(new byte[]{(byte) b}, 0, 1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            update(b, off, n);
+        }
+        return n;
+    }
+
+    /**
+     * 跳过的数据也需计入校验值
+     */
+    @Override
+    public long skip(long n) throws IOException {
+
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        int read;
+        while (skipped < n && (read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped))) != -1) {
+            skipped += read;
+        }
+
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return in.markSupported();
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        in.mark(readlimit);
+        markedCrc64 = crc64 == null ? 0L : crc64.getValue();
+        markedMd5 = copy(md5);
+        markedCount = count;
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        in.reset();
+        if (crc64 != null) {
+            crc64 = new CRC64(markedCrc64);
+        }
+        md5 = copy(markedMd5);
+        count = markedCount;
+    }
+
+    private void update(byte[] b, int off, int len) {
+        if (crc64 != null) {
+            crc64.update(b, off, len);
+        }
+        if (md5 != null) {
+            md5.update(b, off, len);
+        }
+        count += len;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    Long getCrc64() {
+        return crc64 == null ? null : crc64.getValue();
+    }
+
+    /**
+     * 比较本地与服务端的校验值, 服务端未返回的校验值跳过
+     *
+     * @param serverCrc64  服务端 CRC64
+     * @param serverMd5Hex 服务端 MD5 十六进制
+     * @param target       校验的文件, 用于异常信息
+     */
+    void verify(Long serverCrc64, String serverMd5Hex, String target) {
+
+        if (crc64 != null) {
+            verifyCrc64(crc64.getValue(), serverCrc64, target);
+        }
+
+        if (md5 != null && serverMd5Hex != null) {
+            String clientMd5Hex = toHex(md5.digest());
+            if (!clientMd5Hex.equalsIgnoreCase(serverMd5Hex)) {
+                throw new IntegrityException("MD5", target, clientMd5Hex, serverMd5Hex);
+            }
+        }
+    }
+
+    /**
+     * 比较 CRC64, 服务端未返回时跳过
+     */
+    static void verifyCrc64(long clientCrc64, Long serverCrc64, String target) {
+        if (serverCrc64 != null && clientCrc64 != serverCrc64) {
+            throw new IntegrityException("CRC64", target, Long.toUnsignedString(clientCrc64), Long.toUnsignedString(serverCrc64));
+        }
+    }
+
+    /**
+     * 服务端 MD5: 优先使用 Content-MD5, 普通上传的文件使用 ETag, 分片和追加上传的 ETag 不是 MD5
+     *
+     * @param metadata 元信息
+     * @return MD5 十六进制, 无法获取时返回null
+     */
+    static String md5Hex(ObjectMetadata metadata) {
+
+        String contentMd5 = metadata.getContentMD5();
+        if (StringUtils.isNotEmpty(contentMd5)) {
+            return toHex(Base64.getDecoder().decode(contentMd5));
+        }
+
+        return NORMAL_OBJECT_TYPE.equals(metadata.getObjectType()) ? eTagMd5Hex(metadata.getETag()) : null;
+    }
+
+    /**
+     * ETag 去除引号后的 MD5 十六进制
+     */
+    static String eTagMd5Hex(String eTag) {
+        return StringUtils.isEmpty(eTag) ? null : StringUtils.strip(eTag, "\"");
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+            chars[i * 2 + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 复制摘要的计算状态, 可多次回到同一个 mark
+     */
+    private static MessageDigest copy(MessageDigest digest) {
+        try {
+            return digest == null ? null : (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MessageDigest newMd5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
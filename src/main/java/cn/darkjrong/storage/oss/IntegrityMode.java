@@ -0,0 +1,43 @@
+package cn.darkjrong.storage.oss;
+
+/**
+ * 上传下载时的数据校验方式, 校验值在数据流经时计算, 不再次读取文件
+ *
+ * @author Rong.Jia
+ * @date 2020/06/29 09:20
+ */
+public enum IntegrityMode {
+
+    /**
+     * 不校验
+     */
+    NONE,
+
+    /**
+     * 校验 CRC64, 分片上传、分段下载按分片合并
+     */
+    CRC64,
+
+    /**
+     * 校验 MD5, 与 Content-MD5 或普通上传文件的 ETag 比较
+     */
+    MD5,
+
+    /**
+     * 同时校验 CRC64 和 MD5
+     */
+    ALL;
+
+    public boolean isCrc64() {
+        return this == CRC64 || this == ALL;
+    }
+
+    public boolean isMd5() {
+        return this == MD5 || this == ALL;
+    }
+
+    public boolean isEnabled() {
+        return this != NONE;
+    }
+
+}
@@ -0,0 +1,312 @@
+package cn.darkjrong.storage.oss;
+
+import cn.darkjrong.storage.utils.FileRangeInputStream;
+import com.aliyun.oss.OSS;
+import com.aliyun.oss.OSSErrorCode;
+import com.aliyun.oss.OSSException;
+import com.aliyun.oss.common.utils.CRC64;
+import com.aliyun.oss.model.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * 并发分片上传
+ *
+ * @author Rong.Jia
+ * @date 2020/06/08 10:36
+ */
+class MultipartUploader {
+
+    private static final Logger log = LoggerFactory.getLogger(MultipartUploader.class);
+
+    /**
+     * 分片号取值范围是1~10000
+     */
+    static final int MAX_PART_COUNT = 10000;
+
+    /**
+     * 除了最后一个分片, 其他的分片最小为100KB
+     */
+    static final long MIN_PART_SIZE = 100 * 1024L;
+
+    private final OSS oss;
+    private final ExecutorService executor;
+    private final long partSize;
+    private final IntegrityMode integrityMode;
+
+    MultipartUploader(OSS oss, ExecutorService executor, long partSize) {
+        this(oss, executor, partSize, IntegrityMode.NONE);
+    }
+
+    MultipartUploader(OSS oss, ExecutorService executor, long partSize, IntegrityMode integrityMode) {
+        this.oss = oss;
+        this.executor = executor;
+        this.partSize = partSize;
+        this.integrityMode = integrityMode;
+    }
+
+    /**
+     * 计算实际分片大小, 保证分片数不超过上限
+     *
+     * @param fileLength 文件大小
+     * @param partSize   期望分片大小
+     * @return 分片大小
+     */
+    static long calculatePartSize(long fileLength, long partSize) {
+
+        long size = Math.max(partSize, MIN_PART_SIZE);
+        long minSize = (fileLength + MAX_PART_COUNT - 1) / MAX_PART_COUNT;
+
+        return Math.max(size, minSize);
+    }
+
+    /**
+     * 并发上传文件分片, 每个分片只读取自身的区间
+     *
+     * @param bucketName 存储空间
+     * @param objectName 对象名
+     * @param file       本地文件
+     * @throws IOException 上传异常
+     */
+    void upload(String bucketName, String objectName, File file) throws IOException {
+        upload(bucketName, objectName, file, null);
+    }
+
+    /**
+     * 并发上传文件分片, 指定断点文件时只上传缺失的分片, 失败后保留断点供下次续传;
+     * 续传完成时服务端返回 InvalidPart(断点记录的分片与已上传的不一致)则取消该上传并重新开始
+     *
+     * @param bucketName     存储空间
+     * @param objectName     对象名
+     * @param file           本地文件
+     * @param checkpointFile 断点文件, 为空时不续传, 失败后取消分片上传
+     * @throws IOException 上传异常
+     */
+    void upload(String bucketName, String objectName, File file, File checkpointFile) throws IOException {
+        upload(bucketName, objectName, file, checkpointFile, null);
+    }
+
+    /**
+     * 并发上传文件分片, 每个分片上传成功后累加传输进度
+     *
+     * @param bucketName     存储空间
+     * @param objectName     对象名
+     * @param file           本地文件
+     * @param checkpointFile 断点文件, 为空时不续传, 失败后取消分片上传
+     * @param progress       传输进度, 可为空
+     * @throws IOException 上传异常
+     */
+    void upload(String bucketName, String objectName, File file, File checkpointFile, TransferProgress progress) throws IOException {
+
+        long fileLength = file.length();
+        long curPartSize = calculatePartSize(fileLength, partSize);
+        int partCount = (int) ((fileLength + curPartSize - 1) / curPartSize);
+        partCount = Math.max(partCount, 1);
+
+        UploadCheckpoint checkpoint = UploadCheckpoint.load(checkpointFile);
+        if (checkpoint != null && !checkpoint.matches(bucketName, objectName, curPartSize, file)) {
+
+            // 文件已变化, 旧的分片不可再用
+            abort(bucketName, objectName, checkpoint.getUploadId());
+            checkpoint = null;
+        }
+
+        if (checkpoint != null && !isUploadAlive(bucketName, objectName, checkpoint.getUploadId())) {
+
+            // 已失效的上传事件可能仍有残留分片
+            abort(bucketName, objectName, checkpoint.getUploadId());
+            checkpoint = null;
+        }
+
+        boolean resumed = checkpoint != null;
+        if (checkpoint == null) {
+
+            InitiateMultipartUploadRequest request = new InitiateMultipartUploadRequest(bucketName, objectName);
+            String uploadId = oss.initiateMultipartUpload(request).getUploadId();
+
+            checkpoint = new UploadCheckpoint(checkpointFile, uploadId, bucketName, objectName,
+                    curPartSize, fileLength, file.lastModified());
+            checkpoint.save();
+        }
+
+        String uploadId = checkpoint.getUploadId();
+        UploadCheckpoint current = checkpoint;
+
+        List<Future<PartETag>> futures = new ArrayList<>(partCount);
+        boolean restart = false;
+        try {
+
+            for (int i = 0; i < partCount; i++) {
+                int partNumber = i + 1;
+                long startPos = i * curPartSize;
+                long size = Math.min(curPartSize, fileLength - startPos);
+                if (current.isCompleted(partNumber)) {
+                    if (progress != null) {
+                        progress.add(size);
+                    }
+                    continue;
+                }
+
+                futures.add(executor.submit(() -> {
+                    PartETag partETag = uploadPart(bucketName, objectName, uploadId, file, partNumber, startPos, size);
+                    current.complete(partETag);
+                    if (progress != null) {
+                        progress.add(size);
+                    }
+                    return partETag;
+                }));
+            }
+
+            for (Future<PartETag> future : futures) {
+                future.get();
+            }
+
+            // partETags必须按分片号升序排列。
+            List<PartETag> partETags = current.getPartETags();
+            partETags.sort(Comparator.comparingInt(PartETag::getPartNumber));
+            CompleteMultipartUploadResult result = oss.completeMultipartUpload(
+                    new CompleteMultipartUploadRequest(bucketName, objectName, uploadId, partETags));
+            if (integrityMode.isCrc64()) {
+                verifyCrc64(partETags, result.getServerCRC(), bucketName + "/" + objectName);
+            }
+            current.delete();
+        } catch (Exception e) {
+            futures.forEach(future -> future.cancel(true));
+            if (!resumed || !(e instanceof OSSException) || !OSSErrorCode.INVALID_PART.equals(((OSSException) e).getErrorCode())) {
+                if (checkpointFile == null) {
+                    abort(bucketName, objectName, uploadId);
+                }
+                throw unwrap(e);
+            }
+
+            // 断点记录中的分片与服务端不一致, 续传无法完成
+            log.warn("checkpoint upload {} has invalid parts, restart it: {}", uploadId, e.getMessage());
+            restart = true;
+        }
+
+        if (restart) {
+            abort(bucketName, objectName, uploadId);
+            current.delete();
+            if (progress != null) {
+                progress.add(-fileLength);
+            }
+            upload(bucketName, objectName, file, checkpointFile, progress);
+        }
+    }
+
+    /**
+     * 判断断点记录的分片上传事件是否仍然有效, 只有 NoSuchUpload 视为失效, 其他异常(超时、限流等)直接抛出
+     */
+    private boolean isUploadAlive(String bucketName, String objectName, String uploadId) {
+        try {
+            ListPartsRequest request = new ListPartsRequest(bucketName, objectName, uploadId);
+            request.setMaxParts(1);
+            oss.listParts(request);
+            return true;
+        } catch (OSSException e) {
+            if (!OSSErrorCode.NO_SUCH_UPLOAD.equals(e.getErrorCode())) {
+                throw e;
+            }
+            log.warn("checkpoint upload {} is no longer available, restart it: {}", uploadId, e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * 上传单个分片
+     */
+    private PartETag uploadPart(String bucketName, String objectName, String uploadId,
+                                File file, int partNumber, long startPos, long size) throws IOException {
+
+        try (InputStream inputStream = new FileRangeInputStream(file, startPos, size)) {
+
+            IntegrityInputStream checked = integrityMode.isEnabled() ? new IntegrityInputStream(inputStream, integrityMode) : null;
+
+            UploadPartRequest uploadPartRequest = new UploadPartRequest();
+            uploadPartRequest.setBucketName(bucketName);
+            uploadPartRequest.setKey(objectName);
+            uploadPartRequest.setUploadId(uploadId);
+            uploadPartRequest.setInputStream(checked == null ? inputStream : checked);
+            uploadPartRequest.setPartSize(size);
+            uploadPartRequest.setPartNumber(partNumber);
+
+            UploadPartResult result = oss.uploadPart(uploadPartRequest);
+            PartETag partETag = result.getPartETag();
+            if (checked == null) {
+                return partETag;
+            }
+
+            // 分片的 ETag 为分片数据的 MD5
+            checked.verify(result.getServerCRC(), IntegrityInputStream.eTagMd5Hex(partETag.getETag()),
+                    bucketName + "/" + objectName + " part " + partNumber);
+
+            return new PartETag(partNumber, partETag.getETag(), size, checked.getCrc64());
+        }
+    }
+
+    /**
+     * 按分片顺序合并各分片的 CRC64, 与完成上传后整个文件的 CRC64 比较
+     *
+     * 断点记录中保存了已上传分片的 CRC64, 续传后同样比较整个文件;
+     * 未开启校验时写入的断点记录没有分片 CRC64, 此时无法合并, 跳过整个文件的比较(各分片上传时已单独校验)
+     */
+    private static void verifyCrc64(List<PartETag> partETags, Long serverCrc64, String target) {
+
+        long crc64 = 0L;
+        for (PartETag partETag : partETags) {
+            if (partETag.getPartCRC() == null) {
+                return;
+            }
+            crc64 = CRC64.combine(crc64, partETag.getPartCRC(), partETag.getPartSize());
+        }
+
+        IntegrityInputStream.verifyCrc64(crc64, serverCrc64, target);
+    }
+
+    /**
+     * 取消分片上传, 避免残留碎片
+     */
+    private void abort(String bucketName, String objectName, String uploadId) {
+        try {
+            oss.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, objectName, uploadId));
+        } catch (Exception e) {
+            log.error("abortMultipartUpload {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 解包并发执行异常
+     */
+    static IOException unwrap(Exception e) {
+
+        Throwable cause = e;
+        if (cause instanceof ExecutionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+
+        if (cause instanceof InterruptedException) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+
+        return new IOException(cause.getMessage(), cause);
+    }
+
+}
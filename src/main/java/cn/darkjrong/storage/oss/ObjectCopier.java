@@ -0,0 +1,174 @@
+package cn.darkjrong.storage.oss;
+
+import cn.darkjrong.storage.metrics.StorageErrorRecorder;
+import cn.darkjrong.storage.oss.domain.CopyResult;
+import cn.darkjrong.storage.oss.domain.MergeSource;
+import com.aliyun.oss.OSS;
+import com.aliyun.oss.model.CopyObjectRequest;
+import com.aliyun.oss.model.OSSObjectSummary;
+import com.aliyun.oss.model.ObjectMetadata;
+import com.aliyun.oss.model.SimplifiedObjectMeta;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * 服务端拷贝, 不超过1GB的文件单次拷贝, 更大的文件并发分片拷贝
+ *
+ * @author Rong.Jia
+ * @date 2020/06/19 14:20
+ */
+class ObjectCopier {
+
+    /**
+     * 单次拷贝的文件大小上限 1GB
+     */
+    static final long MAX_COPY_OBJECT_SIZE = 1024 * 1024 * 1024L;
+
+    private final OSS oss;
+    private final ExecutorService requestExecutor;
+    private final ExecutorService shardExecutor;
+    private final long partSize;
+    private final int concurrency;
+
+    /**
+     * 拷贝成功后回调(目标存储空间, 目标文件名)
+     */
+    private final BiConsumer<String, String> onCopied;
+
+    /**
+     * 记录按前缀拷贝时单个文件的异常, 在线程池中调用, 需绑定发起拷贝的操作
+     */
+    private final StorageErrorRecorder errorRecorder;
+
+    ObjectCopier(OSS oss, ExecutorService requestExecutor, ExecutorService shardExecutor, long partSize,
+                 int concurrency, BiConsumer<String, String> onCopied, StorageErrorRecorder errorRecorder) {
+        this.oss = oss;
+        this.requestExecutor = requestExecutor;
+        this.shardExecutor = shardExecutor;
+        this.partSize = partSize;
+        this.concurrency = Math.max(1, concurrency);
+        this.onCopied = onCopied;
+        this.errorRecorder = errorRecorder;
+    }
+
+    /**
+     * 拷贝文件
+     *
+     * @param sourceBucketName 源存储空间
+     * @param sourceKey        源文件名
+     * @param targetBucketName 目标存储空间
+     * @param targetKey        目标文件名
+     * @throws IOException 拷贝异常
+     */
+    void copy(String sourceBucketName, String sourceKey, String targetBucketName, String targetKey) throws IOException {
+
+        SimplifiedObjectMeta meta = oss.getSimplifiedObjectMeta(sourceBucketName, sourceKey);
+        copy(sourceBucketName, sourceKey, targetBucketName, targetKey, meta.getSize(), meta.getETag());
+    }
+
+    /**
+     * 拷贝指定前缀的全部文件, 目标文件名为 目标前缀 + 源文件名去掉源前缀, 并发数受限
+     *
+     * @param sourceBucketName 源存储空间
+     * @param sourcePrefix     源文件前缀
+     * @param summaries        源文件
+     * @param targetBucketName 目标存储空间
+     * @param targetPrefix     目标文件前缀
+     * @param onSucceed        单个文件拷贝成功后回调(源文件名)
+     * @return 拷贝结果
+     * @throws IllegalArgumentException 同一存储空间内目标前缀位于源前缀之下, 边列举边拷贝时会重复拷贝已拷贝的文件
+     */
+    CopyResult copyByPrefix(String sourceBucketName, String sourcePrefix, Iterator<OSSObjectSummary> summaries,
+                            String targetBucketName, String targetPrefix, Consumer<String> onSucceed) {
+
+        String prefix = StringUtils.defaultString(sourcePrefix);
+        if (StringUtils.equals(sourceBucketName, targetBucketName) && StringUtils.defaultString(targetPrefix).startsWith(prefix)) {
+            throw new IllegalArgumentException("target prefix '" + targetPrefix + "' must not be under source prefix '" + sourcePrefix + "' in the same bucket");
+        }
+        CopyResult result = new CopyResult();
+        Semaphore permits = new Semaphore(concurrency);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        while (summaries.hasNext()) {
+
+            OSSObjectSummary summary = summaries.next();
+            String sourceKey = summary.getKey();
+            String targetKey = StringUtils.defaultString(targetPrefix) + sourceKey.substring(prefix.length());
+
+            permits.acquireUninterruptibly();
+            try {
+                futures.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        copy(sourceBucketName, sourceKey, targetBucketName, targetKey, summary.getSize(), summary.getETag());
+                        synchronized (result) {
+                            result.setCopiedCount(result.getCopiedCount() + 1);
+                        }
+                        onSucceed.accept(sourceKey);
+                    } catch (Exception e) {
+                        errorRecorder.record(e);
+                        synchronized (result) {
+                            result.getFailedKeys().put(sourceKey, e.getMessage());
+                        }
+                    }
+                }, requestExecutor).whenComplete((v, e) -> permits.release()));
+            } catch (RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        return result;
+    }
+
+    private void copy(String sourceBucketName, String sourceKey, String targetBucketName, String targetKey,
+                      long size, String eTag) throws IOException {
+
+        if (size <= MAX_COPY_OBJECT_SIZE) {
+            CopyObjectRequest request = new CopyObjectRequest(sourceBucketName, sourceKey, targetBucketName, targetKey);
+            request.setMatchingETagConstraints(Collections.singletonList(eTag));
+            oss.copyObject(request);
+        } else {
+            new ObjectMerger(oss, shardExecutor, partSize, concurrency).merge(targetBucketName, targetKey,
+                    Collections.singletonList(MergeSource.object(sourceBucketName, sourceKey)),
+                    copyMetadata(oss.getObjectMetadata(sourceBucketName, sourceKey)));
+        }
+
+        onCopied.accept(targetBucketName, targetKey);
+    }
+
+    /**
+     * 分片拷贝不会保留源文件的元信息, 取出可设置的部分
+     */
+    private static ObjectMetadata copyMetadata(ObjectMetadata source) {
+
+        ObjectMetadata metadata = new ObjectMetadata();
+        if (source.getContentType() != null) {
+            metadata.setContentType(source.getContentType());
+        }
+        if (source.getContentEncoding() != null) {
+            metadata.setContentEncoding(source.getContentEncoding());
+        }
+        if (source.getContentDisposition() != null) {
+            metadata.setContentDisposition(source.getContentDisposition());
+        }
+        if (source.getCacheControl() != null) {
+            metadata.setCacheControl(source.getCacheControl());
+        }
+        metadata.setUserMetadata(source.getUserMetadata());
+
+        return metadata;
+    }
+
+}
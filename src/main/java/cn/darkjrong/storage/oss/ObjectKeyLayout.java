@@ -0,0 +1,30 @@
+package cn.darkjrong.storage.oss;
+
+/**
+ * OssClient 生成对象名时的布局, 注册为 Bean 时替换配置的布局
+ *
+ * 只作用于由 OssClient 生成对象名的上传方法, 调用方直接指定对象名的方法原样使用
+ *
+ * @author Rong.Jia
+ * @date 2020/06/27 09:10
+ */
+public interface ObjectKeyLayout {
+
+    /**
+     * 生成对象名
+     *
+     * @param dir      目录, 可为空
+     * @param fileName 文件名
+     * @return 对象名
+     */
+    String layout(String dir, String fileName);
+
+    /**
+     * 由对象名还原布局前的路径(目录/文件名)
+     *
+     * @param objectName 对象名
+     * @return 布局前的路径, 不是该布局生成的对象名时原样返回
+     */
+    String resolve(String objectName);
+
+}
@@ -0,0 +1,117 @@
+package cn.darkjrong.storage.oss;
+
+import com.aliyun.oss.OSS;
+import com.aliyun.oss.model.ListObjectsRequest;
+import com.aliyun.oss.model.OSSObjectSummary;
+import com.aliyun.oss.model.ObjectListing;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * 分页列举文件, 按marker逐页获取, 消费当前页的同时在后台预取下一页
+ *
+ * @author Rong.Jia
+ * @date 2020/06/16 10:05
+ */
+class ObjectListingIterator implements Iterator<OSSObjectSummary> {
+
+    /**
+     * 单次列举最多1000个文件
+     */
+    static final int MAX_KEYS = 1000;
+
+    private final OSS oss;
+    private final String bucketName;
+    private final String prefix;
+    private final int maxKeys;
+
+    /**
+     * 预取线程池, 为空时在调用线程中同步获取
+     */
+    private final Executor executor;
+
+    private Iterator<OSSObjectSummary> current = Collections.emptyIterator();
+    private String nextMarker;
+    private boolean truncated = Boolean.TRUE;
+    private CompletableFuture<ObjectListing> prefetched;
+
+    ObjectListingIterator(OSS oss, String bucketName, String prefix, int maxKeys, Executor executor) {
+        this(oss, bucketName, prefix, null, maxKeys, executor);
+    }
+
+    /**
+     * 构造分页列举
+     *
+     * @param oss        oss
+     * @param bucketName 存储空间
+     * @param prefix     文件前缀
+     * @param marker     从该文件之后开始列举(不包含), 为空时从头开始
+     * @param maxKeys    每页文件数, 最大1000
+     * @param executor   预取线程池, 为空时同步获取
+     */
+    ObjectListingIterator(OSS oss, String bucketName, String prefix, String marker, int maxKeys, Executor executor) {
+        this.oss = oss;
+        this.bucketName = bucketName;
+        this.prefix = prefix;
+        this.nextMarker = marker;
+        this.maxKeys = Math.max(1, Math.min(maxKeys, MAX_KEYS));
+        this.executor = executor;
+    }
+
+    @Override
+    public boolean hasNext() {
+
+        while (!current.hasNext() && truncated) {
+
+            ObjectListing objectListing = prefetched == null ? oss.listObjects(request(nextMarker)) : join(prefetched);
+            prefetched = null;
+
+            nextMarker = objectListing.getNextMarker();
+            truncated = objectListing.isTruncated();
+
+            // 先发起下一页请求, 再消费当前页
+            if (truncated && executor != null) {
+                ListObjectsRequest request = request(nextMarker);
+                prefetched = CompletableFuture.supplyAsync(() -> oss.listObjects(request), executor);
+            }
+
+            current = objectListing.getObjectSummaries().iterator();
+        }
+
+        return current.hasNext();
+    }
+
+    @Override
+    public OSSObjectSummary next() {
+
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        return current.next();
+    }
+
+    private ListObjectsRequest request(String marker) {
+        return new ListObjectsRequest(bucketName)
+                .withPrefix(prefix)
+                .withMarker(marker)
+                .withMaxKeys(maxKeys);
+    }
+
+    private static ObjectListing join(CompletableFuture<ObjectListing> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+}
@@ -0,0 +1,282 @@
+package cn.darkjrong.storage.oss;
+
+import cn.darkjrong.storage.oss.domain.MergeSource;
+import com.aliyun.oss.OSS;
+import com.aliyun.oss.model.*;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import static cn.darkjrong.storage.utils.FileUtils.BUFFER_SIZE;
+
+/**
+ * 服务端合并文件, OSS中已有的文件通过分片拷贝在服务端并发复制, 输入流作为普通分片上传
+ *
+ * 不足100KB的数据(小文件、文件首尾)先读入缓冲区, 与相邻数据拼成普通分片, 保证除最后一个分片外都不小于100KB
+ *
+ * @author Rong.Jia
+ * @date 2020/06/19 09:40
+ */
+class ObjectMerger {
+
+    private static final Logger log = LoggerFactory.getLogger(ObjectMerger.class);
+
+    /**
+     * 单个拷贝分片大小 256MB
+     */
+    static final long COPY_PART_SIZE = 256 * 1024 * 1024L;
+
+    private final OSS oss;
+    private final ExecutorService executor;
+    private final long partSize;
+    private final int concurrency;
+
+    ObjectMerger(OSS oss, ExecutorService executor, long partSize, int concurrency) {
+        this.oss = oss;
+        this.executor = executor;
+        this.partSize = Math.max(partSize, MultipartUploader.MIN_PART_SIZE);
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * 按顺序合并数据来源
+     *
+     * @param bucketName 存储空间
+     * @param objectName 合并后的对象名
+     * @param sources    数据来源
+     * @throws IOException 合并异常
+     */
+    void merge(String bucketName, String objectName, List<MergeSource> sources) throws IOException {
+        merge(bucketName, objectName, sources, null);
+    }
+
+    /**
+     * 按顺序合并数据来源
+     *
+     * @param bucketName 存储空间
+     * @param objectName 合并后的对象名
+     * @param sources    数据来源
+     * @param metadata   合并后的文件元信息, 为空时使用默认值
+     * @throws IOException 合并异常
+     */
+    void merge(String bucketName, String objectName, List<MergeSource> sources, ObjectMetadata metadata) throws IOException {
+
+        InitiateMultipartUploadRequest initiateRequest = new InitiateMultipartUploadRequest(bucketName, objectName, metadata);
+        String uploadId = oss.initiateMultipartUpload(initiateRequest).getUploadId();
+        Merge merge = new Merge(bucketName, objectName, uploadId);
+
+        try {
+            for (MergeSource source : sources) {
+                if (source.isObject()) {
+                    merge.appendObject(source.getBucketName(), source.getObjectName());
+                } else {
+                    merge.appendStream(source.getInputStream());
+                }
+            }
+
+            List<PartETag> partETags = merge.finish();
+            oss.completeMultipartUpload(new CompleteMultipartUploadRequest(bucketName, objectName, uploadId, partETags));
+        } catch (Exception e) {
+            merge.cancel();
+            abort(bucketName, objectName, uploadId);
+            throw MultipartUploader.unwrap(e);
+        }
+    }
+
+    private void abort(String bucketName, String objectName, String uploadId) {
+        try {
+            oss.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, objectName, uploadId));
+        } catch (Exception e) {
+            log.error("abortMultipartUpload {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 单次合并的状态, 分片按顺序编号, 并发执行
+     */
+    private class Merge {
+
+        private final String bucketName;
+        private final String objectName;
+        private final String uploadId;
+        private final Semaphore permits = new Semaphore(concurrency);
+        private final List<Future<PartETag>> futures = new ArrayList<>();
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        Merge(String bucketName, String objectName, String uploadId) {
+            this.bucketName = bucketName;
+            this.objectName = objectName;
+            this.uploadId = uploadId;
+        }
+
+        void appendStream(InputStream inputStream) throws IOException {
+
+            byte[] bytes = new byte[BUFFER_SIZE];
+            int length;
+            while ((length = inputStream.read(bytes)) > 0) {
+                buffer.write(bytes, 0, length);
+                if (buffer.size() >= partSize) {
+                    flush();
+                }
+            }
+        }
+
+        void appendObject(String sourceBucketName, String sourceKey) throws IOException {
+
+            // 固定源文件版本, 合并期间源文件被修改时失败
+            SimplifiedObjectMeta meta = oss.getSimplifiedObjectMeta(sourceBucketName, sourceKey);
+            String eTag = meta.getETag();
+            long size = meta.getSize();
+            long offset = 0;
+
+            // 缓冲区不足一个分片时, 用文件开头的数据补齐
+            if (buffer.size() > 0 && buffer.size() < MultipartUploader.MIN_PART_SIZE) {
+                offset = read(sourceBucketName, sourceKey, eTag, 0, Math.min(MultipartUploader.MIN_PART_SIZE - buffer.size(), size));
+            }
+
+            if (size - offset < MultipartUploader.MIN_PART_SIZE) {
+                read(sourceBucketName, sourceKey, eTag, offset, size - offset);
+                if (buffer.size() >= partSize) {
+                    flush();
+                }
+                return;
+            }
+
+            flush();
+            while (offset < size) {
+                long length = Math.min(COPY_PART_SIZE, size - offset);
+                if (size - offset - length < MultipartUploader.MIN_PART_SIZE) {
+                    length = size - offset;
+                }
+
+                long beginIndex = offset;
+                long partLength = length;
+                submit(partNumber -> {
+                    UploadPartCopyRequest request = new UploadPartCopyRequest(sourceBucketName, sourceKey,
+                            bucketName, objectName, uploadId, partNumber, beginIndex, partLength);
+                    request.setMatchingETagConstraints(Collections.singletonList(eTag));
+                    return oss.uploadPartCopy(request).getPartETag();
+                });
+                offset += length;
+            }
+        }
+
+        /**
+         * 上传剩余数据, 等待全部分片完成
+         *
+         * @return 按分片号排列的分片
+         */
+        List<PartETag> finish() throws Exception {
+
+            if (buffer.size() > 0 || futures.isEmpty()) {
+                flush(Boolean.TRUE);
+            }
+
+            List<PartETag> partETags = new ArrayList<>(futures.size());
+            for (Future<PartETag> future : futures) {
+                partETags.add(future.get());
+            }
+
+            return partETags;
+        }
+
+        void cancel() {
+            futures.forEach(future -> future.cancel(true));
+        }
+
+        /**
+         * 读取源文件区间到缓冲区
+         *
+         * @return 读取后的位置
+         */
+        private long read(String sourceBucketName, String sourceKey, String eTag, long offset, long length) throws IOException {
+
+            if (length <= 0) {
+                return offset;
+            }
+
+            GetObjectRequest request = new GetObjectRequest(sourceBucketName, sourceKey);
+            request.setRange(offset, offset + length - 1);
+            request.setMatchingETagConstraints(Collections.singletonList(eTag));
+
+            try (InputStream inputStream = oss.getObject(request).getObjectContent()) {
+                IOUtils.copyLarge(inputStream, buffer);
+            }
+
+            return offset + length;
+        }
+
+        private void flush() throws IOException {
+            flush(Boolean.FALSE);
+        }
+
+        private void flush(boolean force) throws IOException {
+
+            if (buffer.size() == 0 && !force) {
+                return;
+            }
+
+            byte[] content = buffer.toByteArray();
+            buffer.reset();
+
+            submit(partNumber -> {
+                UploadPartRequest request = new UploadPartRequest();
+                request.setBucketName(bucketName);
+                request.setKey(objectName);
+                request.setUploadId(uploadId);
+                request.setInputStream(new ByteArrayInputStream(content));
+                request.setPartSize(content.length);
+                request.setPartNumber(partNumber);
+                return oss.uploadPart(request).getPartETag();
+            });
+        }
+
+        /**
+         * 提交分片, 正在执行的分片数达到上限时等待
+         */
+        private void submit(PartTask task) throws IOException {
+
+            int partNumber = futures.size() + 1;
+            if (partNumber > MultipartUploader.MAX_PART_COUNT) {
+                throw new IOException("Too many parts to merge into " + objectName);
+            }
+
+            permits.acquireUninterruptibly();
+            Callable<PartETag> callable = () -> {
+                try {
+                    return task.run(partNumber);
+                } finally {
+                    permits.release();
+                }
+            };
+
+            try {
+                futures.add(executor.submit(callable));
+            } catch (RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 分片任务
+     */
+    private interface PartTask {
+
+        PartETag run(int partNumber) throws IOException;
+    }
+
+}
@@ -0,0 +1,150 @@
+package cn.darkjrong.storage.oss;
+
+import cn.darkjrong.storage.utils.ExpiringLruCache;
+import com.aliyun.oss.OSS;
+import com.aliyun.oss.OSSErrorCode;
+import com.aliyun.oss.OSSException;
+import com.aliyun.oss.model.ObjectMetadata;
+
+import java.util.Date;
+import java.util.HashMap;
+
+import static cn.darkjrong.storage.utils.FileUtils.SLASH;
+
+/**
+ * 文件元信息缓存, 文件不存在时同样缓存(较短的过期时间)
+ *
+ * 返回缓存元信息的副本, 调用方修改返回值不影响缓存;
+ * HEAD 请求期间发生过失效时不写入结果, 避免并发上传后仍返回旧的元信息或文件不存在
+ *
+ * @author Rong.Jia
+ * @date 2020/06/12 10:18
+ */
+class ObjectMetaCache {
+
+    /**
+     * 文件不存在标记
+     */
+    private static final ObjectMetadata MISSING = new ObjectMetadata();
+
+    private final OSS oss;
+    private final ExpiringLruCache<String, ObjectMetadata> cache;
+    private final long negativeTtl;
+
+    /**
+     * 失效次数, 用于判断 HEAD 请求期间是否有文件变更
+     */
+    private long invalidations;
+
+    /**
+     * 构造缓存
+     *
+     * @param oss         oss
+     * @param maxSize     最大缓存条数
+     * @param ttl         元信息过期时间, 单位毫秒
+     * @param negativeTtl 文件不存在的过期时间, 单位毫秒
+     */
+    ObjectMetaCache(OSS oss, int maxSize, long ttl, long negativeTtl) {
+        this.oss = oss;
+        this.cache = new ExpiringLruCache<>(maxSize, ttl);
+        this.negativeTtl = negativeTtl;
+    }
+
+    /**
+     * 获取文件元信息, 未命中时发起HEAD请求
+     *
+     * @param bucketName 存储空间
+     * @param objectName 对象名
+     * @return 元信息, 文件不存在返回null
+     */
+    ObjectMetadata getObjectMetadata(String bucketName, String objectName) {
+
+        String key = key(bucketName, objectName);
+        ObjectMetadata metadata = cache.get(key);
+        if (metadata != null) {
+            return metadata == MISSING ? null : copy(metadata);
+        }
+
+        long generation = generation();
+        try {
+            metadata = oss.getObjectMetadata(bucketName, objectName);
+            putIfUnchanged(key, metadata, null, generation);
+            return copy(metadata);
+        } catch (OSSException e) {
+            if (OSSErrorCode.NO_SUCH_KEY.equals(e.getErrorCode())) {
+                putIfUnchanged(key, MISSING, negativeTtl, generation);
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private synchronized long generation() {
+        return invalidations;
+    }
+
+    /**
+     * 请求期间没有失效时写入缓存
+     */
+    private synchronized void putIfUnchanged(String key, ObjectMetadata metadata, Long ttl, long generation) {
+        if (generation != invalidations) {
+            return;
+        }
+        if (ttl == null) {
+            cache.put(key, metadata);
+        } else {
+            cache.put(key, metadata, ttl);
+        }
+    }
+
+    /**
+     * 复制元信息, 日期类型的值同样复制
+     *
+     * @param source 元信息
+     * @return 副本
+     */
+    static ObjectMetadata copy(ObjectMetadata source) {
+
+        ObjectMetadata copy = new ObjectMetadata();
+        source.getRawMetadata().forEach((name, value) ->
+                copy.setHeader(name, value instanceof Date ? new Date(((Date) value).getTime()) : value));
+        copy.setUserMetadata(new HashMap<>(source.getUserMetadata()));
+
+        return copy;
+    }
+
+    /**
+     * 文件变更后移除缓存
+     *
+     * @param bucketName 存储空间
+     * @param objectName 对象名
+     */
+    synchronized void invalidate(String bucketName, String objectName) {
+        invalidations++;
+        cache.remove(key(bucketName, objectName));
+    }
+
+    /**
+     * 移除存储空间下的全部缓存
+     *
+     * @param bucketName 存储空间
+     */
+    synchronized void invalidateBucket(String bucketName) {
+        invalidations++;
+        String prefix = bucketName + SLASH;
+        cache.removeIf(key -> key.startsWith(prefix));
+    }
+
+    long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    private static String key(String bucketName, String objectName) {
+        return bucketName + SLASH + objectName;
+    }
+
+}
@@ -1,11 +1,21 @@
 package cn.darkjrong.storage.oss;
 
+import cn.darkjrong.storage.cache.LocalFileCache;
+import cn.darkjrong.storage.dedup.ContentDigest;
+import cn.darkjrong.storage.dedup.DedupIndex;
+import cn.darkjrong.storage.metrics.StorageErrorRecorder;
+import cn.darkjrong.storage.oss.domain.CopyResult;
+import cn.darkjrong.storage.oss.domain.DeleteResult;
+import cn.darkjrong.storage.oss.domain.MergeSource;
 import cn.darkjrong.storage.oss.domain.ObjectMetaInfo;
-import cn.darkjrong.storage.utils.UUIDUtils;
+import cn.darkjrong.storage.utils.ExpiringLruCache;
+import cn.darkjrong.storage.utils.IntegrityException;
+import cn.darkjrong.storage.utils.KeyGenerator;
+import cn.darkjrong.storage.utils.TimeOrderedKeyGenerator;
 import com.aliyun.oss.HttpMethod;
 import com.aliyun.oss.OSS;
+import com.aliyun.oss.OSSErrorCode;
 import com.aliyun.oss.OSSException;
-import com.aliyun.oss.common.comm.ResponseMessage;
 import com.aliyun.oss.common.utils.IOUtils;
 import com.aliyun.oss.event.ProgressEvent;
 import com.aliyun.oss.event.ProgressEventType;
@@ -14,15 +24,36 @@ import com.aliyun.oss.model.*;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.DigestUtils;
 import org.springframework.util.ObjectUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static cn.darkjrong.storage.utils.FileUtils.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * oss 工具类
@@ -30,10 +61,70 @@ import static cn.darkjrong.storage.utils.FileUtils.*;
  * @author Rong.Jia
  * @date 2019/10/21 18:34
  */
-public class OssClient {
+public class OssClient implements InitializingBean, DisposableBean {
 
     private static final Logger log = LoggerFactory.getLogger(OssClient.class);
 
+    /**
+     *  默认分片大小 5MB
+     */
+    public static final long DEFAULT_PART_SIZE = 5 * 1024 * 1024L;
+
+    /**
+     *  默认分片上传阈值 10MB, 不小于该大小的文件使用分片上传
+     */
+    public static final long DEFAULT_MULTIPART_THRESHOLD = 2 * DEFAULT_PART_SIZE;
+
+    /**
+     *  默认分片上传并发数
+     */
+    public static final int DEFAULT_TASK_NUM = 5;
+
+    /**
+     *  默认分段下载重试次数
+     */
+    public static final int DEFAULT_DOWNLOAD_RETRIES = 3;
+
+    /**
+     *  默认缓存最大条数
+     */
+    public static final int DEFAULT_CACHE_MAX_SIZE = 10000;
+
+    /**
+     *  默认签名链接有效期过去一半后重新签名
+     */
+    public static final double DEFAULT_URL_CACHE_REFRESH_RATIO = 0.5;
+
+    /**
+     *  默认文件元信息缓存过期时间 60秒
+     */
+    public static final long DEFAULT_META_CACHE_TTL = 60 * 1000L;
+
+    /**
+     *  默认文件不存在的缓存过期时间 10秒
+     */
+    public static final long DEFAULT_META_CACHE_NEGATIVE_TTL = 10 * 1000L;
+
+    /**
+     *  默认存储空间状态缓存过期时间 5分钟
+     */
+    public static final long DEFAULT_BUCKET_CACHE_TTL = 5 * 60 * 1000L;
+
+    /**
+     *  默认结束的传输进度保留时间, 10分钟
+     */
+    public static final long DEFAULT_PROGRESS_RETENTION = 10 * 60 * 1000L;
+
+    /**
+     *  存储空间状态缓存最大条数
+     */
+    private static final int BUCKET_CACHE_MAX_SIZE = 1000;
+
+    /**
+     *  默认断点续传记录目录
+     */
+    public static final String DEFAULT_CHECKPOINT_DIR = TMP_DIR + "/checkpoint";
+
     private String endpoint;
     private String intranet;
 
@@ -42,6 +133,171 @@ public class OssClient {
      */
     private Integer openIntranet;
 
+    /**
+     *  分片大小
+     */
+    private long partSize = DEFAULT_PART_SIZE;
+
+    /**
+     *  分片上传阈值
+     */
+    private long multipartThreshold = DEFAULT_MULTIPART_THRESHOLD;
+
+    /**
+     *  分片上传并发数
+     */
+    private int taskNum = DEFAULT_TASK_NUM;
+
+    /**
+     *  断点续传记录目录
+     */
+    private String checkpointDir = DEFAULT_CHECKPOINT_DIR;
+
+    /**
+     *  分段下载大小
+     */
+    private long downloadPartSize = DEFAULT_PART_SIZE;
+
+    /**
+     *  分段下载并发数
+     */
+    private int downloadTaskNum = DEFAULT_TASK_NUM;
+
+    /**
+     *  分段下载失败重试次数
+     */
+    private int downloadRetries = DEFAULT_DOWNLOAD_RETRIES;
+
+    /**
+     *  是否开启签名链接缓存
+     */
+    private boolean urlCacheEnabled;
+
+    /**
+     *  签名链接缓存最大条数
+     */
+    private int urlCacheMaxSize = DEFAULT_CACHE_MAX_SIZE;
+
+    /**
+     *  签名链接有效期过去该比例后重新签名, 取值 (0, 1)
+     */
+    private double urlCacheRefreshRatio = DEFAULT_URL_CACHE_REFRESH_RATIO;
+
+    /**
+     *  签名链接缓存
+     */
+    private ExpiringLruCache<String, String> urlCache;
+
+    /**
+     *  是否开启文件元信息缓存
+     */
+    private boolean metaCacheEnabled;
+
+    /**
+     *  文件元信息缓存最大条数
+     */
+    private int metaCacheMaxSize = DEFAULT_CACHE_MAX_SIZE;
+
+    /**
+     *  文件元信息缓存过期时间, 单位毫秒
+     */
+    private long metaCacheTtl = DEFAULT_META_CACHE_TTL;
+
+    /**
+     *  文件不存在的缓存过期时间, 单位毫秒
+     */
+    private long metaCacheNegativeTtl = DEFAULT_META_CACHE_NEGATIVE_TTL;
+
+    /**
+     *  文件元信息缓存
+     */
+    private ObjectMetaCache metaCache;
+
+    /**
+     *  是否开启存储空间状态缓存
+     */
+    private boolean bucketCacheEnabled;
+
+    /**
+     *  存储空间状态缓存过期时间, 单位毫秒
+     */
+    private long bucketCacheTtl = DEFAULT_BUCKET_CACHE_TTL;
+
+    /**
+     *  存储空间状态缓存
+     */
+    private BucketStateCache bucketStateCache;
+
+    /**
+     *  分页列举每页文件数
+     */
+    private int listMaxKeys = ObjectListingIterator.MAX_KEYS;
+
+    /**
+     *  并发列举线程数, 每次列举使用独立的线程池
+     */
+    private int listParallelism = DEFAULT_TASK_NUM;
+
+    /**
+     *  结束的传输进度保留时间, 单位毫秒
+     */
+    private long progressRetention = DEFAULT_PROGRESS_RETENTION;
+
+    /**
+     *  进度日志最小间隔, 单位毫秒, 不大于0时不输出
+     */
+    private long progressLogInterval;
+
+    /**
+     *  传输进度登记表
+     */
+    private TransferProgressRegistry progressRegistry;
+
+    /**
+     *  上传文件名生成器
+     */
+    private KeyGenerator keyGenerator = TimeOrderedKeyGenerator.INSTANCE;
+
+    /**
+     *  生成对象名的布局
+     */
+    private ObjectKeyLayout objectKeyLayout = PlainObjectKeyLayout.INSTANCE;
+
+    /**
+     *  上传下载的数据校验方式
+     */
+    private IntegrityMode integrityMode = IntegrityMode.NONE;
+
+    /**
+     *  上传去重索引, 为空时不去重
+     */
+    private DedupIndex dedupIndex;
+
+    /**
+     *  下载文件的本地磁盘缓存, 为空时不缓存
+     */
+    private LocalFileCache fileCache;
+
+    /**
+     *  记录捕获后未抛出的异常, 开启指标时计入当前操作
+     */
+    private StorageErrorRecorder errorRecorder = StorageErrorRecorder.NONE;
+
+    /**
+     *  分片上传线程池
+     */
+    private ExecutorService shardExecutor;
+
+    /**
+     *  分段下载线程池
+     */
+    private ExecutorService downloadExecutor;
+
+    /**
+     *  并发请求线程池
+     */
+    private ExecutorService requestExecutor;
+
     @Autowired
     private OSS oss;
 
@@ -59,6 +315,306 @@ public class OssClient {
         this.intranet = intranet;
     }
 
+    public void setPartSize(long partSize) {
+        this.partSize = partSize;
+    }
+
+    public void setMultipartThreshold(long multipartThreshold) {
+        this.multipartThreshold = multipartThreshold;
+    }
+
+    public void setTaskNum(int taskNum) {
+        this.taskNum = taskNum;
+    }
+
+    public void setCheckpointDir(String checkpointDir) {
+        this.checkpointDir = checkpointDir;
+    }
+
+    public void setDownloadPartSize(long downloadPartSize) {
+        this.downloadPartSize = downloadPartSize;
+    }
+
+    public void setDownloadTaskNum(int downloadTaskNum) {
+        this.downloadTaskNum = downloadTaskNum;
+    }
+
+    public void setDownloadRetries(int downloadRetries) {
+        this.downloadRetries = downloadRetries;
+    }
+
+    public void setUrlCacheEnabled(boolean urlCacheEnabled) {
+        this.urlCacheEnabled = urlCacheEnabled;
+    }
+
+    public void setUrlCacheMaxSize(int urlCacheMaxSize) {
+        this.urlCacheMaxSize = urlCacheMaxSize;
+    }
+
+    public void setUrlCacheRefreshRatio(double urlCacheRefreshRatio) {
+        Assert.isTrue(urlCacheRefreshRatio > 0 && urlCacheRefreshRatio < 1, "'urlCacheRefreshRatio' must be between 0 and 1 (exclusive)");
+        this.urlCacheRefreshRatio = urlCacheRefreshRatio;
+    }
+
+    public void setMetaCacheEnabled(boolean metaCacheEnabled) {
+        this.metaCacheEnabled = metaCacheEnabled;
+    }
+
+    public void setMetaCacheMaxSize(int metaCacheMaxSize) {
+        this.metaCacheMaxSize = metaCacheMaxSize;
+    }
+
+    public void setMetaCacheTtl(long metaCacheTtl) {
+        this.metaCacheTtl = metaCacheTtl;
+    }
+
+    public void setMetaCacheNegativeTtl(long metaCacheNegativeTtl) {
+        this.metaCacheNegativeTtl = metaCacheNegativeTtl;
+    }
+
+    public void setBucketCacheEnabled(boolean bucketCacheEnabled) {
+        this.bucketCacheEnabled = bucketCacheEnabled;
+    }
+
+    public void setBucketCacheTtl(long bucketCacheTtl) {
+        this.bucketCacheTtl = bucketCacheTtl;
+    }
+
+    public void setListMaxKeys(int listMaxKeys) {
+        this.listMaxKeys = listMaxKeys;
+    }
+
+    public void setListParallelism(int listParallelism) {
+        this.listParallelism = listParallelism;
+    }
+
+    public void setKeyGenerator(KeyGenerator keyGenerator) {
+        this.keyGenerator = keyGenerator;
+    }
+
+    public void setObjectKeyLayout(ObjectKeyLayout objectKeyLayout) {
+        this.objectKeyLayout = objectKeyLayout;
+    }
+
+    public void setIntegrityMode(IntegrityMode integrityMode) {
+        this.integrityMode = integrityMode;
+    }
+
+    public void setDedupIndex(DedupIndex dedupIndex) {
+        this.dedupIndex = dedupIndex;
+    }
+
+    public void setFileCache(LocalFileCache fileCache) {
+        this.fileCache = fileCache;
+    }
+
+    public void setErrorRecorder(StorageErrorRecorder errorRecorder) {
+        this.errorRecorder = errorRecorder;
+    }
+
+    /**
+     * 下载文件的本地磁盘缓存, 用于查询命中次数、未命中次数和占用字节数
+     *
+     * @return 本地缓存, 未开启时返回null
+     */
+    public LocalFileCache getFileCache() {
+        return fileCache;
+    }
+
+    public void setProgressRetention(long progressRetention) {
+        this.progressRetention = progressRetention;
+    }
+
+    public void setProgressLogInterval(long progressLogInterval) {
+        this.progressLogInterval = progressLogInterval;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        this.shardExecutor = newExecutor(taskNum, "oss-shard-");
+        this.downloadExecutor = newExecutor(downloadTaskNum, "oss-download-");
+        this.requestExecutor = newExecutor(taskNum, "oss-request-");
+
+        if (urlCacheEnabled) {
+            this.urlCache = new ExpiringLruCache<>(urlCacheMaxSize, 0L);
+        }
+
+        if (metaCacheEnabled) {
+            this.metaCache = new ObjectMetaCache(oss, metaCacheMaxSize, metaCacheTtl, metaCacheNegativeTtl);
+        }
+
+        if (bucketCacheEnabled) {
+            this.bucketStateCache = new BucketStateCache(oss, BUCKET_CACHE_MAX_SIZE, bucketCacheTtl);
+        }
+
+        this.progressRegistry = new TransferProgressRegistry(progressRetention, progressLogInterval);
+    }
+
+    @Override
+    public void destroy() {
+        if (this.shardExecutor != null) {
+            this.shardExecutor.shutdownNow();
+        }
+        if (this.downloadExecutor != null) {
+            this.downloadExecutor.shutdownNow();
+        }
+        if (this.requestExecutor != null) {
+            this.requestExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 查询传输进度
+     *
+     * @param transferId 传输ID, 调用带传输ID的上传下载方法时指定
+     * @return 传输进度, 不存在或已超过保留时间时返回null
+     */
+    public TransferProgress getTransferProgress(String transferId) {
+        return progressRegistry.get(transferId);
+    }
+
+    /**
+     * 全部进行中和保留期内结束的传输进度
+     *
+     * @return 传输进度
+     */
+    public Collection<TransferProgress> getTransferProgresses() {
+        return progressRegistry.getAll();
+    }
+
+    /**
+     * 登记传输进度
+     *
+     * @return 传输进度, 未指定传输ID时返回null
+     */
+    private TransferProgress startProgress(String transferId, String bucketName, String objectName, long totalBytes) {
+        return transferId == null ? null : progressRegistry.start(transferId, bucketName, objectName, totalBytes);
+    }
+
+    private static void finishProgress(TransferProgress progress, boolean succeed) {
+        if (progress != null) {
+            if (succeed) {
+                progress.complete();
+            } else {
+                progress.fail();
+            }
+        }
+    }
+
+    /**
+     * 由上传返回的对象名还原布局前的路径(目录/文件名)
+     *
+     * @param objectName 对象名
+     * @return 布局前的路径
+     */
+    public String resolveObjectName(String objectName) {
+        return objectKeyLayout.resolve(objectName);
+    }
+
+    /**
+     * 由目录和文件名得到对象名, 与上传时使用相同的布局
+     *
+     * @param dir 目录, 可为空
+     * @param fileName 文件名
+     * @return 对象名
+     */
+    public String layoutObjectName(String dir, String fileName) {
+        return objectKeyLayout.layout(dir, fileName);
+    }
+
+    /**
+     * 文件元信息缓存命中次数
+     *
+     * @return 命中次数, 未开启缓存返回0
+     */
+    public long getMetaCacheHitCount() {
+        return metaCache == null ? 0L : metaCache.getHitCount();
+    }
+
+    /**
+     * 文件元信息缓存未命中次数
+     *
+     * @return 未命中次数, 未开启缓存返回0
+     */
+    public long getMetaCacheMissCount() {
+        return metaCache == null ? 0L : metaCache.getMissCount();
+    }
+
+    /**
+     * 获取文件元信息, 开启缓存时优先从缓存读取
+     *
+     * @param bucketName 存储空间
+     * @param objectName 对象名
+     * @return 元信息, 开启缓存且文件不存在时返回null
+     */
+    private ObjectMetadata headObject(String bucketName, String objectName) {
+        return metaCache == null ? oss.getObjectMetadata(bucketName, objectName) : metaCache.getObjectMetadata(bucketName, objectName);
+    }
+
+    /**
+     * 文件变更后移除元信息缓存和本地文件缓存
+     *
+     * @param bucketName 存储空间
+     * @param objectName 对象名
+     */
+    void evictObjectMeta(String bucketName, String objectName) {
+        if (metaCache != null) {
+            metaCache.invalidate(bucketName, objectName);
+        }
+        if (fileCache != null) {
+            fileCache.remove(bucketName + SLASH + objectName);
+        }
+    }
+
+    /**
+     * 刷新存储空间缓存状态(是否存在, 地域, 访问权限, 空间信息), 下次访问时重新获取
+     *
+     * @param bucketName 存储空间
+     */
+    public void refreshBucket(String bucketName) {
+        if (bucketStateCache != null) {
+            bucketStateCache.refresh(bucketName);
+        }
+    }
+
+    /**
+     * 刷新全部存储空间缓存状态
+     */
+    public void refreshBuckets() {
+        if (bucketStateCache != null) {
+            bucketStateCache.refreshAll();
+        }
+    }
+
+    /**
+     * 判断存储空间是否存在, 开启缓存时优先从缓存读取
+     *
+     * @param bucketName 存储空间
+     * @return true/false
+     */
+    private boolean bucketExists(String bucketName) {
+        return bucketStateCache == null ? oss.doesBucketExist(bucketName) : bucketStateCache.doesBucketExist(bucketName);
+    }
+
+    /**
+     * 创建固定大小的线程池, 空闲线程自动回收
+     *
+     * @param threads 线程数
+     * @param threadNamePrefix 线程名前缀
+     * @return 线程池
+     */
+    private static ExecutorService newExecutor(int threads, String threadNamePrefix) {
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(threadNamePrefix);
+        threadFactory.setDaemon(true);
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
+
     /**
      * 创建存储空间
      *
@@ -71,15 +627,17 @@ public class OssClient {
         Boolean flag = Boolean.FALSE;
 
         try {
-            boolean bucketExist = oss.doesBucketExist(bucketName);
+            boolean bucketExist = bucketExists(bucketName);
             if (!bucketExist) {
                 oss.createBucket(bucketName);
+                refreshBucket(bucketName);
                 flag = Boolean.TRUE;
             }else {
                 flag = bucketExist;
             }
         } catch (Exception e) {
             log.error("createBucket {}", e.getMessage());
+            errorRecorder.record(e);
         }
 
         return flag;
@@ -103,6 +661,7 @@ public class OssClient {
         } catch (Exception e) {
 
             log.error("listBucketByPrefix {}", e.getMessage());
+            errorRecorder.record(e);
             return null;
         }
     }
@@ -117,6 +676,7 @@ public class OssClient {
         } catch (Exception e) {
 
             log.error("listBucket {}", e.getMessage());
+            errorRecorder.record(e);
             return null;
         }
     }
@@ -139,6 +699,7 @@ public class OssClient {
         } catch (Exception e) {
 
             log.error("listBucketByMarker {}", e.getMessage());
+            errorRecorder.record(e);
             return null;
         }
     }
@@ -160,6 +721,7 @@ public class OssClient {
         } catch (Exception e) {
 
             log.error("listBucketByMaxKeys {}", e.getMessage());
+            errorRecorder.record(e);
             return null;
         }
     }
@@ -174,31 +736,68 @@ public class OssClient {
         Boolean flag = Boolean.FALSE;
 
         try {
-            flag = oss.doesBucketExist(bucketName);
+            flag = bucketExists(bucketName);
         } catch (Exception e) {
             log.error("doesBucketExist {}", e.getMessage());
+            errorRecorder.record(e);
         }
 
         return flag;
     }
 
     /**
-     * 获取存储空间信息
+     * 获取存储空间信息, 空间信息和访问权限并发获取
      *
      * @param bucketName
      */
     public cn.darkjrong.storage.oss.domain.BucketInfo getBucketInfo(String bucketName) {
 
         //判断空间是否存在
-        boolean exists = oss.doesBucketExist(bucketName);
+        boolean exists = bucketExists(bucketName);
         if (!exists) {
             return null;
         }
 
-        try {
-            cn.darkjrong.storage.oss.domain.BucketInfo bucketInfo = new cn.darkjrong.storage.oss.domain.BucketInfo();
+        return getBucketInfoAsync(bucketName).join();
+    }
+
+    /**
+     * 批量获取存储空间信息, 各存储空间并发获取
+     *
+     * @param bucketNames 存储空间
+     * @return 存储空间信息, 不存在或获取失败的存储空间值为null
+     */
+    public Map<String, cn.darkjrong.storage.oss.domain.BucketInfo> getBucketInfo(Collection<String> bucketNames) {
+
+        Map<String, CompletableFuture<cn.darkjrong.storage.oss.domain.BucketInfo>> futures = new LinkedHashMap<>();
+        for (String bucketName : bucketNames) {
+            futures.put(bucketName, getBucketInfoAsync(bucketName));
+        }
+
+        Map<String, cn.darkjrong.storage.oss.domain.BucketInfo> bucketInfos = new LinkedHashMap<>();
+        futures.forEach((bucketName, future) -> bucketInfos.put(bucketName, future.join()));
+
+        return bucketInfos;
+    }
+
+    /**
+     * 并发获取空间信息和访问权限
+     *
+     * @param bucketName 存储空间
+     * @return 存储空间信息, 不存在或获取失败时为null
+     */
+    private CompletableFuture<cn.darkjrong.storage.oss.domain.BucketInfo> getBucketInfoAsync(String bucketName) {
 
-            BucketInfo info = oss.getBucketInfo(bucketName);
+        StorageErrorRecorder recorder = errorRecorder.bind();
+        CompletableFuture<BucketInfo> infoFuture = CompletableFuture.supplyAsync(() ->
+                bucketStateCache == null ? oss.getBucketInfo(bucketName) : bucketStateCache.getBucketInfo(bucketName), requestExecutor);
+
+        CompletableFuture<AccessControlList> aclFuture = CompletableFuture.supplyAsync(() ->
+                bucketStateCache == null ? oss.getBucketAcl(bucketName) : bucketStateCache.getBucketAcl(bucketName), requestExecutor);
+
+        return infoFuture.thenCombine(aclFuture, (info, acl) -> {
+
+            cn.darkjrong.storage.oss.domain.BucketInfo bucketInfo = new cn.darkjrong.storage.oss.domain.BucketInfo();
 
             // 获取地域。
             bucketInfo.setLocation(info.getBucket().getLocation());
@@ -210,15 +809,21 @@ public class OssClient {
             bucketInfo.setOwner(info.getBucket().getOwner());
 
             // 获取权限信息。
-            AccessControlList acl = oss.getBucketAcl(bucketName);
             bucketInfo.setAuthority(acl.toString());
 
             return bucketInfo;
-        } catch (Exception e) {
-            log.error("getBucketInfo {}", e.getMessage());
-        }
-
-        return null;
+        }).exceptionally(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof OSSException && OSSErrorCode.NO_SUCH_BUCKET.equals(((OSSException) cause).getErrorCode())) {
+                if (bucketStateCache != null) {
+                    bucketStateCache.setExists(bucketName, Boolean.FALSE);
+                }
+            } else {
+                log.error("getBucketInfo {}", cause.getMessage());
+                recorder.record(cause);
+            }
+            return null;
+        });
     }
 
     /**
@@ -233,14 +838,19 @@ public class OssClient {
         try {
 
             //判断空间是否存在
-            boolean exists = oss.doesBucketExist(bucketName);
+            boolean exists = bucketExists(bucketName);
             if (exists) {
                 // 删除存储空间。
                 oss.deleteBucket(bucketName);
+                refreshBucket(bucketName);
+                if (metaCache != null) {
+                    metaCache.invalidateBucket(bucketName);
+                }
             }
             flag = exists;
         } catch (Exception e) {
             log.error("deleteBucket {}", e.getMessage());
+            errorRecorder.record(e);
         }
 
         return flag;
@@ -258,9 +868,11 @@ public class OssClient {
 
         try {
             oss.setBucketAcl(bucketName, bucketAcl);
+            refreshBucket(bucketName);
             flag = Boolean.TRUE;
         } catch (Exception e) {
             log.error("setBucketAcl {}", e.getMessage());
+            errorRecorder.record(e);
         }
 
         return flag;
@@ -278,11 +890,12 @@ public class OssClient {
         }
 
         try {
-            AccessControlList bucketAcl = oss.getBucketAcl(bucketName);
+            AccessControlList bucketAcl = bucketStateCache == null ? oss.getBucketAcl(bucketName) : bucketStateCache.getBucketAcl(bucketName);
             return bucketAcl.toString();
         } catch (Exception e) {
 
             log.error("getBucketAcl {}", e.getMessage());
+            errorRecorder.record(e);
             return null;
         }
     }
@@ -299,10 +912,11 @@ public class OssClient {
         }
 
         try {
-            return oss.getBucketLocation(bucketName);
+            return bucketStateCache == null ? oss.getBucketLocation(bucketName) : bucketStateCache.getBucketLocation(bucketName);
         } catch (Exception e) {
 
             log.error("getBucketLocation {}", e.getMessage());
+            errorRecorder.record(e);
             return null;
         }
     }
@@ -316,9 +930,13 @@ public class OssClient {
     public Boolean doesObjectExist(String bucketName, String objectName){
 
         try {
+            if (metaCache != null) {
+                return metaCache.getObjectMetadata(bucketName, objectName) != null;
+            }
             return oss.doesObjectExist(bucketName, objectName);
         }catch (Exception e) {
             log.error("doesObjectExist {}", e.getMessage());
+            errorRecorder.record(e);
         }
 
         return Boolean.FALSE;
@@ -326,6 +944,7 @@ public class OssClient {
 
     /**
      * 上传文件
+     * 开启上传去重时可能返回与其他上传共用的路径, 见 {@link DedupIndex}
      *
      * @param file       待上传文件
      * @param bucketName 存储空间
@@ -335,20 +954,64 @@ public class OssClient {
      */
     public String upload(MultipartFile file, String bucketName, String dir) throws IOException {
 
-        String putName =dir + SLASH + UUIDUtils.uuid() + System.currentTimeMillis() + JPEG_SUFFIX;
+        String dedupKey = dedupKey(bucketName, dir, file);
+        String duplicate = findDuplicate(bucketName, dedupKey, file.getSize());
+        if (duplicate != null) {
+            return duplicate;
+        }
+
+        String putName = objectKeyLayout.layout(dir, keyGenerator.generate() + JPEG_SUFFIX);
+
+        putMultipartFile(bucketName, putName, file, null);
+        rememberDuplicate(dedupKey, putName);
+        return putName;
+    }
 
-        // 上传文件流。
-        InputStream inputStream = file.getInputStream();
-        PutObjectResult putObject = oss.putObject(bucketName, putName, inputStream);
+    /**
+     * 去重键: 存储空间、目录(或原文件名)和内容摘要, 未开启去重时返回null
+     */
+    private String dedupKey(String bucketName, String prefix, InputStreamSource source) throws IOException {
+        return dedupIndex == null ? null : bucketName + SLASH + StringUtils.defaultString(prefix) + COLON + ContentDigest.sha256Hex(source);
+    }
 
-        ResponseMessage response = putObject.getResponse();
+    /**
+     * 查找内容相同的已上传文件, 文件已删除或大小不一致时移除索引条目
+     *
+     * @param bucketName 存储空间
+     * @param dedupKey 去重键
+     * @param size 文件大小
+     * @return 已上传的对象名, 不存在时返回null
+     */
+    private String findDuplicate(String bucketName, String dedupKey, long size) {
 
-        if (!ObjectUtils.isEmpty(response) && !StringUtils.isEmpty(response.getErrorResponseAsString())) {
+        if (dedupKey == null) {
             return null;
         }
 
-        IOUtils.safeClose(inputStream);
-        return putName;
+        String objectName = dedupIndex.get(dedupKey);
+        if (objectName == null) {
+            return null;
+        }
+
+        try {
+            ObjectMetadata metadata = headObject(bucketName, objectName);
+            if (metadata != null && metadata.getContentLength() == size) {
+                return objectName;
+            }
+        } catch (OSSException e) {
+            if (!OSSErrorCode.NO_SUCH_KEY.equals(e.getErrorCode())) {
+                throw e;
+            }
+        }
+
+        dedupIndex.remove(dedupKey);
+        return null;
+    }
+
+    private void rememberDuplicate(String dedupKey, String objectName) {
+        if (dedupKey != null) {
+            dedupIndex.put(dedupKey, objectName);
+        }
     }
 
     /**
@@ -367,7 +1030,7 @@ public class OssClient {
         meta.setContentType(contentType);
 
         //设置文件名
-        String fileName = UUIDUtils.uuid() + System.currentTimeMillis();
+        String fileName = objectKeyLayout.layout(null, keyGenerator.generate());
 
         AppendObjectRequest appendObjectRequest = new AppendObjectRequest(bucketName, fileName, content[0], meta);
 
@@ -384,143 +1047,412 @@ public class OssClient {
                     oss.appendObject(appendObjectRequest);
                 }
             }
+            evictObjectMeta(bucketName, fileName);
 
             return fileName;
         } catch (OSSException e) {
             log.error("mergeContent {}", e.getMessage());
+            errorRecorder.record(e);
             return null;
         }
     }
 
     /**
-     * 分片上传
+     * 服务端合并文件, OSS中已有的文件通过分片拷贝在服务端并发复制, 不经过本地; 输入流作为普通分片上传
      *
-     * @param bucketName
-     * @param file
-     * @return
-     * @throws IOException
+     * @param bucketName 存储空间
+     * @param objectName 合并后的对象名
+     * @param sources 按顺序合并的数据来源
+     * @return 对象名
+     * @throws IOException 合并异常
+     */
+    public String composeObject(String bucketName, String objectName, List<MergeSource> sources) throws IOException {
+
+        new ObjectMerger(oss, shardExecutor, partSize, taskNum).merge(bucketName, objectName, sources);
+        evictObjectMeta(bucketName, objectName);
+
+        return objectName;
+    }
+
+    /**
+     * 分片上传, 不小于分片阈值时先将文件落盘, 各分片并发读取自身区间上传, 否则普通上传
+     * 开启上传去重时可能返回与其他上传共用的路径, 见 {@link DedupIndex}
+     *
+     * @param bucketName 存储空间
+     * @param file 待上传文件
+     * @return 文件上传完整路径
+     * @throws IOException 文件上传异常
      */
     public String shardUpload(String bucketName, MultipartFile file) throws IOException {
 
-        String putName = file.getOriginalFilename() + "_" + UUIDUtils.uuid() + System.currentTimeMillis();
+        String dedupKey = dedupKey(bucketName, file.getOriginalFilename(), file);
+        String duplicate = findDuplicate(bucketName, dedupKey, file.getSize());
+        if (duplicate != null) {
+            return duplicate;
+        }
+
+        String putName = objectKeyLayout.layout(null, file.getOriginalFilename() + "_" + keyGenerator.generate());
+
+        putMultipartFile(bucketName, putName, file, null);
+        rememberDuplicate(dedupKey, putName);
+
+        return putName;
+    }
+
+    /**
+     * 分片上传本地文件, 小于分片阈值时普通上传
+     * 开启上传去重时可能返回与其他上传共用的路径, 见 {@link DedupIndex}
+     *
+     * @param bucketName 存储空间
+     * @param file 待上传文件
+     * @return 文件上传完整路径
+     * @throws IOException 文件上传异常
+     */
+    public String shardUpload(String bucketName, File file) throws IOException {
+        return shardUpload(bucketName, file, null);
+    }
+
+    /**
+     * 分片上传本地文件, 按分片记录传输进度
+     * 开启上传去重时可能返回与其他上传共用的路径, 见 {@link DedupIndex}
+     *
+     * @param bucketName 存储空间
+     * @param file 待上传文件
+     * @param transferId 传输ID, 通过 getTransferProgress 查询进度, 为空时不记录
+     * @return 文件上传完整路径
+     * @throws IOException 文件上传异常
+     */
+    public String shardUpload(String bucketName, File file, String transferId) throws IOException {
+
+        if (!file.exists()) {
+            throw new FileNotFoundException(file.getPath());
+        }
+
+        String dedupKey = dedupKey(bucketName, file.getName(), new FileSystemResource(file));
+        String duplicate = findDuplicate(bucketName, dedupKey, file.length());
+        if (duplicate != null) {
+            return duplicate;
+        }
+
+        String putName = objectKeyLayout.layout(null, file.getName() + "_" + keyGenerator.generate());
+        TransferProgress progress = startProgress(transferId, bucketName, putName, file.length());
+
+        boolean succeed = Boolean.FALSE;
+        try {
+            putFile(bucketName, putName, file, progress);
+            succeed = Boolean.TRUE;
+        } finally {
+            finishProgress(progress, succeed);
+        }
+        rememberDuplicate(dedupKey, putName);
 
-        //初始化一个分片上传事件。
-        InitiateMultipartUploadRequest request = new InitiateMultipartUploadRequest(bucketName, putName);
-        InitiateMultipartUploadResult result = oss.initiateMultipartUpload(request);
+        return putName;
+    }
 
-        // 返回uploadId，它是分片上传事件的唯一标识，您可以根据这个ID来发起相关的操作，如取消分片上传、查询分片上传等。
-        String uploadId = result.getUploadId();
+    /**
+     * 断点续传, 上传失败后保留断点记录, 再次调用时只上传缺失的分片
+     *
+     * @param bucketName 存储空间
+     * @param objectName 对象名, 续传时必须与上次一致
+     * @param file 待上传文件
+     * @return 文件上传完整路径
+     * @throws IOException 文件上传异常
+     */
+    public String resumableUpload(String bucketName, String objectName, File file) throws IOException {
+        return resumableUpload(bucketName, objectName, file, null);
+    }
 
-        //上传分片
+    /**
+     * 断点续传, 按分片记录传输进度, 已上传的分片计入进度
+     *
+     * @param bucketName 存储空间
+     * @param objectName 对象名, 续传时必须与上次一致
+     * @param file 待上传文件
+     * @param transferId 传输ID, 通过 getTransferProgress 查询进度, 为空时不记录
+     * @return 文件上传完整路径
+     * @throws IOException 文件上传异常
+     */
+    public String resumableUpload(String bucketName, String objectName, File file, String transferId) throws IOException {
 
-        // partETags是PartETag的集合。PartETag由分片的ETag和分片号组成。
-        List<PartETag> partETags = new ArrayList<>();
+        if (!file.exists()) {
+            throw new FileNotFoundException(file.getPath());
+        }
 
-        // 计算文件有多少个分片。
-        final long partSize = 1024 * 1024L;
-        long fileLength = file.getSize();
-        int partCount = (int) (fileLength / partSize);
+        String checkpointName = DigestUtils.md5DigestAsHex((bucketName + SLASH + objectName + COLON + file.getAbsolutePath()).getBytes(UTF_8));
+        File checkpointFile = new File(mkdirs(checkpointDir, Boolean.FALSE), checkpointName + ".ucp");
+        TransferProgress progress = startProgress(transferId, bucketName, objectName, file.length());
 
-        if (fileLength % partSize != 0) {
-            partCount++;
+        boolean succeed = Boolean.FALSE;
+        try {
+            new MultipartUploader(oss, shardExecutor, partSize, integrityMode).upload(bucketName, objectName, file, checkpointFile, progress);
+            succeed = Boolean.TRUE;
+        } finally {
+            finishProgress(progress, succeed);
         }
+        evictObjectMeta(bucketName, objectName);
 
-        // 遍历分片上传。
-        for (int i = 0; i < partCount; i++) {
+        return objectName;
+    }
 
-            long startPos = i * partSize;
-            long curPartSize = (i + 1 == partCount) ? (fileLength - startPos) : partSize;
+    /**
+     * 带进度条上传, 以对象名作为传输ID记录进度
+     *
+     * @param bucketName 空间名
+     * @param file 待上传文件
+     * @return 上传完整路径
+     */
+    public String uploadWithProgress(String bucketName, MultipartFile file) throws IOException {
+        return uploadWithProgress(bucketName, file, null);
+    }
 
-            InputStream instep = file.getInputStream();
+    /**
+     * 带进度条上传, 不小于分片阈值时落盘后并发分片上传
+     *
+     * @param bucketName 空间名
+     * @param file 待上传文件
+     * @param transferId 传输ID, 通过 getTransferProgress 查询进度, 为空时使用对象名
+     * @return 上传完整路径
+     */
+    public String uploadWithProgress(String bucketName, MultipartFile file, String transferId) throws IOException {
 
-            // 跳过已经上传的分片。
-            instep.skip(startPos);
+        String putName = objectKeyLayout.layout(null, file.getOriginalFilename() + "_" + keyGenerator.generate());
+        TransferProgress progress = startProgress(transferId == null ? putName : transferId, bucketName, putName, file.getSize());
 
-            UploadPartRequest uploadPartRequest = new UploadPartRequest();
-            uploadPartRequest.setBucketName(bucketName);
-            uploadPartRequest.setKey(putName);
-            uploadPartRequest.setUploadId(uploadId);
-            uploadPartRequest.setInputStream(instep);
+        boolean succeed = Boolean.FALSE;
+        try {
 
-            // 设置分片大小。除了最后一个分片没有大小限制，其他的分片最小为100KB。
-            uploadPartRequest.setPartSize(curPartSize);
+            putMultipartFile(bucketName, putName, file, progress);
+            succeed = Boolean.TRUE;
+            return putName;
+        } catch (OSSException e) {
+            log.error("uploadWithProgress {}", e.getMessage());
+            errorRecorder.record(e);
+            return null;
+        }finally {
+            finishProgress(progress, succeed);
+        }
 
-            // 设置分片号。每一个上传的分片都有一个分片号，取值范围是1~10000，如果超出这个范围，OSS将返回InvalidArgument的错误码。
-            uploadPartRequest.setPartNumber(i + 1);
+    }
 
-            // 每个分片不需要按顺序上传，甚至可以在不同客户端上传，OSS会按照分片号排序组成完整的文件。
-            UploadPartResult uploadPartResult = oss.uploadPart(uploadPartRequest);
+    /**
+     *  上传文件
+     *  开启上传去重时可能返回与其他上传共用的路径, 见 {@link DedupIndex}
+     * @param bucketName 存储空间
+     * @param file 待上传文件
+     * @return 文件存储路径
+     * @throws FileNotFoundException
+     */
+    public String upload(String bucketName, String dir, File file) throws FileNotFoundException {
 
-            // 每次上传分片之后，OSS的返回结果会包含一个PartETag。PartETag将被保存到partETags中。
-            partETags.add(uploadPartResult.getPartETag());
+        if (StringUtils.isEmpty(bucketName)) {
+            return null;
         }
 
-        //完成分片上传
-        // 排序。partETags必须按分片号升序排列。
-        partETags.sort(Comparator.comparingInt(PartETag::getPartNumber));
+        if (!file.exists()) {
+            throw new FileNotFoundException();
+        }
+
+        try {
+
+            String dedupKey = dedupKey(bucketName, dir, new FileSystemResource(file));
+            String duplicate = findDuplicate(bucketName, dedupKey, file.length());
+            if (duplicate != null) {
+                return duplicate;
+            }
+
+            String objectName = objectKeyLayout.layout(dir, keyGenerator.generate() + JPEG_SUFFIX);
+            putFile(bucketName, objectName, file, null);
+            rememberDuplicate(dedupKey, objectName);
+
+            return objectName;
+        }catch (Exception e){
+            log.error("upload {}", e.getMessage());
+            errorRecorder.record(e);
+            return null;
+        }
+
+    }
+
+    /**
+     * 按指定对象名上传本地文件, 小于分片阈值时普通上传, 否则并发分片上传
+     *
+     * @param bucketName 存储空间
+     * @param objectName 对象名
+     * @param path 待上传文件
+     * @return 对象名
+     * @throws IOException 文件上传异常
+     */
+    public String uploadObject(String bucketName, String objectName, Path path) throws IOException {
+
+        File file = path.toFile();
+        if (!file.exists()) {
+            throw new FileNotFoundException(file.getPath());
+        }
+
+        putFile(bucketName, objectName, file, null);
+
+        return objectName;
+    }
 
-        // 在执行该操作时，需要提供所有有效的partETags。OSS收到提交的partETags后，会逐一验证每个分片的有效性。当所有的数据分片验证通过后，OSS将把这些分片组合成一个完整的文件。
-        CompleteMultipartUploadRequest completeMultipartUploadRequest = new CompleteMultipartUploadRequest(bucketName, putName, uploadId, partETags);
-        oss.completeMultipartUpload(completeMultipartUploadRequest);
+    /**
+     * 按指定对象名上传文件, 小于分片阈值时普通上传, 否则落盘后并发分片上传
+     *
+     * @param bucketName 存储空间
+     * @param objectName 对象名
+     * @param file 待上传文件
+     * @return 对象名
+     * @throws IOException 文件上传异常
+     */
+    public String uploadObject(String bucketName, String objectName, MultipartFile file) throws IOException {
+
+        putMultipartFile(bucketName, objectName, file, null);
+
+        return objectName;
+    }
+
+    /**
+     * 按指定对象名上传文件流, 上传后关闭输入流
+     *
+     * 已知大小时, 小于分片阈值普通上传, 否则落盘后并发分片上传;
+     * 大小未知时, 先在内存中读取不超过分片阈值的数据, 未达到阈值即读完则从内存普通上传, 否则连同剩余数据落盘后分片上传
+     *
+     * @param bucketName 存储空间
+     * @param objectName 对象名
+     * @param inputStream 输入流
+     * @param size 数据大小, 未知时传 -1
+     * @return 对象名
+     * @throws IOException 文件上传异常
+     */
+    public String uploadObject(String bucketName, String objectName, InputStream inputStream, long size) throws IOException {
+
+        InputStream content = inputStream;
+        try {
+            if (size >= 0 && size < multipartThreshold) {
+                putObject(bucketName, objectName, content, size, null);
+                evictObjectMeta(bucketName, objectName);
+                return objectName;
+            }
+
+            if (size < 0) {
+                // 只有超过分片阈值的流才落盘, 未超过时不产生磁盘读写
+                int limit = (int) Math.min(multipartThreshold, Integer.MAX_VALUE - 8);
+                ByteArrayOutputStream head = new ByteArrayOutputStream();
+                org.apache.commons.io.IOUtils.copyLarge(content, head, 0L, limit);
+                if (head.size() < limit) {
+                    putObject(bucketName, objectName, new ByteArrayInputStream(head.toByteArray()), head.size(), null);
+                    evictObjectMeta(bucketName, objectName);
+                    return objectName;
+                }
+                content = new SequenceInputStream(new ByteArrayInputStream(head.toByteArray()), content);
+            }
+
+            File tmpFile = new File(mkdirs(TMP_DIR, Boolean.FALSE), keyGenerator.generate());
+            try {
+                copyFile(content, tmpFile.getPath());
+                putFile(bucketName, objectName, tmpFile, null);
+            } finally {
+                org.apache.commons.io.FileUtils.deleteQuietly(tmpFile);
+            }
+
+            return objectName;
+        } finally {
+            IOUtils.safeClose(content);
+        }
+    }
+
+    /**
+     * 按大小选择上传方式上传本地文件, 小于分片阈值时普通上传, 否则并发分片上传
+     *
+     * @param progress 传输进度, 为空时不记录
+     */
+    private void putFile(String bucketName, String objectName, File file, TransferProgress progress) throws IOException {
 
-        return putName;
+        if (file.length() >= multipartThreshold) {
+            new MultipartUploader(oss, shardExecutor, partSize, integrityMode).upload(bucketName, objectName, file, null, progress);
+        } else if (integrityMode.isEnabled()) {
+            try (InputStream inputStream = new FileInputStream(file)) {
+                putObject(bucketName, objectName, inputStream, file.length(), progress);
+            }
+        } else {
+            PutObjectRequest putObjectRequest = new PutObjectRequest(bucketName, objectName, file);
+            if (progress != null) {
+                putObjectRequest.setProgressListener(new TransferProgressListener(progress));
+            }
+            oss.putObject(putObjectRequest);
+        }
+        evictObjectMeta(bucketName, objectName);
     }
 
     /**
-     * 带进度条上传
+     * 按大小选择上传方式上传文件, 不小于分片阈值时落盘后并发分片上传
      *
-     * @param bucketName 空间名
-     * @param file 待上传文件
-     * @return 上传完整路径
+     * @param progress 传输进度, 为空时不记录
      */
-    public String uploadWithProgress(String bucketName, MultipartFile file) throws IOException {
+    private void putMultipartFile(String bucketName, String objectName, MultipartFile file, TransferProgress progress) throws IOException {
 
-        String putName = file.getOriginalFilename() + "_" +UUIDUtils.uuid() + System.currentTimeMillis();
+        if (file.getSize() < multipartThreshold) {
+            try (InputStream inputStream = file.getInputStream()) {
+                putObject(bucketName, objectName, inputStream, file.getSize(), progress);
+            }
+            evictObjectMeta(bucketName, objectName);
+            return;
+        }
 
-        InputStream inputStream = null;
+        File tmpFile = new File(mkdirs(TMP_DIR, Boolean.FALSE), keyGenerator.generate());
         try {
-
-            inputStream = file.getInputStream();
-            oss.putObject(new PutObjectRequest(bucketName, putName, inputStream).withProgressListener(new PutObjectProgressListener()));
-            return putName;
-        } catch (OSSException e) {
-            log.error("uploadWithProgress {}", e.getMessage());
-            return null;
-        }finally {
-            IOUtils.safeClose(inputStream);
+            file.transferTo(tmpFile);
+            putFile(bucketName, objectName, tmpFile, progress);
+        } finally {
+            org.apache.commons.io.FileUtils.deleteQuietly(tmpFile);
         }
-
     }
 
     /**
-     *  上传文件
-     * @param bucketName 存储空间
-     * @param file 待上传文件
-     * @return 文件存储路径
-     * @throws FileNotFoundException
+     * 普通上传, 开启校验时在上传的同时计算校验值, 与服务端返回的 CRC64 和 ETag 比较
+     *
+     * @param progress 传输进度, 为空时不记录
      */
-    public String upload(String bucketName, String dir, File file) throws FileNotFoundException {
+    private void putObject(String bucketName, String objectName, InputStream inputStream, long size, TransferProgress progress) {
 
-        if (StringUtils.isEmpty(bucketName)) {
-            return null;
-        }
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(size);
 
-        if (!file.exists()) {
-            throw new FileNotFoundException();
+        // SDK 重试前重置内容, 校验值和进度随之回退
+        InputStream content = inputStream.markSupported() ? inputStream : new BufferedInputStream(inputStream);
+        IntegrityInputStream checked = integrityMode.isEnabled() ? new IntegrityInputStream(content, integrityMode) : null;
+        content = checked == null ? content : checked;
+
+        TransferProgressListener listener = progress == null ? null : new TransferProgressListener(progress);
+        PutObjectRequest putObjectRequest = new PutObjectRequest(bucketName, objectName, listener == null ? content : listener.track(content), metadata);
+        if (listener != null) {
+            putObjectRequest.setProgressListener(listener);
         }
 
-        try {
+        PutObjectResult result = oss.putObject(putObjectRequest);
+        if (checked != null) {
+            checked.verify(result.getServerCRC(), IntegrityInputStream.eTagMd5Hex(result.getETag()), bucketName + SLASH + objectName);
+        }
+    }
 
-            String objectName = dir + SLASH + UUIDUtils.uuid() + System.currentTimeMillis() + JPEG_SUFFIX;
-            PutObjectRequest putObjectRequest = new PutObjectRequest(bucketName, objectName, file);
-            oss.putObject(putObjectRequest);
+    /**
+     * 下载内容, 开启校验时在读取的同时计算校验值
+     */
+    private InputStream objectContent(OSSObject ossObject) {
+        InputStream inputStream = ossObject.getObjectContent();
+        return integrityMode.isEnabled() ? new IntegrityInputStream(inputStream, integrityMode) : inputStream;
+    }
 
-            return objectName;
-        }catch (Exception e){
-            log.error("upload {}", e.getMessage());
-            return null;
+    /**
+     * 读取完下载内容后与服务端的 CRC64 和 MD5 比较
+     *
+     * @throws IntegrityException 校验值不一致
+     */
+    private void verifyContent(InputStream inputStream, OSSObject ossObject) {
+        if (inputStream instanceof IntegrityInputStream) {
+            ObjectMetadata metadata = ossObject.getObjectMetadata();
+            ((IntegrityInputStream) inputStream).verify(metadata.getServerCRC(), IntegrityInputStream.md5Hex(metadata),
+                    ossObject.getBucketName() + SLASH + ossObject.getKey());
         }
-
     }
 
     /**
@@ -538,11 +1470,20 @@ public class OssClient {
      * 获得url链接
      * @param objectName 对象名称
      * @param bucketName 存储空间
-     * @param expirationTime 超时时间 单位毫秒
+     * @param expirationTime 超时时间 单位毫秒, 开启链接缓存时在有效期过去指定比例前返回同一链接
      * @return
      */
     public String getUrl(String bucketName, String objectName, Long expirationTime) {
 
+        String cacheKey = null;
+        if (urlCache != null) {
+            cacheKey = bucketName + SLASH + objectName + COLON + expirationTime;
+            String cachedUrl = urlCache.get(cacheKey);
+            if (cachedUrl != null) {
+                return cachedUrl;
+            }
+        }
+
         Date expiration = new Date(System.currentTimeMillis() + expirationTime);
 
         GeneratePresignedUrlRequest req = new GeneratePresignedUrlRequest(bucketName, objectName, HttpMethod.GET);
@@ -557,9 +1498,16 @@ public class OssClient {
                 signedUrl = StringUtils.replace(signedUrl, intranet, endpoint);
             }
 
+            if (urlCache != null) {
+
+                // 有效期过去指定比例后重新签名, 保证返回的链接仍有足够的剩余有效期
+                urlCache.put(cacheKey, signedUrl, (long) (expirationTime * urlCacheRefreshRatio));
+            }
+
             return signedUrl;
         }catch (Exception e){
             log.error("getUrl {}", e.getMessage());
+            errorRecorder.record(e);
         }
 
         return null;
@@ -581,13 +1529,12 @@ public class OssClient {
 
         try {
 
-            String objectName = dir + "/" + fileName;
-            PutObjectRequest putObjectRequest = new PutObjectRequest(bucketName, objectName, inputStream);
-            oss.putObject(putObjectRequest);
+            String objectName = objectKeyLayout.layout(dir, fileName);
 
-            return objectName;
+            return uploadObject(bucketName, objectName, inputStream, -1L);
         }catch (Exception e){
             log.error("upload {}", e.getMessage());
+            errorRecorder.record(e);
             return null;
         }finally {
             IOUtils.safeClose(inputStream);
@@ -608,15 +1555,130 @@ public class OssClient {
         }
 
         try {
+            if (fileCache != null) {
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                downloadCached(bucketName, objectName, Channels.newChannel(outputStream));
+                return outputStream.toByteArray();
+            }
+
             OSSObject ossObject = oss.getObject(bucketName, objectName);
+            InputStream inputStream = objectContent(ossObject);
 
-           return IOUtils.readStreamAsByteArray(new BufferedInputStream(ossObject.getObjectContent()));
+            byte[] content = IOUtils.readStreamAsByteArray(new BufferedInputStream(inputStream));
+            verifyContent(inputStream, ossObject);
+            return content;
         }catch (Exception e){
             log.error("download {}", e.getMessage());
+            errorRecorder.record(e);
             return null;
         }
     }
 
+    /**
+     *  流式下载文件, 使用固定大小的缓冲区写入输出流, 不关闭输出流
+     * @param bucketName 存储空间名
+     * @param objectName 对象名
+     * @param outputStream 输出流
+     * @return 下载的字节数
+     * @throws IOException 下载异常
+     * @throws IntegrityException 开启校验时校验值不一致
+     */
+    public long download(String bucketName, String objectName, OutputStream outputStream) throws IOException {
+
+        if (fileCache != null) {
+            return downloadCached(bucketName, objectName, Channels.newChannel(outputStream));
+        }
+
+        OSSObject ossObject = oss.getObject(bucketName, objectName);
+        try (InputStream inputStream = objectContent(ossObject)) {
+            long count = cn.darkjrong.storage.utils.FileUtils.copy(inputStream, outputStream);
+            verifyContent(inputStream, ossObject);
+            return count;
+        }
+    }
+
+    /**
+     *  流式下载文件, 使用固定大小的缓冲区写入通道, 不关闭通道
+     * @param bucketName 存储空间名
+     * @param objectName 对象名
+     * @param channel 输出通道
+     * @return 下载的字节数
+     * @throws IOException 下载异常
+     * @throws IntegrityException 开启校验时校验值不一致
+     */
+    public long download(String bucketName, String objectName, WritableByteChannel channel) throws IOException {
+
+        if (fileCache != null) {
+            return downloadCached(bucketName, objectName, channel);
+        }
+
+        OSSObject ossObject = oss.getObject(bucketName, objectName);
+        try (InputStream inputStream = objectContent(ossObject)) {
+            long count = cn.darkjrong.storage.utils.FileUtils.copy(inputStream, channel);
+            verifyContent(inputStream, ossObject);
+            return count;
+        }
+    }
+
+    /**
+     *  经本地缓存下载文件, 缓存超过重新校验间隔时以 ETag 条件下载, 未修改则继续使用缓存;
+     *  未命中时边写入缓存边写入目标通道, 校验通过后提交到缓存, 超过缓存单文件上限时直接下载
+     * @param bucketName 存储空间名
+     * @param objectName 对象名
+     * @param target 目标通道
+     * @return 下载的字节数
+     * @throws IOException 下载异常
+     */
+    private long downloadCached(String bucketName, String objectName, WritableByteChannel target) throws IOException {
+
+        String key = bucketName + SLASH + objectName;
+        String version = fileCache.getVersion(key);
+        if (version != null && fileCache.isFresh(key)) {
+            try (FileChannel channel = fileCache.open(key, version)) {
+                if (channel != null) {
+                    return LocalFileCache.transferTo(channel, target);
+                }
+            }
+        }
+
+        GetObjectRequest request = new GetObjectRequest(bucketName, objectName);
+        if (version != null) {
+            request.setNonmatchingETagConstraints(Collections.singletonList(version));
+        }
+
+        OSSObject ossObject;
+        try {
+            ossObject = oss.getObject(request);
+        } catch (OSSException e) {
+            if (version == null || !OSSErrorCode.NOT_MODIFIED.equals(e.getErrorCode())) {
+                throw e;
+            }
+
+            fileCache.validated(key);
+            try (FileChannel channel = fileCache.open(key, version)) {
+                if (channel != null) {
+                    return LocalFileCache.transferTo(channel, target);
+                }
+            }
+
+            // 校验期间缓存已被淘汰, 重新下载
+            ossObject = oss.getObject(bucketName, objectName);
+        }
+
+        OSSObject downloaded = ossObject;
+        try (InputStream inputStream = objectContent(downloaded)) {
+
+            ObjectMetadata metadata = downloaded.getObjectMetadata();
+            if (!fileCache.fits(metadata.getContentLength())) {
+                long count = cn.darkjrong.storage.utils.FileUtils.copy(inputStream, target);
+                verifyContent(inputStream, downloaded);
+                return count;
+            }
+
+            return fileCache.put(key, metadata.getETag(), inputStream, target, () -> verifyContent(inputStream, downloaded));
+        }
+    }
+
     /**
      *  下载文件
      * @param bucketName 存储空间名
@@ -625,20 +1687,88 @@ public class OssClient {
      * @return
      */
     public File download(String bucketName, String objectName, String localFileName){
+        return download(bucketName, objectName, localFileName, null);
+    }
+
+    /**
+     *  下载文件, 记录传输进度
+     * @param bucketName 存储空间名
+     * @param objectName 对象名
+     * @param localFileName 本地文件名
+     * @param transferId 传输ID, 通过 getTransferProgress 查询进度, 为空时不记录
+     * @return
+     */
+    public File download(String bucketName, String objectName, String localFileName, String transferId){
 
         if (StringUtils.isEmpty(bucketName) || StringUtils.isEmpty(objectName) || StringUtils.isEmpty(localFileName)) {
             return null;
         }
 
         File file = new File(localFileName);
+        TransferProgress progress = startProgress(transferId, bucketName, objectName, -1L);
 
+        boolean succeed = Boolean.FALSE;
         try {
-            oss.getObject(new GetObjectRequest(bucketName, objectName), file);
+            GetObjectRequest request = new GetObjectRequest(bucketName, objectName);
+            if (progress != null) {
+                request.setProgressListener(new TransferProgressListener(progress));
+            }
+            if (integrityMode.isEnabled()) {
+                OSSObject ossObject = oss.getObject(request);
+                try (InputStream inputStream = objectContent(ossObject);
+                     OutputStream outputStream = new FileOutputStream(file)) {
+                    cn.darkjrong.storage.utils.FileUtils.copy(inputStream, outputStream);
+                    verifyContent(inputStream, ossObject);
+                }
+            } else {
+                oss.getObject(request, file);
+            }
+            succeed = Boolean.TRUE;
             return file;
         }catch (Exception e){
             log.error("download {}", e.getMessage());
+            errorRecorder.record(e);
             return null;
+        }finally {
+            finishProgress(progress, succeed);
+        }
+    }
+
+    /**
+     *  并发分段下载文件, 各分段按位置写入预分配的本地文件, 失败的分段单独重试
+     * @param bucketName 存储空间名
+     * @param objectName 对象名
+     * @param localFileName 本地文件名
+     * @return 本地文件
+     * @throws IOException 下载异常
+     */
+    public File shardDownload(String bucketName, String objectName, String localFileName) throws IOException {
+        return shardDownload(bucketName, objectName, localFileName, null);
+    }
+
+    /**
+     *  并发分段下载文件, 按写入本地文件的字节数记录传输进度
+     * @param bucketName 存储空间名
+     * @param objectName 对象名
+     * @param localFileName 本地文件名
+     * @param transferId 传输ID, 通过 getTransferProgress 查询进度, 为空时不记录
+     * @return 本地文件
+     * @throws IOException 下载异常
+     */
+    public File shardDownload(String bucketName, String objectName, String localFileName, String transferId) throws IOException {
+
+        File file = new File(localFileName);
+        TransferProgress progress = startProgress(transferId, bucketName, objectName, -1L);
+
+        boolean succeed = Boolean.FALSE;
+        try {
+            new RangeDownloader(oss, downloadExecutor, downloadPartSize, downloadRetries, integrityMode).download(bucketName, objectName, file, progress);
+            succeed = Boolean.TRUE;
+        } finally {
+            finishProgress(progress, succeed);
         }
+
+        return file;
     }
 
     /**
@@ -652,10 +1782,11 @@ public class OssClient {
 
         try {
             // 获取文件元信息。
-            ObjectMetadata metadata = oss.getObjectMetadata(bucketName, objectName);
-            return metadata.getRawMetadata();
+            ObjectMetadata metadata = headObject(bucketName, objectName);
+            return metadata == null ? null : new HashMap<>(metadata.getRawMetadata());
         }catch (Exception e){
             log.error("getFileInfo {}", e.getMessage());
+            errorRecorder.record(e);
         }
 
         return null;
@@ -670,17 +1801,66 @@ public class OssClient {
     public List<OSSObjectSummary> listFile(String bucketName, String filePrefix) {
 
         try {
-            // 列举包含指定前缀的文件。默认列举100个文件。
+            // 列举包含指定前缀的文件。默认列举100个文件, 列举全部文件请使用listFileStream。
             ObjectListing objectListing = oss.listObjects(new ListObjectsRequest(bucketName).withPrefix(filePrefix));
             return objectListing.getObjectSummaries();
         }catch (Exception e){
             log.error("listFile {}", e.getMessage());
+            errorRecorder.record(e);
         }
        return null;
     }
 
+    /**
+     * 分页列举指定前缀的全部文件, 消费当前页时后台预取下一页
+     * @param bucketName 存储空间
+     * @param filePrefix 文件前缀
+     * @return 文件流, 按需逐页获取
+     */
+    public Stream<OSSObjectSummary> listFileStream(String bucketName, String filePrefix) {
+        return listFileStream(bucketName, filePrefix, listMaxKeys);
+    }
+
+    /**
+     * 分页列举指定前缀的全部文件, 消费当前页时后台预取下一页
+     * @param bucketName 存储空间
+     * @param filePrefix 文件前缀
+     * @param maxKeys 每页文件数, 最大1000
+     * @return 文件流, 按需逐页获取
+     */
+    public Stream<OSSObjectSummary> listFileStream(String bucketName, String filePrefix, int maxKeys) {
+
+        Iterator<OSSObjectSummary> iterator = new ObjectListingIterator(oss, bucketName, filePrefix, maxKeys, requestExecutor);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * 并发列举指定前缀的全部文件, 按"/"发现的下一级子目录拆分为多个分片并发列举
+     * 当前层级的文件逐页读取并与子目录分片交错输出, 扁平结构的大量文件请使用按区间拆分的方式
+     * @param bucketName 存储空间
+     * @param filePrefix 文件前缀
+     * @param ordered 是否按文件名排序输出, 否则按到达顺序输出
+     * @return 文件流, 消费完毕后自动停止; 未消费完时需关闭以停止列举, 超过10分钟未读取时列举停止, 继续读取抛出异常
+     */
+    public Stream<OSSObjectSummary> listFileStreamParallel(String bucketName, String filePrefix, boolean ordered) {
+        return new ParallelObjectLister(oss, bucketName, listParallelism, listMaxKeys).listByDelimiter(filePrefix, SLASH, ordered);
+    }
+
+    /**
+     * 并发列举指定前缀的全部文件, 按文件名区间拆分为多个分片并发列举
+     * @param bucketName 存储空间
+     * @param filePrefix 文件前缀
+     * @param boundaries 升序排列的区间边界, 区间为(上一个边界, 当前边界]
+     * @param ordered 是否按文件名排序输出, 否则按到达顺序输出
+     * @return 文件流, 消费完毕后自动停止; 未消费完时需关闭以停止列举, 超过10分钟未读取时列举停止, 继续读取抛出异常
+     */
+    public Stream<OSSObjectSummary> listFileStreamParallel(String bucketName, String filePrefix, List<String> boundaries, boolean ordered) {
+        return new ParallelObjectLister(oss, bucketName, listParallelism, listMaxKeys).listByRanges(filePrefix, boundaries, ordered);
+    }
+
     /**
      * 删除文件
+     * 删除上传去重共用的路径会使其他上传方得到的路径一并失效, 见 {@link DedupIndex}
      *
      * @param bucketName 存储空间
      * @param objectName 对象名
@@ -693,17 +1873,174 @@ public class OssClient {
         try {
             // 删除文件。
             oss.deleteObject(bucketName, objectName);
+            evictObjectMeta(bucketName, objectName);
             flag = Boolean.TRUE;
         } catch (OSSException e) {
             log.error("delete {}", e.getMessage());
+            errorRecorder.record(e);
         }
 
         return flag;
     }
 
     /**
-     * 上传进程监控（进度条）
+     * 批量删除文件, 每1000个文件一次请求, 多个请求并发执行
+     * 删除上传去重共用的路径会使其他上传方得到的路径一并失效, 见 {@link DedupIndex}
+     *
+     * @param bucketName 存储空间
+     * @param objectNames 对象名
+     * @return 删除结果, 包含删除失败的文件及原因
+     */
+    public DeleteResult delete(String bucketName, Collection<String> objectNames) {
+        return delete(bucketName, objectNames.stream());
+    }
+
+    /**
+     * 批量删除文件, 每1000个文件一次请求, 多个请求并发执行
+     * 删除上传去重共用的路径会使其他上传方得到的路径一并失效, 见 {@link DedupIndex}
+     *
+     * @param bucketName 存储空间
+     * @param objectNames 对象名
+     * @return 删除结果, 包含删除失败的文件及原因
+     */
+    public DeleteResult delete(String bucketName, Stream<String> objectNames) {
+        return new BatchDeleter(oss, requestExecutor, taskNum, this::evictObjectMeta, errorRecorder.bind()).delete(bucketName, objectNames.iterator());
+    }
+
+    /**
+     * 删除指定前缀的全部文件, 边分页列举边批量删除
+     * 删除上传去重共用的路径会使其他上传方得到的路径一并失效, 见 {@link DedupIndex}
+     *
+     * @param bucketName 存储空间
+     * @param prefix 文件前缀, 不能为空, 清空存储空间使用 deleteAll
+     * @return 删除结果, 包含删除失败的文件及原因
+     * @throws IllegalArgumentException 前缀为空
+     */
+    public DeleteResult deleteByPrefix(String bucketName, String prefix) {
+
+        if (StringUtils.isBlank(prefix)) {
+            throw new IllegalArgumentException("prefix must not be blank, use deleteAll to empty a bucket");
+        }
+
+        return deleteListed(bucketName, prefix);
+    }
+
+    /**
+     * 删除存储空间内的全部文件, 边分页列举边批量删除
+     *
+     * @param bucketName 存储空间
+     * @return 删除结果, 包含删除失败的文件及原因
+     */
+    public DeleteResult deleteAll(String bucketName) {
+        return deleteListed(bucketName, null);
+    }
+
+    private DeleteResult deleteListed(String bucketName, String prefix) {
+
+        Iterator<String> objectNames = listFileStream(bucketName, prefix, ObjectListingIterator.MAX_KEYS)
+                .map(OSSObjectSummary::getKey)
+                .iterator();
+
+        return new BatchDeleter(oss, requestExecutor, taskNum, this::evictObjectMeta, errorRecorder.bind()).delete(bucketName, objectNames);
+    }
+
+    /**
+     * 服务端拷贝文件, 不经过本地, 超过1GB的文件并发分片拷贝
+     *
+     * @param sourceBucketName 源存储空间
+     * @param sourceObjectName 源对象名
+     * @param targetBucketName 目标存储空间
+     * @param targetObjectName 目标对象名
+     * @return 目标对象名
+     * @throws IOException 拷贝异常
+     */
+    public String copy(String sourceBucketName, String sourceObjectName, String targetBucketName, String targetObjectName) throws IOException {
+
+        newObjectCopier().copy(sourceBucketName, sourceObjectName, targetBucketName, targetObjectName);
+
+        return targetObjectName;
+    }
+
+    /**
+     * 移动文件, 服务端拷贝后删除源文件
+     *
+     * @param sourceBucketName 源存储空间
+     * @param sourceObjectName 源对象名
+     * @param targetBucketName 目标存储空间
+     * @param targetObjectName 目标对象名
+     * @return 目标对象名
+     * @throws IOException 移动异常
+     */
+    public String move(String sourceBucketName, String sourceObjectName, String targetBucketName, String targetObjectName) throws IOException {
+
+        if (StringUtils.equals(sourceBucketName, targetBucketName) && StringUtils.equals(sourceObjectName, targetObjectName)) {
+            return targetObjectName;
+        }
+
+        copy(sourceBucketName, sourceObjectName, targetBucketName, targetObjectName);
+        oss.deleteObject(sourceBucketName, sourceObjectName);
+        evictObjectMeta(sourceBucketName, sourceObjectName);
+
+        return targetObjectName;
+    }
+
+    /**
+     * 拷贝指定前缀的全部文件, 边分页列举边并发拷贝
+     *
+     * @param sourceBucketName 源存储空间
+     * @param sourcePrefix 源文件前缀
+     * @param targetBucketName 目标存储空间
+     * @param targetPrefix 目标文件前缀, 目标文件名为 目标前缀 + 源文件名去掉源前缀
+     * @return 拷贝结果, 包含拷贝失败的文件及原因
+     * @throws IllegalArgumentException 同一存储空间内目标前缀位于源前缀之下
+     */
+    public CopyResult copyByPrefix(String sourceBucketName, String sourcePrefix, String targetBucketName, String targetPrefix) {
+
+        Iterator<OSSObjectSummary> summaries = listFileStream(sourceBucketName, sourcePrefix, ObjectListingIterator.MAX_KEYS).iterator();
+
+        return newObjectCopier().copyByPrefix(sourceBucketName, sourcePrefix, summaries, targetBucketName, targetPrefix, key -> {});
+    }
+
+    /**
+     * 移动指定前缀的全部文件, 拷贝成功的源文件每满1000个批量删除一次
+     *
+     * @param sourceBucketName 源存储空间
+     * @param sourcePrefix 源文件前缀
+     * @param targetBucketName 目标存储空间
+     * @param targetPrefix 目标文件前缀, 目标文件名为 目标前缀 + 源文件名去掉源前缀
+     * @return 移动结果, 包含移动失败的文件及原因
+     * @throws IllegalArgumentException 同一存储空间内目标前缀位于源前缀之下
+     */
+    public CopyResult moveByPrefix(String sourceBucketName, String sourcePrefix, String targetBucketName, String targetPrefix) {
+
+        if (StringUtils.equals(sourceBucketName, targetBucketName)
+                && StringUtils.equals(StringUtils.defaultString(sourcePrefix), StringUtils.defaultString(targetPrefix))) {
+            return new CopyResult();
+        }
+
+        BatchDeleter.Batch deletion = new BatchDeleter(oss, requestExecutor, taskNum, this::evictObjectMeta, errorRecorder.bind()).batch(sourceBucketName);
+        Iterator<OSSObjectSummary> summaries = listFileStream(sourceBucketName, sourcePrefix, ObjectListingIterator.MAX_KEYS).iterator();
+        CopyResult result = newObjectCopier().copyByPrefix(sourceBucketName, sourcePrefix, summaries, targetBucketName, targetPrefix, deletion::add);
+
+        DeleteResult deleteResult = deletion.finish();
+        deleteResult.getFailedKeys().forEach((objectName, reason) -> {
+            result.setCopiedCount(result.getCopiedCount() - 1);
+            result.getFailedKeys().put(objectName, "copied but not deleted: " + reason);
+        });
+
+        return result;
+    }
+
+    private ObjectCopier newObjectCopier() {
+        return new ObjectCopier(oss, requestExecutor, shardExecutor, partSize, taskNum, this::evictObjectMeta, errorRecorder.bind());
+    }
+
+    /**
+     * 文件上传监控（进度条）, 只累计字节数, 不再输出日志
+     *
+     * @deprecated 使用带传输ID的上传方法, 通过 {@link OssClient#getTransferProgress(String)} 查询进度
      */
+    @Deprecated
     public static class PutObjectProgressListener implements ProgressListener {
 
         private long bytesWritten = 0;
@@ -715,28 +2052,14 @@ public class OssClient {
             long bytes = progressEvent.getBytes();
             ProgressEventType eventType = progressEvent.getEventType();
             switch (eventType) {
-                case TRANSFER_STARTED_EVENT:
-                    log.info("Start to upload......");
-                    break;
                 case REQUEST_CONTENT_LENGTH_EVENT:
                     this.totalBytes = bytes;
-                    log.info(this.totalBytes + " bytes in total will be uploaded to OSS");
                     break;
                 case REQUEST_BYTE_TRANSFER_EVENT:
                     this.bytesWritten += bytes;
-                    if (this.totalBytes != -1) {
-                        int percent = (int) (this.bytesWritten * 100.0 / this.totalBytes);
-                        log.info(bytes + " bytes have been written at this time, upload progress: " + percent + "%(" + this.bytesWritten + "/" + this.totalBytes + ")");
-                    } else {
-                        log.info(bytes + " bytes have been written at this time, upload ratio: unknown" + "(" + this.bytesWritten + "/...)");
-                    }
                     break;
                 case TRANSFER_COMPLETED_EVENT:
                     this.succeed = true;
-                    log.info("Succeed to upload, " + this.bytesWritten + " bytes have been transferred in total");
-                    break;
-                case TRANSFER_FAILED_EVENT:
-                    log.info("Failed to upload, " + this.bytesWritten + " bytes have been transferred");
                     break;
                 default:
                     break;
@@ -759,8 +2082,11 @@ public class OssClient {
 
 
         /**
-         * 文件下载监控（进度条）
+         * 文件下载监控（进度条）, 只累计字节数, 不再输出日志
+         *
+         * @deprecated 使用带传输ID的下载方法, 通过 {@link OssClient#getTransferProgress(String)} 查询进度
          */
+        @Deprecated
         public static class GetObjectProgressListener implements ProgressListener {
             private long bytesRead = 0;
             private long totalBytes = -1;
@@ -771,30 +2097,14 @@ public class OssClient {
                 long bytes = progressEvent.getBytes();
                 ProgressEventType eventType = progressEvent.getEventType();
                 switch (eventType) {
-                    case TRANSFER_STARTED_EVENT:
-                        System.out.println("Start to download......");
-                        break;
                     case RESPONSE_CONTENT_LENGTH_EVENT:
                         this.totalBytes = bytes;
-                        System.out.println(this.totalBytes + " bytes in total will be downloaded to a local file");
                         break;
                     case RESPONSE_BYTE_TRANSFER_EVENT:
                         this.bytesRead += bytes;
-                        if (this.totalBytes != -1) {
-                            int percent = (int) (this.bytesRead * 100.0 / this.totalBytes);
-                            System.out.println(bytes + " bytes have been read at this time, download progress: " +
-                                    percent + "%(" + this.bytesRead + "/" + this.totalBytes + ")");
-                        } else {
-                            System.out.println(bytes + " bytes have been read at this time, download ratio: unknown" +
-                                    "(" + this.bytesRead + "/...)");
-                        }
                         break;
                     case TRANSFER_COMPLETED_EVENT:
                         this.succeed = true;
-                        System.out.println("Succeed to download, " + this.bytesRead + " bytes have been transferred in total");
-                        break;
-                    case TRANSFER_FAILED_EVENT:
-                        System.out.println("Failed to download, " + this.bytesRead + " bytes have been transferred");
                         break;
                     default:
                         break;
@@ -828,9 +2138,10 @@ public class OssClient {
         ObjectMetadata objectMetadata = null;
 
         try {
-            objectMetadata = oss.getObjectMetadata(bucketName, objectName);
+            objectMetadata = headObject(bucketName, objectName);
         }catch (Exception e){
             log.error("File information retrieval failed {}", e.getMessage());
+            errorRecorder.record(e);
         }
 
         if (ObjectUtils.isEmpty(objectMetadata)) {
@@ -858,12 +2169,17 @@ public class OssClient {
      */
     public ObjectMetaInfo getSimplifiedObjectMeta(String bucketName, String objectName){
 
+        if (metaCache != null) {
+            return getCachedSimplifiedObjectMeta(bucketName, objectName);
+        }
+
         SimplifiedObjectMeta  simplifiedObjectMeta = null;
 
         try {
             simplifiedObjectMeta = oss.getSimplifiedObjectMeta(bucketName, objectName);
         }catch (Exception e){
             log.error("File information retrieval failed {}", e.getMessage());
+            errorRecorder.record(e);
         }
 
         if (ObjectUtils.isEmpty(simplifiedObjectMeta)) {
@@ -878,4 +2194,33 @@ public class OssClient {
         return objectMetaInfo;
     }
 
+    /**
+     *  从缓存的元信息中获取文件部分元信息
+     * @param  objectName 文件名
+     * @param  bucketName 储存空间
+     * @return 元信息
+     */
+    private ObjectMetaInfo getCachedSimplifiedObjectMeta(String bucketName, String objectName) {
+
+        ObjectMetadata objectMetadata = null;
+
+        try {
+            objectMetadata = metaCache.getObjectMetadata(bucketName, objectName);
+        }catch (Exception e){
+            log.error("File information retrieval failed {}", e.getMessage());
+            errorRecorder.record(e);
+        }
+
+        if (ObjectUtils.isEmpty(objectMetadata)) {
+            return null;
+        }
+
+        ObjectMetaInfo objectMetaInfo = new ObjectMetaInfo();
+        objectMetaInfo.setLastModified(objectMetadata.getLastModified().getTime());
+        objectMetaInfo.setTag(objectMetadata.getETag());
+        objectMetaInfo.setLength(objectMetadata.getContentLength());
+
+        return objectMetaInfo;
+    }
+
 }
@@ -0,0 +1,434 @@
+package cn.darkjrong.storage.oss;
+
+import com.aliyun.oss.OSS;
+import com.aliyun.oss.model.ListObjectsRequest;
+import com.aliyun.oss.model.OSSObjectSummary;
+import com.aliyun.oss.model.ObjectListing;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 分片并发列举, 按子目录或文件名区间将列举拆分为多个分片并发执行, 合并为一个流
+ *
+ * 每次列举使用独立的线程池执行分片, 线程数即并发数, 不占用客户端其他请求的线程;
+ * 流消费完毕、列举失败或关闭后分片停止, 线程池随之关闭
+ *
+ * @author Rong.Jia
+ * @date 2020/06/17 14:40
+ */
+class ParallelObjectLister {
+
+    /**
+     * 分片结束标记
+     */
+    private static final Object END = new Object();
+
+    /**
+     * 读写队列的等待间隔
+     */
+    private static final long QUEUE_TIMEOUT_MILLIS = 100L;
+
+    /**
+     * 消费方超过该时间未读取时视为已放弃, 分片停止列举
+     */
+    private static final long ABANDON_MILLIS = 10 * 60 * 1000L;
+
+    private final OSS oss;
+    private final String bucketName;
+    private final int parallelism;
+    private final int maxKeys;
+
+    /**
+     * 构造分片并发列举
+     *
+     * @param oss         oss
+     * @param bucketName  存储空间
+     * @param parallelism 同时执行的分片数, 即每次列举的线程数
+     * @param maxKeys     每页文件数
+     */
+    ParallelObjectLister(OSS oss, String bucketName, int parallelism, int maxKeys) {
+        this.oss = oss;
+        this.bucketName = bucketName;
+        this.parallelism = Math.max(1, parallelism);
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * 按分隔符发现的子目录拆分列举, 当前层级的文件逐页读取, 按文件名顺序与子目录分片交错输出
+     *
+     * @param prefix    文件前缀
+     * @param delimiter 分隔符
+     * @param ordered   是否按文件名排序输出
+     * @return 文件流
+     */
+    Stream<OSSObjectSummary> listByDelimiter(String prefix, String delimiter, boolean ordered) {
+        return merge(new DelimiterPlan(prefix, delimiter), ordered);
+    }
+
+    /**
+     * 按文件名区间拆分列举, 区间为 (上一个边界, 当前边界], 边界需升序排列
+     *
+     * @param prefix     文件前缀
+     * @param boundaries 区间边界
+     * @param ordered    是否按文件名排序输出
+     * @return 文件流
+     */
+    Stream<OSSObjectSummary> listByRanges(String prefix, List<String> boundaries, boolean ordered) {
+
+        List<Object> shards = new ArrayList<>(boundaries.size() + 1);
+
+        String lower = null;
+        for (String upper : boundaries) {
+            shards.add(range(prefix, lower, upper));
+            lower = upper;
+        }
+        shards.add(range(prefix, lower, null));
+
+        return merge(shards.iterator(), ordered);
+    }
+
+    private Supplier<Iterator<OSSObjectSummary>> range(String prefix, String lower, String upper) {
+
+        return () -> {
+            Iterator<OSSObjectSummary> iterator = new ObjectListingIterator(oss, bucketName, prefix, lower, maxKeys, null);
+            if (upper == null) {
+                return iterator;
+            }
+
+            // 超过区间上界后停止列举
+            return new Iterator<OSSObjectSummary>() {
+
+                private OSSObjectSummary next;
+                private boolean exceeded;
+
+                @Override
+                public boolean hasNext() {
+                    if (next == null && !exceeded && iterator.hasNext()) {
+                        OSSObjectSummary summary = iterator.next();
+                        exceeded = summary.getKey().compareTo(upper) > 0;
+                        next = exceeded ? null : summary;
+                    }
+                    return next != null;
+                }
+
+                @Override
+                public OSSObjectSummary next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    OSSObjectSummary summary = next;
+                    next = null;
+                    return summary;
+                }
+            };
+        };
+    }
+
+    /**
+     * 按分片计划并发执行各分片, 有序时按计划顺序依次输出, 无序时按到达顺序输出
+     *
+     * @param plan    分片计划, 元素为直接输出的文件或分片
+     * @param ordered 是否按文件名排序输出
+     * @return 文件流
+     */
+    private Stream<OSSObjectSummary> merge(Iterator<Object> plan, boolean ordered) {
+
+        Merge merge = new Merge(plan, ordered);
+
+        int characteristics = ordered ? Spliterator.ORDERED | Spliterator.NONNULL : Spliterator.NONNULL;
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merge, characteristics), false)
+                .onClose(merge::cancel);
+    }
+
+    /**
+     * 按分隔符逐页列举当前层级, 按文件名顺序交错输出当前层级的文件和子目录分片, 最多缓存一页
+     */
+    private class DelimiterPlan implements Iterator<Object> {
+
+        private final String prefix;
+        private final String delimiter;
+        private String marker;
+        private boolean truncated = Boolean.TRUE;
+        private Iterator<OSSObjectSummary> summaries = Collections.emptyIterator();
+        private Iterator<String> commonPrefixes = Collections.emptyIterator();
+        private OSSObjectSummary summary;
+        private String commonPrefix;
+
+        DelimiterPlan(String prefix, String delimiter) {
+            this.prefix = prefix;
+            this.delimiter = delimiter;
+        }
+
+        @Override
+        public boolean hasNext() {
+
+            while (summary == null && commonPrefix == null) {
+                if (!summaries.hasNext() && !commonPrefixes.hasNext()) {
+                    if (!truncated) {
+                        return false;
+                    }
+
+                    ObjectListing objectListing = oss.listObjects(new ListObjectsRequest(bucketName)
+                            .withPrefix(prefix)
+                            .withDelimiter(delimiter)
+                            .withMarker(marker)
+                            .withMaxKeys(ObjectListingIterator.MAX_KEYS));
+
+                    marker = objectListing.getNextMarker();
+                    truncated = objectListing.isTruncated();
+                    summaries = objectListing.getObjectSummaries().iterator();
+                    commonPrefixes = objectListing.getCommonPrefixes().iterator();
+                }
+
+                summary = summaries.hasNext() ? summaries.next() : null;
+                commonPrefix = commonPrefixes.hasNext() ? commonPrefixes.next() : null;
+            }
+
+            return true;
+        }
+
+        @Override
+        public Object next() {
+
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            if (commonPrefix == null || (summary != null && summary.getKey().compareTo(commonPrefix) < 0)) {
+                OSSObjectSummary result = summary;
+                summary = summaries.hasNext() ? summaries.next() : null;
+                return result;
+            }
+
+            String shardPrefix = commonPrefix;
+            commonPrefix = commonPrefixes.hasNext() ? commonPrefixes.next() : null;
+            return (Supplier<Iterator<OSSObjectSummary>>) () -> new ObjectListingIterator(oss, bucketName, shardPrefix, maxKeys, null);
+        }
+    }
+
+    /**
+     * 合并各分片的输出, 由消费线程按需推进分片计划
+     *
+     * 同时执行的分片不超过并发数, 有序时正在消费的分片总是最早开始的分片, 其余分片最多缓存一页;
+     * 流关闭、消费完毕、列举失败或消费方超过 {@link #ABANDON_MILLIS} 未读取时, 分片停止写入并关闭线程池,
+     * 此后未消费完的流继续读取时抛出异常
+     */
+    private class Merge implements Iterator<OSSObjectSummary> {
+
+        private final Iterator<Object> plan;
+        private final boolean ordered;
+
+        /**
+         * 待输出的元素, 有序时包含已开始的分片, 无序时只包含文件
+         */
+        private final Deque<Object> pending = new ArrayDeque<>();
+
+        /**
+         * 无序时各分片共用的队列
+         */
+        private final BlockingQueue<Object> shared;
+
+        private final ThreadPoolExecutor executor;
+
+        private volatile boolean cancelled;
+        private volatile long lastConsumed = System.currentTimeMillis();
+        private boolean finished;
+        private int running;
+        private BlockingQueue<Object> current;
+        private OSSObjectSummary next;
+
+        Merge(Iterator<Object> plan, boolean ordered) {
+            this.plan = plan;
+            this.ordered = ordered;
+            this.shared = ordered ? null : new LinkedBlockingQueue<>(maxKeys * parallelism);
+
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("oss-list-");
+            threadFactory.setDaemon(true);
+            this.executor = new ThreadPoolExecutor(parallelism, parallelism, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), threadFactory);
+            this.executor.allowCoreThreadTimeOut(true);
+        }
+
+        @Override
+        public boolean hasNext() {
+
+            if (finished) {
+                return next != null;
+            }
+
+            lastConsumed = System.currentTimeMillis();
+            while (next == null) {
+
+                if (cancelled) {
+                    throw new IllegalStateException("Object listing was closed or abandoned");
+                }
+
+                if (ordered && current != null) {
+                    if (accept(take(current))) {
+                        current = null;
+                    }
+                    continue;
+                }
+
+                try {
+                    fill();
+                } catch (RuntimeException e) {
+                    cancel();
+                    throw e;
+                }
+
+                Object head = pending.poll();
+                if (head instanceof OSSObjectSummary) {
+                    next = (OSSObjectSummary) head;
+                } else if (head != null) {
+                    current = (BlockingQueue<Object>) head;
+                } else if (!ordered && running > 0) {
+                    accept(take(shared));
+                } else {
+                    finished = true;
+                    cancel();
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        public OSSObjectSummary next() {
+
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            OSSObjectSummary summary = next;
+            next = null;
+            return summary;
+        }
+
+        void cancel() {
+            cancelled = true;
+            executor.shutdownNow();
+        }
+
+        /**
+         * 推进分片计划, 直到并发数已满、待输出元素达到一页或计划结束
+         */
+        private void fill() {
+            while (running < parallelism && pending.size() < maxKeys && plan.hasNext()) {
+                Object item = plan.next();
+                if (item instanceof OSSObjectSummary) {
+                    pending.add(item);
+                } else {
+                    BlockingQueue<Object> queue = ordered ? new LinkedBlockingQueue<>(maxKeys) : shared;
+                    Supplier<Iterator<OSSObjectSummary>> shard = (Supplier<Iterator<OSSObjectSummary>>) item;
+                    executor.execute(() -> produce(shard, queue));
+                    running++;
+                    if (ordered) {
+                        pending.add(queue);
+                    }
+                }
+            }
+        }
+
+        /**
+         * 处理分片输出的元素
+         *
+         * @return 是否为分片结束标记
+         */
+        private boolean accept(Object element) {
+
+            if (element == END) {
+                running--;
+                return true;
+            }
+
+            if (element instanceof Failure) {
+                cancel();
+                throw ((Failure) element).cause;
+            }
+
+            next = (OSSObjectSummary) element;
+            return false;
+        }
+
+        /**
+         * 限时读取队列, 分片已放弃时不再等待
+         */
+        private Object take(BlockingQueue<Object> queue) {
+            try {
+                Object element;
+                while ((element = queue.poll(QUEUE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+                    if (cancelled) {
+                        throw new IllegalStateException("Object listing was closed or abandoned");
+                    }
+                }
+                return element;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+                throw new IllegalStateException("Interrupted while listing objects", e);
+            }
+        }
+
+        /**
+         * 执行分片列举, 写入队列
+         */
+        private void produce(Supplier<Iterator<OSSObjectSummary>> shard, BlockingQueue<Object> queue) {
+            try {
+                try {
+                    Iterator<OSSObjectSummary> iterator = shard.get();
+                    while (iterator.hasNext()) {
+                        if (!offer(queue, iterator.next())) {
+                            return;
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    if (!offer(queue, new Failure(e))) {
+                        return;
+                    }
+                }
+
+                offer(queue, END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * 限时写入队列, 流已关闭或消费方长时间未读取时放弃
+         *
+         * @return 是否写入成功
+         */
+        private boolean offer(BlockingQueue<Object> queue, Object element) throws InterruptedException {
+            while (!queue.offer(element, QUEUE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (cancelled || System.currentTimeMillis() - lastConsumed > ABANDON_MILLIS) {
+                    cancel();
+                    return false;
+                }
+            }
+            return !cancelled;
+        }
+    }
+
+    /**
+     * 分片执行失败
+     */
+    private static class Failure {
+
+        private final RuntimeException cause;
+
+        Failure(RuntimeException cause) {
+            this.cause = cause;
+        }
+    }
+
+}
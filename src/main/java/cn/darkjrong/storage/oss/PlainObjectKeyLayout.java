@@ -0,0 +1,27 @@
+package cn.darkjrong.storage.oss;
+
+import org.apache.commons.lang3.StringUtils;
+
+import static cn.darkjrong.storage.utils.FileUtils.SLASH;
+
+/**
+ * 默认布局, 对象名为 目录/文件名
+ *
+ * @author Rong.Jia
+ * @date 2020/06/27 09:20
+ */
+public class PlainObjectKeyLayout implements ObjectKeyLayout {
+
+    public static final PlainObjectKeyLayout INSTANCE = new PlainObjectKeyLayout();
+
+    @Override
+    public String layout(String dir, String fileName) {
+        return StringUtils.isEmpty(dir) ? fileName : dir + SLASH + fileName;
+    }
+
+    @Override
+    public String resolve(String objectName) {
+        return objectName;
+    }
+
+}
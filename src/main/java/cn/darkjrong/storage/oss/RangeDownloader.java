@@ -0,0 +1,214 @@
+package cn.darkjrong.storage.oss;
+
+import com.aliyun.oss.OSS;
+import com.aliyun.oss.OSSErrorCode;
+import com.aliyun.oss.OSSException;
+import com.aliyun.oss.common.utils.CRC64;
+import com.aliyun.oss.model.GetObjectRequest;
+import com.aliyun.oss.model.ObjectMetadata;
+import com.aliyun.oss.model.SimplifiedObjectMeta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * 并发分段下载, 各分段通过Range请求获取, 按位置写入预分配的本地文件
+ *
+ * @author Rong.Jia
+ * @date 2020/06/10 09:42
+ */
+class RangeDownloader {
+
+    private static final Logger log = LoggerFactory.getLogger(RangeDownloader.class);
+
+    /**
+     * 分段写入缓冲区大小
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 重试也无法成功的错误码, 文件已被替换、删除、无权限或需要解冻, 出现时立即失败
+     */
+    private static final List<String> NON_RETRYABLE_ERROR_CODES = Arrays.asList(OSSErrorCode.PRECONDITION_FAILED,
+            OSSErrorCode.NO_SUCH_KEY, OSSErrorCode.NO_SUCH_BUCKET, OSSErrorCode.ACCESS_DENIED,
+            OSSErrorCode.INVALID_RANGE, OSSErrorCode.INVALID_OBJECT_STATE);
+
+    private final OSS oss;
+    private final ExecutorService executor;
+    private final long partSize;
+    private final int retries;
+
+    /**
+     * 是否校验 CRC64, 分段下载无法按顺序计算 MD5, 只校验 CRC64
+     */
+    private final boolean verifyCrc64;
+
+    RangeDownloader(OSS oss, ExecutorService executor, long partSize, int retries) {
+        this(oss, executor, partSize, retries, IntegrityMode.NONE);
+    }
+
+    RangeDownloader(OSS oss, ExecutorService executor, long partSize, int retries, IntegrityMode integrityMode) {
+        this.oss = oss;
+        this.executor = executor;
+        this.partSize = partSize;
+        this.retries = retries;
+        this.verifyCrc64 = integrityMode.isCrc64();
+    }
+
+    /**
+     * 下载文件
+     *
+     * @param bucketName 存储空间
+     * @param objectName 对象名
+     * @param file       本地文件
+     * @throws IOException 下载异常
+     */
+    void download(String bucketName, String objectName, File file) throws IOException {
+        download(bucketName, objectName, file, null);
+    }
+
+    /**
+     * 下载文件, 按写入本地文件的字节数累加传输进度
+     *
+     * @param bucketName 存储空间
+     * @param objectName 对象名
+     * @param file       本地文件
+     * @param progress   传输进度, 可为空
+     * @throws IOException 下载异常
+     */
+    void download(String bucketName, String objectName, File file, TransferProgress progress) throws IOException {
+
+        long objectSize;
+        String eTag;
+        Long serverCrc64 = null;
+        if (verifyCrc64) {
+            // 完整元信息包含整个文件的 CRC64
+            ObjectMetadata metadata = oss.getObjectMetadata(bucketName, objectName);
+            objectSize = metadata.getContentLength();
+            eTag = metadata.getETag();
+            serverCrc64 = metadata.getServerCRC();
+        } else {
+            SimplifiedObjectMeta meta = oss.getSimplifiedObjectMeta(bucketName, objectName);
+            objectSize = meta.getSize();
+            eTag = meta.getETag();
+        }
+        if (progress != null) {
+            progress.setTotalBytes(objectSize);
+        }
+        List<String> eTags = Collections.singletonList(eTag);
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            Files.createDirectories(parent.toPath());
+        }
+
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(tmpFile, "rw")) {
+            randomAccessFile.setLength(objectSize);
+        }
+
+        List<Future<Long>> futures = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(tmpFile.toPath(), StandardOpenOption.WRITE)) {
+
+            for (long start = 0; start < objectSize; start += partSize) {
+                long end = Math.min(start + partSize, objectSize) - 1;
+                long rangeStart = start;
+                futures.add(executor.submit(() -> downloadRange(bucketName, objectName, eTags, channel, rangeStart, end, progress)));
+            }
+
+            // 按分段顺序合并各分段的 CRC64
+            long crc64 = 0L;
+            long start = 0L;
+            for (Future<Long> future : futures) {
+                long rangeCrc64 = future.get();
+                long length = Math.min(partSize, objectSize - start);
+                crc64 = CRC64.combine(crc64, rangeCrc64, length);
+                start += length;
+            }
+
+            if (verifyCrc64) {
+                IntegrityInputStream.verifyCrc64(crc64, serverCrc64, bucketName + "/" + objectName);
+            }
+
+            channel.force(false);
+        } catch (Exception e) {
+            futures.forEach(future -> future.cancel(true));
+            Files.deleteIfExists(tmpFile.toPath());
+            throw MultipartUploader.unwrap(e);
+        }
+
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * 下载分段, 失败时只从已写入的位置重试该分段, 服务端明确拒绝的请求不重试
+     *
+     * @return 分段的 CRC64, 不校验时返回0
+     */
+    private long downloadRange(String bucketName, String objectName, List<String> eTags,
+                               FileChannel channel, long start, long end, TransferProgress progress) throws IOException {
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long position = start;
+
+        // 重试从已写入的位置继续, 校验值按写入顺序累加
+        CRC64 crc64 = verifyCrc64 ? new CRC64() : null;
+
+        for (int attempt = 0; ; attempt++) {
+
+            GetObjectRequest request = new GetObjectRequest(bucketName, objectName);
+            request.setRange(position, end);
+
+            // 保证各分段来自同一版本的文件
+            request.setMatchingETagConstraints(eTags);
+
+            try (InputStream inputStream = oss.getObject(request).getObjectContent()) {
+
+                int n;
+                while (position <= end && (n = inputStream.read(buffer)) != -1) {
+                    ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, n);
+                    while (byteBuffer.hasRemaining()) {
+                        position += channel.write(byteBuffer, position);
+                    }
+                    if (crc64 != null) {
+                        crc64.update(buffer, 0, n);
+                    }
+                    if (progress != null) {
+                        progress.add(n);
+                    }
+                }
+
+                if (position > end) {
+                    return crc64 == null ? 0L : crc64.getValue();
+                }
+                throw new EOFException("premature end of range " + start + "-" + end);
+            } catch (IOException | RuntimeException e) {
+                if (attempt >= retries || !isRetryable(e) || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                log.warn("download range {}-{} of {} failed, retry {}: {}", position, end, objectName, attempt + 1, e.getMessage());
+            }
+        }
+    }
+
+    private static boolean isRetryable(Exception e) {
+        return !(e instanceof OSSException) || !NON_RETRYABLE_ERROR_CODES.contains(((OSSException) e).getErrorCode());
+    }
+
+}
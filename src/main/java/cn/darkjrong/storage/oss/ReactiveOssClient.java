@@ -0,0 +1,276 @@
+package cn.darkjrong.storage.oss;
+
+import cn.darkjrong.storage.oss.domain.ObjectMetaInfo;
+import com.aliyun.oss.OSS;
+import com.aliyun.oss.model.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static cn.darkjrong.storage.utils.FileUtils.BUFFER_SIZE;
+
+/**
+ * oss 响应式工具类, 阻塞的 SDK 调用在有界调度器中执行
+ *
+ * 上传时数据按分片大小边到达边上传, 同时缓存的分片不超过 并发数 + 2 个;
+ * 分片数最多10000, 单个文件最大为 分片大小 * 10000
+ *
+ * @author Rong.Jia
+ * @date 2020/06/18 15:20
+ */
+public class ReactiveOssClient implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveOssClient.class);
+
+    /**
+     *  默认调度器最大线程数
+     */
+    public static final int DEFAULT_THREAD_CAP = 32;
+
+    /**
+     *  默认调度器等待任务数
+     */
+    public static final int DEFAULT_QUEUED_TASK_CAP = 1000;
+
+    private static final DataBufferFactory BUFFER_FACTORY = new DefaultDataBufferFactory();
+
+    private final OssClient ossClient;
+    private final int partSize;
+    private final int taskNum;
+    private final Scheduler scheduler;
+
+    @Autowired
+    private OSS oss;
+
+    /**
+     * 构造响应式工具类
+     *
+     * @param ossClient     oss 工具类
+     * @param partSize      分片大小
+     * @param taskNum       分片上传并发数
+     * @param threadCap     调度器最大线程数
+     * @param queuedTaskCap 调度器等待任务数
+     */
+    public ReactiveOssClient(OssClient ossClient, long partSize, int taskNum, int threadCap, int queuedTaskCap) {
+        this.ossClient = ossClient;
+        this.partSize = (int) Math.min(Math.max(partSize, MultipartUploader.MIN_PART_SIZE), Integer.MAX_VALUE);
+        this.taskNum = Math.max(1, taskNum);
+        this.scheduler = Schedulers.newBoundedElastic(threadCap, queuedTaskCap, "oss-reactive", 60, true);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+
+    /**
+     * 上传文件, 不足一个分片时普通上传, 否则分片上传, 失败或取消时取消分片上传
+     *
+     * @param bucketName 存储空间
+     * @param objectName 对象名
+     * @param content    文件数据, 上传后释放
+     * @return 对象名
+     */
+    public Mono<String> upload(String bucketName, String objectName, Flux<DataBuffer> content) {
+
+        return Flux.defer(() -> {
+                    PartBuffer buffer = new PartBuffer(partSize);
+                    return content.concatMapIterable(dataBuffer -> {
+                        try {
+                            return buffer.write(dataBuffer);
+                        } finally {
+                            DataBufferUtils.release(dataBuffer);
+                        }
+                    }).concatWith(Mono.fromSupplier(buffer::last));
+                })
+                .switchOnFirst((signal, parts) -> {
+                    Part first = signal.get();
+                    if (first == null) {
+                        return parts.then(Mono.<String>empty());
+                    }
+                    if (first.last) {
+                        return parts.then(blocking(() -> {
+                            oss.putObject(bucketName, objectName, new ByteArrayInputStream(first.content));
+                            return objectName;
+                        }));
+                    }
+                    return multipartUpload(bucketName, objectName, parts);
+                })
+                .singleOrEmpty()
+                .doOnSuccess(name -> ossClient.evictObjectMeta(bucketName, objectName));
+    }
+
+    /**
+     * 下载文件, 按下游请求逐块读取
+     *
+     * @param bucketName 存储空间
+     * @param objectName 对象名
+     * @return 文件数据
+     */
+    public Flux<DataBuffer> download(String bucketName, String objectName) {
+        return DataBufferUtils.readInputStream(() -> oss.getObject(bucketName, objectName).getObjectContent(),
+                BUFFER_FACTORY, BUFFER_SIZE)
+                .subscribeOn(scheduler);
+    }
+
+    /**
+     * 判断文件是否存在
+     * @see OssClient#doesObjectExist(String, String)
+     */
+    public Mono<Boolean> doesObjectExist(String bucketName, String objectName) {
+        return blocking(() -> ossClient.doesObjectExist(bucketName, objectName));
+    }
+
+    /**
+     * 获取文件全部元信息
+     * @see OssClient#getObjectMetadata(String, String)
+     */
+    public Mono<ObjectMetaInfo> getObjectMetadata(String bucketName, String objectName) {
+        return blocking(() -> ossClient.getObjectMetadata(bucketName, objectName));
+    }
+
+    /**
+     * 删除文件
+     * @see OssClient#delete(String, String)
+     */
+    public Mono<Boolean> delete(String bucketName, String objectName) {
+        return blocking(() -> ossClient.delete(bucketName, objectName));
+    }
+
+    private Mono<String> multipartUpload(String bucketName, String objectName, Flux<Part> parts) {
+
+        return blocking(() -> oss.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucketName, objectName)).getUploadId())
+                .flatMap(uploadId -> parts
+                        .flatMapSequential(part -> blocking(() -> uploadPart(bucketName, objectName, uploadId, part)), taskNum, 1)
+                        .collectList()
+                        .flatMap(partETags -> blocking(() -> {
+                            oss.completeMultipartUpload(new CompleteMultipartUploadRequest(bucketName, objectName, uploadId, partETags));
+                            return objectName;
+                        }))
+                        .onErrorResume(e -> Mono.fromRunnable(() -> abort(bucketName, objectName, uploadId))
+                                .subscribeOn(scheduler)
+                                .then(Mono.error(e)))
+                        .doOnCancel(() -> scheduler.schedule(() -> abort(bucketName, objectName, uploadId))));
+    }
+
+    private PartETag uploadPart(String bucketName, String objectName, String uploadId, Part part) throws IOException {
+
+        if (part.partNumber > MultipartUploader.MAX_PART_COUNT) {
+            throw new IOException("Too many parts for " + objectName + ", increase the part size");
+        }
+
+        UploadPartRequest uploadPartRequest = new UploadPartRequest();
+        uploadPartRequest.setBucketName(bucketName);
+        uploadPartRequest.setKey(objectName);
+        uploadPartRequest.setUploadId(uploadId);
+        uploadPartRequest.setInputStream(new ByteArrayInputStream(part.content));
+        uploadPartRequest.setPartSize(part.content.length);
+        uploadPartRequest.setPartNumber(part.partNumber);
+
+        return oss.uploadPart(uploadPartRequest).getPartETag();
+    }
+
+    private void abort(String bucketName, String objectName, String uploadId) {
+        try {
+            oss.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, objectName, uploadId));
+        } catch (Exception e) {
+            log.error("abortMultipartUpload {}", e.getMessage());
+        }
+    }
+
+    private <T> Mono<T> blocking(Callable<T> task) {
+        return Mono.fromCallable(task).subscribeOn(scheduler);
+    }
+
+    /**
+     * 分片
+     */
+    private static class Part {
+
+        private final int partNumber;
+        private final byte[] content;
+
+        /**
+         * 是否最后一个分片
+         */
+        private final boolean last;
+
+        Part(int partNumber, byte[] content, boolean last) {
+            this.partNumber = partNumber;
+            this.content = content;
+            this.last = last;
+        }
+    }
+
+    /**
+     * 将数据拼接为分片, 分片写满后等到后续数据到达才输出, 以便区分最后一个分片
+     */
+    private static class PartBuffer {
+
+        private final int partSize;
+        private byte[] buffer;
+        private int position;
+        private int partNumber;
+
+        PartBuffer(int partSize) {
+            this.partSize = partSize;
+        }
+
+        List<Part> write(DataBuffer dataBuffer) {
+
+            List<Part> parts = Collections.emptyList();
+            while (dataBuffer.readableByteCount() > 0) {
+
+                if (buffer != null && position == partSize) {
+                    if (parts.isEmpty()) {
+                        parts = new ArrayList<>(1);
+                    }
+                    parts.add(new Part(++partNumber, buffer, false));
+                    buffer = null;
+                }
+
+                if (buffer == null) {
+                    buffer = new byte[partSize];
+                    position = 0;
+                }
+
+                int length = Math.min(partSize - position, dataBuffer.readableByteCount());
+                dataBuffer.read(buffer, position, length);
+                position += length;
+            }
+
+            return parts;
+        }
+
+        Part last() {
+
+            byte[] content;
+            if (buffer == null) {
+                content = new byte[0];
+            } else {
+                content = position == partSize ? buffer : Arrays.copyOf(buffer, position);
+            }
+            buffer = null;
+
+            return new Part(++partNumber, content, true);
+        }
+    }
+
+}
@@ -0,0 +1,210 @@
+package cn.darkjrong.storage.oss;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单次传输的进度, 多个线程可同时累加已传输字节数
+ *
+ * @author Rong.Jia
+ * @date 2020/06/28 09:10
+ */
+public class TransferProgress {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferProgress.class);
+
+    /**
+     * 传输状态
+     */
+    public enum State {
+
+        /**
+         * 传输中
+         */
+        RUNNING,
+
+        /**
+         * 已完成
+         */
+        COMPLETED,
+
+        /**
+         * 已失败
+         */
+        FAILED
+    }
+
+    private final String transferId;
+    private final String bucketName;
+    private final String objectName;
+    private final long startTime = System.currentTimeMillis();
+    private final LongAdder bytesTransferred = new LongAdder();
+
+    /**
+     * 进度日志最小间隔, 单位毫秒, 不大于0时不输出
+     */
+    private final long logInterval;
+    private final AtomicLong lastLogTime = new AtomicLong(startTime);
+
+    private volatile long totalBytes;
+    private volatile long endTime;
+    private volatile State state = State.RUNNING;
+
+    TransferProgress(String transferId, String bucketName, String objectName, long totalBytes, long logInterval) {
+        this.transferId = transferId;
+        this.bucketName = bucketName;
+        this.objectName = objectName;
+        this.totalBytes = totalBytes;
+        this.logInterval = logInterval;
+    }
+
+    /**
+     * 累加已传输字节数, 开启进度日志时按间隔输出
+     *
+     * @param bytes 本次传输的字节数
+     */
+    void add(long bytes) {
+
+        bytesTransferred.add(bytes);
+
+        if (logInterval > 0) {
+            long now = System.currentTimeMillis();
+            long last = lastLogTime.get();
+            if (now - last >= logInterval && lastLogTime.compareAndSet(last, now)) {
+                log.info("transfer {} {}/{}: {}/{} bytes, {}%, {} bytes/s, remaining {} ms", transferId, bucketName,
+                        objectName, getBytesTransferred(), totalBytes, getPercent(), getThroughput(), getRemainingMillis());
+            }
+        }
+    }
+
+    void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    void complete() {
+        finish(State.COMPLETED);
+    }
+
+    void fail() {
+        finish(State.FAILED);
+    }
+
+    private void finish(State state) {
+
+        if (this.state != State.RUNNING) {
+            return;
+        }
+
+        this.endTime = System.currentTimeMillis();
+        this.state = state;
+
+        if (logInterval > 0) {
+            log.info("transfer {} {}/{} {}: {} bytes in {} ms", transferId, bucketName, objectName,
+                    state, getBytesTransferred(), getElapsedMillis());
+        }
+    }
+
+    public String getTransferId() {
+        return transferId;
+    }
+
+    public String getBucketName() {
+        return bucketName;
+    }
+
+    public String getObjectName() {
+        return objectName;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * 结束时间
+     *
+     * @return 结束时间, 传输中返回0
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * 总字节数
+     *
+     * @return 总字节数, 未知时返回-1
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getBytesTransferred() {
+        return bytesTransferred.sum();
+    }
+
+    /**
+     * 已传输百分比
+     *
+     * @return 0 - 100, 总字节数未知时返回-1
+     */
+    public int getPercent() {
+
+        long total = totalBytes;
+        if (total < 0) {
+            return -1;
+        }
+        if (total == 0) {
+            return state == State.COMPLETED ? 100 : 0;
+        }
+
+        return (int) Math.min(100L, getBytesTransferred() * 100 / total);
+    }
+
+    /**
+     * 已用时间, 结束后为总耗时
+     *
+     * @return 单位毫秒
+     */
+    public long getElapsedMillis() {
+        long end = endTime;
+        return (end == 0 ? System.currentTimeMillis() : end) - startTime;
+    }
+
+    /**
+     * 平均传输速度
+     *
+     * @return 单位字节/秒
+     */
+    public long getThroughput() {
+        long elapsed = getElapsedMillis();
+        return elapsed <= 0 ? 0L : getBytesTransferred() * 1000 / elapsed;
+    }
+
+    /**
+     * 按平均速度估算的剩余时间
+     *
+     * @return 单位毫秒, 总字节数未知或尚无数据时返回-1
+     */
+    public long getRemainingMillis() {
+
+        if (state != State.RUNNING) {
+            return 0L;
+        }
+
+        long throughput = getThroughput();
+        long total = totalBytes;
+        if (total < 0 || throughput <= 0) {
+            return -1L;
+        }
+
+        return Math.max(0L, total - getBytesTransferred()) * 1000 / throughput;
+    }
+
+}
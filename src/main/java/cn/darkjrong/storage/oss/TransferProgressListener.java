@@ -0,0 +1,103 @@
+package cn.darkjrong.storage.oss;
+
+import com.aliyun.oss.event.ProgressEvent;
+import com.aliyun.oss.event.ProgressListener;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 将 SDK 的进度事件累加到传输进度, 每次请求使用一个实例
+ *
+ * 只处理字节数事件, 完成或失败由调用方在校验结束后设置; SDK 重试时会从头重新读取请求内容,
+ * 经 {@link #track(InputStream)} 包装的内容在重置时扣除已累加的字节数, 未包装时累加的字节数不超过内容长度
+ *
+ * @author Rong.Jia
+ * @date 2020/06/28 10:05
+ */
+class TransferProgressListener implements ProgressListener {
+
+    private final TransferProgress progress;
+
+    /**
+     * 内容长度, 未知时为-1
+     */
+    private long contentLength = -1L;
+
+    /**
+     * 本次请求已累加的字节数
+     */
+    private long counted;
+
+    /**
+     * mark 时已累加的字节数
+     */
+    private long markedCount;
+
+    TransferProgressListener(TransferProgress progress) {
+        this.progress = progress;
+    }
+
+    @Override
+    public synchronized void progressChanged(ProgressEvent progressEvent) {
+        switch (progressEvent.getEventType()) {
+            case REQUEST_CONTENT_LENGTH_EVENT:
+            case RESPONSE_CONTENT_LENGTH_EVENT:
+                contentLength = progressEvent.getBytes();
+                progress.setTotalBytes(contentLength);
+                break;
+            case REQUEST_BYTE_TRANSFER_EVENT:
+            case RESPONSE_BYTE_TRANSFER_EVENT:
+                add(progressEvent.getBytes());
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 包装请求内容, 重试时 SDK 重置内容, 同时扣除重置前累加的字节数
+     *
+     * @param content 请求内容, 不支持 mark 时使用缓冲流包装
+     * @return 请求内容
+     */
+    InputStream track(InputStream content) {
+
+        InputStream markable = content.markSupported() ? content : new BufferedInputStream(content);
+        return new FilterInputStream(markable) {
+
+            @Override
+            public synchronized void mark(int readlimit) {
+                super.mark(readlimit);
+                marked();
+            }
+
+            @Override
+            public synchronized void reset() throws IOException {
+                super.reset();
+                rewind();
+            }
+        };
+    }
+
+    private synchronized void add(long bytes) {
+
+        long accepted = contentLength < 0 ? bytes : Math.min(bytes, contentLength - counted);
+        if (accepted > 0) {
+            counted += accepted;
+            progress.add(accepted);
+        }
+    }
+
+    private synchronized void marked() {
+        markedCount = counted;
+    }
+
+    private synchronized void rewind() {
+        progress.add(markedCount - counted);
+        counted = markedCount;
+    }
+
+}
@@ -0,0 +1,95 @@
+package cn.darkjrong.storage.oss;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 传输进度登记表, 按传输ID查询进行中和最近结束的传输
+ *
+ * 结束的传输保留指定时间, 在登记新传输时清理
+ *
+ * @author Rong.Jia
+ * @date 2020/06/28 09:40
+ */
+public class TransferProgressRegistry {
+
+    private final ConcurrentMap<String, TransferProgress> transfers = new ConcurrentHashMap<>();
+
+    /**
+     * 结束的传输保留时间, 单位毫秒
+     */
+    private final long retention;
+
+    /**
+     * 进度日志最小间隔, 单位毫秒, 不大于0时不输出
+     */
+    private final long logInterval;
+
+    /**
+     * 构造传输进度登记表
+     *
+     * @param retention   结束的传输保留时间, 单位毫秒
+     * @param logInterval 进度日志最小间隔, 单位毫秒, 不大于0时不输出
+     */
+    public TransferProgressRegistry(long retention, long logInterval) {
+        this.retention = retention;
+        this.logInterval = logInterval;
+    }
+
+    /**
+     * 登记传输, 传输ID已存在时替换
+     *
+     * @param transferId 传输ID
+     * @param bucketName 存储空间
+     * @param objectName 对象名
+     * @param totalBytes 总字节数, 未知时传-1
+     * @return 传输进度
+     */
+    TransferProgress start(String transferId, String bucketName, String objectName, long totalBytes) {
+
+        purge();
+
+        TransferProgress progress = new TransferProgress(transferId, bucketName, objectName, totalBytes, logInterval);
+        transfers.put(transferId, progress);
+
+        return progress;
+    }
+
+    /**
+     * 查询传输进度
+     *
+     * @param transferId 传输ID
+     * @return 传输进度, 不存在或已清理时返回null
+     */
+    public TransferProgress get(String transferId) {
+        return transfers.get(transferId);
+    }
+
+    /**
+     * 全部进行中和保留期内结束的传输
+     *
+     * @return 传输进度
+     */
+    public Collection<TransferProgress> getAll() {
+        return new ArrayList<>(transfers.values());
+    }
+
+    /**
+     * 移除传输记录
+     *
+     * @param transferId 传输ID
+     */
+    public void remove(String transferId) {
+        transfers.remove(transferId);
+    }
+
+    private void purge() {
+
+        long expired = System.currentTimeMillis() - retention;
+        transfers.values().removeIf(progress -> progress.getState() != TransferProgress.State.RUNNING
+                && progress.getEndTime() < expired);
+    }
+
+}
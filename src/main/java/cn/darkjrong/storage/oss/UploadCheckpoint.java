@@ -0,0 +1,225 @@
+package cn.darkjrong.storage.oss;
+
+import com.aliyun.oss.model.PartETag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * 分片上传断点记录, 保存uploadId, 分片大小以及已完成分片的ETag
+ *
+ * 创建时写入上传信息, 之后每完成一个分片追加一行 "part.分片号=ETag;大小;CRC64;校验值",
+ * 校验值为 "分片号=ETag;大小;CRC64;" 的 CRC32; 每行先写换行符, 中断时写了一半的行不会与之后追加的记录连成一行,
+ * 校验值不符的记录(写了一半或旧格式)在读取时忽略, 该分片重新上传
+ *
+ * @author Rong.Jia
+ * @date 2020/06/09 14:20
+ */
+class UploadCheckpoint {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadCheckpoint.class);
+
+    private static final String UPLOAD_ID = "uploadId";
+    private static final String BUCKET_NAME = "bucketName";
+    private static final String OBJECT_NAME = "objectName";
+    private static final String PART_SIZE = "partSize";
+    private static final String FILE_LENGTH = "fileLength";
+    private static final String LAST_MODIFIED = "lastModified";
+    private static final String PART_PREFIX = "part.";
+    private static final String FIELD_SEPARATOR = ";";
+    private static final String NO_CRC = "-";
+
+    /**
+     * 断点文件, 为空时只在内存中记录
+     */
+    private final File file;
+    private final String uploadId;
+    private final String bucketName;
+    private final String objectName;
+    private final long partSize;
+    private final long fileLength;
+    private final long lastModified;
+    private final Map<Integer, PartETag> partETags = new TreeMap<>();
+
+    UploadCheckpoint(File file, String uploadId, String bucketName, String objectName,
+                     long partSize, long fileLength, long lastModified) {
+        this.file = file;
+        this.uploadId = uploadId;
+        this.bucketName = bucketName;
+        this.objectName = objectName;
+        this.partSize = partSize;
+        this.fileLength = fileLength;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * 读取断点文件
+     *
+     * @param file 断点文件
+     * @return 断点记录, 不存在或损坏时返回null
+     */
+    static UploadCheckpoint load(File file) {
+
+        if (file == null || !file.exists()) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream inputStream = new FileInputStream(file)) {
+            properties.load(inputStream);
+
+            UploadCheckpoint checkpoint = new UploadCheckpoint(file,
+                    properties.getProperty(UPLOAD_ID),
+                    properties.getProperty(BUCKET_NAME),
+                    properties.getProperty(OBJECT_NAME),
+                    Long.parseLong(properties.getProperty(PART_SIZE)),
+                    Long.parseLong(properties.getProperty(FILE_LENGTH)),
+                    Long.parseLong(properties.getProperty(LAST_MODIFIED)));
+
+            for (String name : properties.stringPropertyNames()) {
+                String number = name.substring(Math.min(PART_PREFIX.length(), name.length()));
+                if (name.startsWith(PART_PREFIX) && !number.isEmpty() && number.chars().allMatch(Character::isDigit)) {
+                    int partNumber = Integer.parseInt(number);
+                    PartETag partETag = parsePart(partNumber, properties.getProperty(name));
+                    if (partETag != null) {
+                        checkpoint.partETags.put(partNumber, partETag);
+                    }
+                }
+            }
+
+            return checkpoint;
+        } catch (Exception e) {
+            log.error("load checkpoint {}", e.getMessage());
+        }
+
+        return null;
+    }
+
+    /**
+     * 解析分片记录, 不完整或校验值不符的记录返回null
+     */
+    static PartETag parsePart(int partNumber, String value) {
+
+        int index = value.lastIndexOf(FIELD_SEPARATOR);
+        if (index < 0 || !value.substring(index + 1).equals(checksum(partNumber, value.substring(0, index + 1)))) {
+            return null;
+        }
+
+        String[] fields = value.substring(0, index).split(FIELD_SEPARATOR, -1);
+        if (fields.length != 3) {
+            return null;
+        }
+
+        try {
+            Long crc = NO_CRC.equals(fields[2]) ? null : Long.parseUnsignedLong(fields[2]);
+            return new PartETag(partNumber, fields[0], Long.parseLong(fields[1]), crc);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    static String formatPart(PartETag partETag) {
+        Long crc = partETag.getPartCRC();
+        String record = partETag.getETag() + FIELD_SEPARATOR + partETag.getPartSize() + FIELD_SEPARATOR
+                + (crc == null ? NO_CRC : Long.toUnsignedString(crc)) + FIELD_SEPARATOR;
+        return record + checksum(partETag.getPartNumber(), record);
+    }
+
+    /**
+     * 记录的校验值, 包含分片号, 其他分片的记录不会被误认
+     */
+    private static String checksum(int partNumber, String record) {
+        CRC32 crc32 = new CRC32();
+        crc32.update((partNumber + "=" + record).getBytes(StandardCharsets.ISO_8859_1));
+        return Long.toHexString(crc32.getValue());
+    }
+
+    /**
+     * 断点记录是否与当前上传任务一致
+     */
+    boolean matches(String bucketName, String objectName, long partSize, File source) {
+        return Objects.equals(this.bucketName, bucketName)
+                && Objects.equals(this.objectName, objectName)
+                && this.partSize == partSize
+                && this.fileLength == source.length()
+                && this.lastModified == source.lastModified();
+    }
+
+    String getUploadId() {
+        return uploadId;
+    }
+
+    synchronized boolean isCompleted(int partNumber) {
+        return partETags.containsKey(partNumber);
+    }
+
+    /**
+     * 记录已完成分片, 并追加到断点文件
+     *
+     * @param partETag 分片ETag
+     */
+    synchronized void complete(PartETag partETag) throws IOException {
+        partETags.put(partETag.getPartNumber(), partETag);
+
+        if (file == null) {
+            return;
+        }
+
+        // 先换行, 上一行写了一半时本条记录仍单独成行
+        String line = System.lineSeparator() + PART_PREFIX + partETag.getPartNumber() + "=" + formatPart(partETag);
+        try (OutputStream outputStream = new FileOutputStream(file, true)) {
+            outputStream.write(line.getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    /**
+     * 已完成分片, 按分片号升序排列
+     */
+    synchronized List<PartETag> getPartETags() {
+        return new ArrayList<>(partETags.values());
+    }
+
+    /**
+     * 写入完整的断点文件, 先写临时文件再替换, 避免中断时损坏
+     */
+    synchronized void save() throws IOException {
+
+        if (file == null) {
+            return;
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty(UPLOAD_ID, uploadId);
+        properties.setProperty(BUCKET_NAME, bucketName);
+        properties.setProperty(OBJECT_NAME, objectName);
+        properties.setProperty(PART_SIZE, String.valueOf(partSize));
+        properties.setProperty(FILE_LENGTH, String.valueOf(fileLength));
+        properties.setProperty(LAST_MODIFIED, String.valueOf(lastModified));
+        for (PartETag partETag : partETags.values()) {
+            properties.setProperty(PART_PREFIX + partETag.getPartNumber(), formatPart(partETag));
+        }
+
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (OutputStream outputStream = new FileOutputStream(tmpFile)) {
+            properties.store(outputStream, null);
+        }
+
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 删除断点文件
+     */
+    void delete() {
+        if (file != null && file.exists() && !file.delete()) {
+            log.warn("delete checkpoint {} failed", file.getPath());
+        }
+    }
+
+}
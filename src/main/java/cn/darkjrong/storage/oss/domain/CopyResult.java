@@ -0,0 +1,81 @@
+package cn.darkjrong.storage.oss.domain;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 批量拷贝结果
+ * @author Rong.Jia
+ * @date 2020/06/19 14:12
+ */
+public class CopyResult implements Serializable {
+
+    private static final long serialVersionUID = 4417021934528263801L;
+
+    /**
+     *  拷贝成功数
+     */
+    private long copiedCount;
+
+    /**
+     *  拷贝失败的源文件及失败原因
+     */
+    private Map<String, String> failedKeys = new LinkedHashMap<>();
+
+    public CopyResult() {
+    }
+
+    public CopyResult(long copiedCount, Map<String, String> failedKeys) {
+        this.copiedCount = copiedCount;
+        this.failedKeys = failedKeys;
+    }
+
+    /**
+     * 是否全部拷贝成功
+     *
+     * @return true/false
+     */
+    public boolean isSucceed() {
+        return failedKeys.isEmpty();
+    }
+
+    public long getCopiedCount() {
+        return copiedCount;
+    }
+
+    public void setCopiedCount(long copiedCount) {
+        this.copiedCount = copiedCount;
+    }
+
+    public Map<String, String> getFailedKeys() {
+        return failedKeys;
+    }
+
+    public void setFailedKeys(Map<String, String> failedKeys) {
+        this.failedKeys = failedKeys;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CopyResult that = (CopyResult) o;
+        return copiedCount == that.copiedCount &&
+                Objects.equals(failedKeys, that.failedKeys);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(copiedCount, failedKeys);
+    }
+
+    @Override
+    public String toString() {
+        return "CopyResult{" +
+                "copiedCount=" + copiedCount +
+                ", failedKeys=" + failedKeys +
+                '}';
+    }
+}
@@ -0,0 +1,81 @@
+package cn.darkjrong.storage.oss.domain;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 批量删除结果
+ * @author Rong.Jia
+ * @date 2020/06/16 09:31
+ */
+public class DeleteResult implements Serializable {
+
+    private static final long serialVersionUID = -2710469361402257093L;
+
+    /**
+     *  删除成功数
+     */
+    private long deletedCount;
+
+    /**
+     *  删除失败的文件及失败原因
+     */
+    private Map<String, String> failedKeys = new LinkedHashMap<>();
+
+    public DeleteResult() {
+    }
+
+    public DeleteResult(long deletedCount, Map<String, String> failedKeys) {
+        this.deletedCount = deletedCount;
+        this.failedKeys = failedKeys;
+    }
+
+    /**
+     * 是否全部删除成功
+     *
+     * @return true/false
+     */
+    public boolean isSucceed() {
+        return failedKeys.isEmpty();
+    }
+
+    public long getDeletedCount() {
+        return deletedCount;
+    }
+
+    public void setDeletedCount(long deletedCount) {
+        this.deletedCount = deletedCount;
+    }
+
+    public Map<String, String> getFailedKeys() {
+        return failedKeys;
+    }
+
+    public void setFailedKeys(Map<String, String> failedKeys) {
+        this.failedKeys = failedKeys;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        DeleteResult that = (DeleteResult) o;
+        return deletedCount == that.deletedCount &&
+                Objects.equals(failedKeys, that.failedKeys);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(deletedCount, failedKeys);
+    }
+
+    @Override
+    public String toString() {
+        return "DeleteResult{" +
+                "deletedCount=" + deletedCount +
+                ", failedKeys=" + failedKeys +
+                '}';
+    }
+}
@@ -0,0 +1,83 @@
+package cn.darkjrong.storage.oss.domain;
+
+import java.io.InputStream;
+
+/**
+ * 合并文件的数据来源, OSS中已有的文件或本地输入流
+ * @author Rong.Jia
+ * @date 2020/06/19 09:26
+ */
+public class MergeSource {
+
+    /**
+     *  源文件存储空间
+     */
+    private final String bucketName;
+
+    /**
+     *  源文件对象名
+     */
+    private final String objectName;
+
+    /**
+     *  本地输入流
+     */
+    private final InputStream inputStream;
+
+    private MergeSource(String bucketName, String objectName, InputStream inputStream) {
+        this.bucketName = bucketName;
+        this.objectName = objectName;
+        this.inputStream = inputStream;
+    }
+
+    /**
+     * OSS中已有的文件, 在服务端拷贝
+     *
+     * @param bucketName 存储空间
+     * @param objectName 对象名
+     * @return 数据来源
+     */
+    public static MergeSource object(String bucketName, String objectName) {
+        return new MergeSource(bucketName, objectName, null);
+    }
+
+    /**
+     * 本地输入流, 作为普通分片上传, 不关闭输入流
+     *
+     * @param inputStream 输入流
+     * @return 数据来源
+     */
+    public static MergeSource stream(InputStream inputStream) {
+        return new MergeSource(null, null, inputStream);
+    }
+
+    /**
+     * 是否OSS中已有的文件
+     *
+     * @return true/false
+     */
+    public boolean isObject() {
+        return inputStream == null;
+    }
+
+    public String getBucketName() {
+        return bucketName;
+    }
+
+    public String getObjectName() {
+        return objectName;
+    }
+
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    @Override
+    public String toString() {
+        return "MergeSource{" +
+                "bucketName='" + bucketName + '\'' +
+                ", objectName='" + objectName + '\'' +
+                ", inputStream=" + inputStream +
+                '}';
+    }
+}
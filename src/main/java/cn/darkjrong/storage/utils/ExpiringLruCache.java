@@ -0,0 +1,152 @@
+package cn.darkjrong.storage.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * 带过期时间的LRU缓存, 超过容量时淘汰最久未访问的条目
+ *
+ * @author Rong.Jia
+ * @date 2020/06/11 15:03
+ */
+public class ExpiringLruCache<K, V> {
+
+    private final long defaultTtl;
+    private final LinkedHashMap<K, CacheEntry<V>> entries;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * 构造缓存
+     *
+     * @param maxSize    最大条目数
+     * @param defaultTtl 默认过期时间, 单位毫秒
+     */
+    public ExpiringLruCache(int maxSize, long defaultTtl) {
+        this.defaultTtl = defaultTtl;
+        this.entries = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * 获取缓存值
+     *
+     * @param key 键
+     * @return 值, 不存在或已过期返回null
+     */
+    public synchronized V get(K key) {
+
+        CacheEntry<V> entry = entries.get(key);
+        if (entry == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+
+        if (entry.isExpired(System.currentTimeMillis())) {
+            entries.remove(key);
+            missCount.incrementAndGet();
+            return null;
+        }
+
+        hitCount.incrementAndGet();
+        return entry.value;
+    }
+
+    /**
+     * 放入缓存, 使用默认过期时间
+     *
+     * @param key   键
+     * @param value 值
+     */
+    public void put(K key, V value) {
+        put(key, value, defaultTtl);
+    }
+
+    /**
+     * 放入缓存
+     *
+     * @param key   键
+     * @param value 值
+     * @param ttl   过期时间, 单位毫秒
+     */
+    public synchronized void put(K key, V value, long ttl) {
+        entries.put(key, new CacheEntry<>(value, System.currentTimeMillis() + ttl));
+    }
+
+    /**
+     * 移除缓存
+     *
+     * @param key 键
+     */
+    public synchronized void remove(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * 移除满足条件的缓存
+     *
+     * @param predicate 条件
+     */
+    public synchronized void removeIf(Predicate<K> predicate) {
+        entries.keySet().removeIf(predicate);
+    }
+
+    /**
+     * 清理已过期的条目
+     */
+    public synchronized void cleanUp() {
+
+        long now = System.currentTimeMillis();
+        Iterator<CacheEntry<V>> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isExpired(now)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    private static class CacheEntry<V> {
+
+        private final V value;
+        private final long expireAt;
+
+        CacheEntry(V value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expireAt;
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+package cn.darkjrong.storage.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 文件区间输入流, 基于 FileChannel 按位置读取文件的指定区间, 支持 mark/reset
+ *
+ * @author Rong.Jia
+ * @date 2020/06/08 10:12
+ */
+public class FileRangeInputStream extends InputStream {
+
+    private final FileChannel channel;
+    private final long end;
+    private long position;
+    private long mark;
+
+    /**
+     * 构造区间输入流
+     *
+     * @param file   文件
+     * @param start  起始位置
+     * @param length 区间长度
+     * @throws IOException 文件打开异常
+     */
+    public FileRangeInputStream(File file, long start, long length) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.end = start + length;
+        this.position = start;
+        this.mark = start;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n = read(b, 0, 1);
+        return n == -1 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+
+        if (len == 0) {
+            return 0;
+        }
+
+        long remaining = end - position;
+        if (remaining <= 0) {
+            return -1;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(b, off, (int) Math.min(len, remaining));
+        int n = channel.read(buffer, position);
+        if (n > 0) {
+            position += n;
+        }
+
+        return n;
+    }
+
+    @Override
+    public long skip(long n) {
+
+        long skipped = Math.max(0, Math.min(n, end - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, end - position);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        this.mark = position;
+    }
+
+    @Override
+    public synchronized void reset() {
+        this.position = mark;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
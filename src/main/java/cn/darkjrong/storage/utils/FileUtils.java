@@ -12,6 +12,7 @@ import java.net.URLConnection;
 import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousFileChannel;
 import java.nio.channels.CompletionHandler;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributeView;
@@ -46,6 +47,12 @@ public class FileUtils {
     public static final String TMP_DIR = System.getProperty("user.dir") + "/data/tmp";
     public static final String HTTP_PREFIX = "http://";
     public static final String HTTPS_PREFIX = "https://";
+    public static final int BUFFER_SIZE = 8192;
+
+    /**
+     * 流拷贝缓冲区, 每个线程复用; 使用期间置空, 嵌套拷贝时另行分配, 避免覆盖外层拷贝的数据
+     */
+    private static final ThreadLocal<byte[]> COPY_BUFFER = new ThreadLocal<>();
 
     /**
      * 获取标准的绝对路径
@@ -1027,6 +1034,66 @@ public class FileUtils {
         return data;
     }
 
+    /**
+     * 流拷贝, 使用固定大小的复用缓冲区, 不关闭流
+     *
+     * @param in  输入流
+     * @param out 输出流
+     * @return 拷贝的字节数
+     * @throws IOException io异常
+     */
+    public static long copy(InputStream in, OutputStream out) throws IOException {
+
+        byte[] buffer = borrowBuffer();
+        try {
+            return IOUtils.copyLarge(in, out, buffer);
+        } finally {
+            COPY_BUFFER.set(buffer);
+        }
+    }
+
+    /**
+     * 流拷贝到通道, 使用固定大小的复用缓冲区, 不关闭流和通道
+     *
+     * @param in      输入流
+     * @param channel 输出通道
+     * @return 拷贝的字节数
+     * @throws IOException io异常
+     */
+    public static long copy(InputStream in, WritableByteChannel channel) throws IOException {
+
+        byte[] buffer = borrowBuffer();
+        try {
+            long count = 0;
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, n);
+                while (byteBuffer.hasRemaining()) {
+                    channel.write(byteBuffer);
+                }
+                count += n;
+            }
+
+            return count;
+        } finally {
+            COPY_BUFFER.set(buffer);
+        }
+    }
+
+    /**
+     * 取出当前线程的拷贝缓冲区, 用完后放回
+     */
+    private static byte[] borrowBuffer() {
+
+        byte[] buffer = COPY_BUFFER.get();
+        if (buffer == null) {
+            return new byte[BUFFER_SIZE];
+        }
+
+        COPY_BUFFER.set(null);
+        return buffer;
+    }
+
     /**
      * url 转File
      *
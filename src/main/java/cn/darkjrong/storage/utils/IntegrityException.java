@@ -0,0 +1,46 @@
+package cn.darkjrong.storage.utils;
+
+/**
+ * 数据校验失败, 本地计算的校验值与服务端不一致
+ *
+ * 与 SDK 的 InconsistentException 一样为运行时异常, 不改变已有方法的签名
+ *
+ * @author Rong.Jia
+ * @date 2020/06/29 09:10
+ */
+public class IntegrityException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String target;
+    private final String clientChecksum;
+    private final String serverChecksum;
+
+    /**
+     * 构造校验异常
+     *
+     * @param algorithm      校验算法
+     * @param target         校验的文件
+     * @param clientChecksum 本地计算的校验值
+     * @param serverChecksum 服务端返回的校验值
+     */
+    public IntegrityException(String algorithm, String target, String clientChecksum, String serverChecksum) {
+        super(algorithm + " mismatch for " + target + ", client: " + clientChecksum + ", server: " + serverChecksum);
+        this.target = target;
+        this.clientChecksum = clientChecksum;
+        this.serverChecksum = serverChecksum;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public String getClientChecksum() {
+        return clientChecksum;
+    }
+
+    public String getServerChecksum() {
+        return serverChecksum;
+    }
+
+}
@@ -0,0 +1,19 @@
+package cn.darkjrong.storage.utils;
+
+/**
+ * 上传文件名生成器, 注册为 Bean 时替换默认实现
+ *
+ * @author Rong.Jia
+ * @date 2020/06/26 09:10
+ */
+@FunctionalInterface
+public interface KeyGenerator {
+
+    /**
+     * 生成唯一文件名, 只包含字母和数字
+     *
+     * @return 文件名
+     */
+    String generate();
+
+}
@@ -0,0 +1,49 @@
+package cn.darkjrong.storage.utils;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 按时间排序的文件名生成器, 32位小写十六进制: 12位毫秒时间戳 + 20位随机数
+ *
+ * 使用 ThreadLocalRandom, 无锁竞争; 直接写入字符数组, 每次只分配一个 char[] 和 String
+ *
+ * @author Rong.Jia
+ * @date 2020/06/26 09:20
+ */
+public class TimeOrderedKeyGenerator implements KeyGenerator {
+
+    public static final TimeOrderedKeyGenerator INSTANCE = new TimeOrderedKeyGenerator();
+
+    /**
+     * 文件名长度
+     */
+    public static final int KEY_LENGTH = 32;
+
+    private static final int TIME_LENGTH = 12;
+    private static final int LONG_HEX_LENGTH = 16;
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    @Override
+    public String generate() {
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        char[] chars = new char[KEY_LENGTH];
+        encode(chars, 0, System.currentTimeMillis(), TIME_LENGTH);
+        encode(chars, TIME_LENGTH, random.nextLong(), LONG_HEX_LENGTH);
+        encode(chars, TIME_LENGTH + LONG_HEX_LENGTH, random.nextInt(), KEY_LENGTH - TIME_LENGTH - LONG_HEX_LENGTH);
+
+        return new String(chars);
+    }
+
+    /**
+     * 将数值的低 length 个十六进制位写入字符数组
+     */
+    private static void encode(char[] chars, int offset, long value, int length) {
+        for (int i = offset + length - 1; i >= offset; i--) {
+            chars[i] = DIGITS[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+}
@@ -0,0 +1,29 @@
+package cn.darkjrong.spring.boot.autoconfigure.oss;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 阿里云oss 配置校验测试
+ *
+ * @author Rong.Jia
+ * @date 2020/07/08 17:10
+ */
+class OssPropertiesTest {
+
+    @Test
+    void urlCacheRefreshRatioOutsideZeroAndOneIsRejected() {
+
+        OssProperties.UrlCache urlCache = new OssProperties().getUrlCache();
+
+        assertThrows(IllegalArgumentException.class, () -> urlCache.setRefreshRatio(null));
+        assertThrows(IllegalArgumentException.class, () -> urlCache.setRefreshRatio(0D));
+        assertThrows(IllegalArgumentException.class, () -> urlCache.setRefreshRatio(1.5D));
+        assertEquals(0.5D, urlCache.getRefreshRatio());
+
+        urlCache.setRefreshRatio(0.9D);
+        assertEquals(0.9D, urlCache.getRefreshRatio());
+    }
+
+}
@@ -0,0 +1,217 @@
+package cn.darkjrong.storage.cache;
+
+import cn.darkjrong.storage.dedup.ContentDigest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 本地文件缓存测试, 按字节数淘汰最久未使用的文件, 重启后从缓存目录恢复索引和淘汰顺序
+ *
+ * @author Rong.Jia
+ * @date 2020/07/06 14:10
+ */
+class LocalFileCacheTest {
+
+    private static final int ENTRY_SIZE = 100;
+    private static final long MAX_BYTES = 4L * ENTRY_SIZE;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void evictLeastRecentlyUsedOverByteBudget() throws IOException {
+
+        LocalFileCache cache = new LocalFileCache(dir.toFile(), MAX_BYTES, 0L);
+        for (String key : new String[]{"a", "b", "c", "d"}) {
+            put(cache, key, "v1");
+        }
+        assertEquals(MAX_BYTES, cache.getTotalBytes());
+
+        // 访问 a 后 b 成为最久未使用
+        read(cache, "a", "v1");
+        put(cache, "e", "v1");
+
+        assertNull(cache.getVersion("b"));
+        assertEquals("v1", cache.getVersion("a"));
+        assertEquals(4, cache.size());
+        assertEquals(MAX_BYTES, cache.getTotalBytes());
+        assertEquals(4, dataFiles());
+    }
+
+    @Test
+    void replaceVersionKeepsOneEntry() throws IOException {
+
+        LocalFileCache cache = new LocalFileCache(dir.toFile(), MAX_BYTES, 0L);
+        put(cache, "a", "v1");
+        put(cache, "a", "v2");
+
+        assertEquals(1, cache.size());
+        assertEquals(ENTRY_SIZE, cache.getTotalBytes());
+        assertNull(cache.open("a", "v1"));
+        assertArrayEquals(content("a", "v2"), read(cache, "a", "v2"));
+        assertEquals(1, dataFiles());
+    }
+
+    @Test
+    void entriesLargerThanQuarterOfBudgetDoNotFit() throws IOException {
+        LocalFileCache cache = new LocalFileCache(dir.toFile(), MAX_BYTES, 0L);
+        assertTrue(cache.fits(MAX_BYTES / 4));
+        assertFalse(cache.fits(MAX_BYTES / 4 + 1));
+        assertFalse(cache.fits(-1));
+    }
+
+    @Test
+    void rebuildRestoresEntriesAndAccessOrder() throws IOException {
+
+        LocalFileCache cache = new LocalFileCache(dir.toFile(), MAX_BYTES, 0L);
+        for (String key : new String[]{"a", "b", "c", "d"}) {
+            put(cache, key, "v1");
+        }
+
+        // 修改时间即上次访问时间, a 最近访问, b 最久未访问
+        long now = System.currentTimeMillis();
+        touch("b", now - 40_000);
+        touch("c", now - 30_000);
+        touch("d", now - 20_000);
+        touch("a", now - 10_000);
+
+        LocalFileCache rebuilt = new LocalFileCache(dir.toFile(), MAX_BYTES, 0L);
+        assertEquals(4, rebuilt.size());
+        assertEquals(MAX_BYTES, rebuilt.getTotalBytes());
+        assertArrayEquals(content("c", "v1"), read(rebuilt, "c", "v1"));
+
+        // c 刚被访问, 依次淘汰 b, d
+        put(rebuilt, "e", "v1");
+        put(rebuilt, "f", "v1");
+        assertNull(rebuilt.getVersion("b"));
+        assertNull(rebuilt.getVersion("d"));
+        assertEquals("v1", rebuilt.getVersion("a"));
+        assertEquals("v1", rebuilt.getVersion("c"));
+    }
+
+    @Test
+    void rebuildEvictsDownToSmallerBudget() throws IOException {
+
+        LocalFileCache cache = new LocalFileCache(dir.toFile(), MAX_BYTES, 0L);
+        for (String key : new String[]{"a", "b", "c", "d"}) {
+            put(cache, key, "v1");
+        }
+        long now = System.currentTimeMillis();
+        touch("a", now - 40_000);
+        touch("b", now - 30_000);
+        touch("c", now - 20_000);
+        touch("d", now - 10_000);
+
+        LocalFileCache rebuilt = new LocalFileCache(dir.toFile(), 2L * ENTRY_SIZE, 0L);
+
+        assertEquals(2, rebuilt.size());
+        assertEquals(2L * ENTRY_SIZE, rebuilt.getTotalBytes());
+        assertNull(rebuilt.getVersion("a"));
+        assertNull(rebuilt.getVersion("b"));
+        assertEquals(2, dataFiles());
+    }
+
+    @Test
+    void rebuildDiscardsUnfinishedWrites() throws IOException {
+
+        LocalFileCache cache = new LocalFileCache(dir.toFile(), MAX_BYTES, 0L);
+        put(cache, "a", "v1");
+        put(cache, "b", "v1");
+
+        // 写入中途退出: 残留临时文件, 只有数据文件, 数据文件被截断
+        Path data = dataPath("a");
+        Files.write(data.resolveSibling("orphan.data.tmp"), new byte[ENTRY_SIZE]);
+        Files.write(data.resolveSibling("0000.data"), new byte[ENTRY_SIZE]);
+        Files.write(dataPath("b"), new byte[ENTRY_SIZE / 2]);
+
+        LocalFileCache rebuilt = new LocalFileCache(dir.toFile(), MAX_BYTES, 0L);
+
+        assertEquals(1, rebuilt.size());
+        assertEquals(ENTRY_SIZE, rebuilt.getTotalBytes());
+        assertNull(rebuilt.getVersion("b"));
+        assertArrayEquals(content("a", "v1"), read(rebuilt, "a", "v1"));
+        try (Stream<Path> paths = Files.walk(dir)) {
+            assertEquals(2, paths.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    void teeWritesTargetAndCommitsOnlyAfterValidation() throws IOException {
+
+        LocalFileCache cache = new LocalFileCache(dir.toFile(), MAX_BYTES, 0L);
+        byte[] content = content("a", "v1");
+
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        assertThrows(IllegalStateException.class, () -> cache.put("a", "v1", new ByteArrayInputStream(content),
+                Channels.newChannel(target), () -> {
+                    throw new IllegalStateException("digest mismatch");
+                }));
+        assertArrayEquals(content, target.toByteArray());
+        assertNull(cache.getVersion("a"));
+        assertEquals(0, dataFiles());
+
+        target.reset();
+        assertEquals(ENTRY_SIZE, cache.put("a", "v1", new ByteArrayInputStream(content), Channels.newChannel(target), null));
+        assertArrayEquals(content, target.toByteArray());
+        assertArrayEquals(content, read(cache, "a", "v1"));
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    private static void put(LocalFileCache cache, String key, String version) throws IOException {
+        try (FileChannel channel = cache.put(key, version, new ByteArrayInputStream(content(key, version)))) {
+            assertEquals(ENTRY_SIZE, channel.size());
+        }
+    }
+
+    private static byte[] read(LocalFileCache cache, String key, String version) throws IOException {
+        try (FileChannel channel = cache.open(key, version)) {
+            assertNotNull(channel);
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // 读满为止
+            }
+            return buffer.array();
+        }
+    }
+
+    /**
+     * 固定长度的内容, 以键和版本开头
+     */
+    private static byte[] content(String key, String version) {
+        byte[] content = new byte[ENTRY_SIZE];
+        byte[] prefix = (key + ":" + version).getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(prefix, 0, content, 0, prefix.length);
+        return content;
+    }
+
+    private Path dataPath(String key) {
+        String name = ContentDigest.sha256Hex(key.getBytes(StandardCharsets.UTF_8));
+        return dir.resolve(name.substring(0, 2)).resolve(name + ".data");
+    }
+
+    private void touch(String key, long millis) throws IOException {
+        Files.setLastModifiedTime(dataPath(key), FileTime.fromMillis(millis));
+    }
+
+    private long dataFiles() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            return paths.filter(path -> path.getFileName().toString().endsWith(".data")).count();
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+package cn.darkjrong.storage.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 存储操作指标测试, 异步和流式操作在完成时记录, 线程池中捕获的异常计入发起的操作
+ *
+ * @author Rong.Jia
+ * @date 2020/07/09 10:00
+ */
+class StorageMetricsInterceptorTest {
+
+    private static final String BUCKET_NAME = "test";
+
+    private SimpleMeterRegistry registry;
+    private ExecutorService executor;
+    private Operations operations;
+
+    @BeforeEach
+    void setUp() {
+
+        registry = new SimpleMeterRegistry();
+        executor = Executors.newSingleThreadExecutor();
+
+        StorageMetricsInterceptor interceptor = new StorageMetricsInterceptor(registry, "test", "bucket",
+                Collections.singletonList("bucketName"), Function.identity());
+
+        Operations target = new Operations(executor, interceptor);
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(interceptor);
+        operations = (Operations) proxyFactory.getProxy();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void futureIsRecordedOnCompletion() {
+
+        CompletableFuture<String> gate = new CompletableFuture<>();
+        CompletableFuture<String> future = operations.fetchAsync(BUCKET_NAME, gate);
+        assertNull(timer("fetchAsync", "success"));
+
+        gate.completeExceptionally(new IllegalStateException("failed"));
+        assertThrows(Exception.class, future::join);
+
+        assertNull(timer("fetchAsync", "success"));
+        assertEquals(1L, timer("fetchAsync", "error").count());
+        assertEquals(1.0, errors("fetchAsync", "IllegalStateException").count());
+    }
+
+    @Test
+    void streamIsRecordedOnClose() {
+
+        try (Stream<String> stream = operations.listStream(BUCKET_NAME, false)) {
+            assertEquals(3L, stream.count());
+            assertNull(timer("listStream", "success"));
+        }
+
+        assertEquals(1L, timer("listStream", "success").count());
+    }
+
+    @Test
+    void streamReadFailureIsRecordedAsError() {
+
+        try (Stream<String> stream = operations.listStream(BUCKET_NAME, true)) {
+            assertThrows(IllegalStateException.class, () -> stream.forEach(value -> {}));
+        }
+
+        assertNull(timer("listStream", "success"));
+        assertEquals(1L, timer("listStream", "error").count());
+    }
+
+    @Test
+    void errorCaughtOnExecutorThreadIsRecorded() {
+
+        assertFalse(operations.deleteAll(BUCKET_NAME));
+
+        assertEquals(1L, timer("deleteAll", "error").count());
+        assertEquals(1.0, errors("deleteAll", "IllegalStateException").count());
+    }
+
+    private Timer timer(String operation, String outcome) {
+        return registry.find("storage.operation").tags("operation", operation, "bucket", BUCKET_NAME, "outcome", outcome).timer();
+    }
+
+    private Counter errors(String operation, String exception) {
+        return registry.find("storage.operation.errors").tags("operation", operation, "bucket", BUCKET_NAME, "exception", exception).counter();
+    }
+
+    /**
+     * 被拦截的存储操作
+     */
+    public static class Operations {
+
+        private final ExecutorService executor;
+        private final StorageErrorRecorder errorRecorder;
+
+        public Operations() {
+            this(null, StorageErrorRecorder.NONE);
+        }
+
+        Operations(ExecutorService executor, StorageErrorRecorder errorRecorder) {
+            this.executor = executor;
+            this.errorRecorder = errorRecorder;
+        }
+
+        public CompletableFuture<String> fetchAsync(String bucketName, CompletableFuture<String> gate) {
+            return gate.thenApplyAsync(value -> value, executor);
+        }
+
+        public Stream<String> listStream(String bucketName, boolean fail) {
+            return Stream.of("a", "b", "c").peek(value -> {
+                if (fail) {
+                    throw new IllegalStateException("failed");
+                }
+            });
+        }
+
+        public boolean deleteAll(String bucketName) {
+            StorageErrorRecorder recorder = errorRecorder.bind();
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    throw new IllegalStateException("failed");
+                } catch (IllegalStateException e) {
+                    recorder.record(e);
+                    return Boolean.FALSE;
+                }
+            }, executor).join();
+        }
+    }
+
+}
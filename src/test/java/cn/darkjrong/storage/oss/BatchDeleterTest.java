@@ -0,0 +1,124 @@
+package cn.darkjrong.storage.oss;
+
+import cn.darkjrong.storage.metrics.StorageErrorRecorder;
+import cn.darkjrong.storage.oss.domain.DeleteResult;
+import com.aliyun.oss.ClientBuilderConfiguration;
+import com.aliyun.oss.OSS;
+import com.aliyun.oss.OSSClientBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 批量删除测试, 部分文件或整个请求删除失败时逐个报告失败的文件
+ *
+ * @author Rong.Jia
+ * @date 2020/07/06 11:00
+ */
+class BatchDeleterTest {
+
+    private static final String BUCKET_NAME = "test";
+    private static final int OBJECT_COUNT = 3 * BatchDeleter.MAX_KEYS_PER_REQUEST;
+
+    private OssStandInServer server;
+    private OSS oss;
+    private ExecutorService executor;
+    private BatchDeleter deleter;
+    private List<String> objectNames;
+    private final Set<String> deleted = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void setUp() throws IOException {
+
+        server = new OssStandInServer(0);
+        server.start();
+
+        ClientBuilderConfiguration configuration = new ClientBuilderConfiguration();
+        configuration.setSLDEnabled(Boolean.TRUE);
+        oss = new OSSClientBuilder().build(server.getEndpoint(), "accessKeyId", "accessKeySecret", configuration);
+
+        executor = Executors.newFixedThreadPool(2);
+        deleter = new BatchDeleter(oss, executor, 2, (bucketName, objectName) -> deleted.add(objectName), StorageErrorRecorder.NONE);
+
+        objectNames = IntStream.range(0, OBJECT_COUNT)
+                .mapToObj(i -> String.format("delete/%05d", i))
+                .collect(Collectors.toList());
+        objectNames.forEach(objectName -> server.putObject(BUCKET_NAME, objectName, new byte[1]));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        oss.shutdown();
+        server.close();
+    }
+
+    @Test
+    void deleteAllInChunks() {
+
+        DeleteResult result = deleter.delete(BUCKET_NAME, objectNames.iterator());
+
+        assertTrue(result.isSucceed());
+        assertEquals(OBJECT_COUNT, result.getDeletedCount());
+        assertEquals(3, server.getRequests().stream().filter(BatchDeleterTest::isDeleteObjects).count());
+        assertTrue(server.getObjectNames(BUCKET_NAME).isEmpty());
+        assertEquals(OBJECT_COUNT, deleted.size());
+    }
+
+    @Test
+    void keysNotDeletedAreReported() {
+
+        server.setUndeletable(objectName -> objectName.endsWith("7"));
+
+        DeleteResult result = deleter.delete(BUCKET_NAME, objectNames.iterator());
+
+        Set<String> undeleted = objectNames.stream().filter(objectName -> objectName.endsWith("7")).collect(Collectors.toSet());
+        assertFalse(result.isSucceed());
+        assertEquals(undeleted, result.getFailedKeys().keySet());
+        assertEquals(OBJECT_COUNT - undeleted.size(), result.getDeletedCount());
+        assertEquals(undeleted, server.getObjectNames(BUCKET_NAME).stream().collect(Collectors.toSet()));
+        assertTrue(deleted.stream().noneMatch(undeleted::contains));
+    }
+
+    @Test
+    void failedRequestReportsEveryKeyOfItsChunk() {
+
+        server.fail(BatchDeleterTest::isDeleteObjects, 1, 403, "AccessDenied");
+
+        DeleteResult result = deleter.delete(BUCKET_NAME, objectNames.iterator());
+
+        assertEquals(BatchDeleter.MAX_KEYS_PER_REQUEST, result.getFailedKeys().size());
+        assertEquals(OBJECT_COUNT - BatchDeleter.MAX_KEYS_PER_REQUEST, result.getDeletedCount());
+        assertEquals(result.getFailedKeys().keySet(), server.getObjectNames(BUCKET_NAME).stream().collect(Collectors.toSet()));
+        assertTrue(result.getFailedKeys().values().stream().allMatch(reason -> reason.contains("Injected fault")));
+    }
+
+    @Test
+    void batchCollectsKeysFromSeveralThreads() {
+
+        BatchDeleter.Batch batch = deleter.batch(BUCKET_NAME);
+        objectNames.parallelStream().forEach(batch::add);
+
+        DeleteResult result = batch.finish();
+
+        assertTrue(result.isSucceed());
+        assertEquals(OBJECT_COUNT, result.getDeletedCount());
+        assertTrue(server.getObjectNames(BUCKET_NAME).isEmpty());
+    }
+
+    private static boolean isDeleteObjects(OssStandInServer.Request request) {
+        return "POST".equals(request.getMethod()) && request.getQuery("delete") != null;
+    }
+
+}
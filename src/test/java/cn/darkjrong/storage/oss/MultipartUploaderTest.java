@@ -0,0 +1,228 @@
+package cn.darkjrong.storage.oss;
+
+import com.aliyun.oss.ClientBuilderConfiguration;
+import com.aliyun.oss.OSS;
+import com.aliyun.oss.OSSClientBuilder;
+import com.aliyun.oss.OSSException;
+import com.aliyun.oss.model.AbortMultipartUploadRequest;
+import com.aliyun.oss.model.PartETag;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分片上传断点续传测试, 在第3个分片注入错误模拟上传中断
+ *
+ * @author Rong.Jia
+ * @date 2020/07/06 09:30
+ */
+class MultipartUploaderTest {
+
+    private static final String BUCKET_NAME = "test";
+    private static final String OBJECT_NAME = "resume/object";
+    private static final long PART_SIZE = MultipartUploader.MIN_PART_SIZE;
+    private static final int PART_COUNT = 5;
+
+    @TempDir
+    Path dir;
+
+    private OssStandInServer server;
+    private OSS oss;
+    private ExecutorService executor;
+    private MultipartUploader uploader;
+    private byte[] content;
+    private File file;
+    private File checkpointFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+
+        server = new OssStandInServer(0);
+        server.createBucket(BUCKET_NAME);
+        server.start();
+
+        ClientBuilderConfiguration configuration = new ClientBuilderConfiguration();
+        configuration.setSLDEnabled(Boolean.TRUE);
+        oss = new OSSClientBuilder().build(server.getEndpoint(), "accessKeyId", "accessKeySecret", configuration);
+
+        executor = Executors.newSingleThreadExecutor();
+        uploader = new MultipartUploader(oss, executor, PART_SIZE, IntegrityMode.CRC64);
+
+        content = new byte[(int) (PART_SIZE * PART_COUNT)];
+        ThreadLocalRandom.current().nextBytes(content);
+        file = Files.write(dir.resolve("upload"), content).toFile();
+        checkpointFile = dir.resolve("upload.checkpoint").toFile();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        oss.shutdown();
+        server.close();
+    }
+
+    @Test
+    void resumeUploadsOnlyMissingParts() throws IOException {
+
+        server.fail(request -> request.isUploadPart() && "3".equals(request.getQuery("partNumber")), 1, 403, "AccessDenied");
+        assertThrows(OSSException.class, () -> uploader.upload(BUCKET_NAME, OBJECT_NAME, file, checkpointFile));
+
+        UploadCheckpoint checkpoint = UploadCheckpoint.load(checkpointFile);
+        assertNotNull(checkpoint);
+        assertFalse(checkpoint.isCompleted(3));
+        Set<Integer> missing = IntStream.rangeClosed(1, PART_COUNT)
+                .filter(partNumber -> !checkpoint.isCompleted(partNumber))
+                .boxed()
+                .collect(Collectors.toCollection(TreeSet::new));
+
+        int requestCount = server.getRequests().size();
+        uploader.upload(BUCKET_NAME, OBJECT_NAME, file, checkpointFile);
+
+        assertEquals(missing, uploadedParts(requestCount));
+        assertFalse(server.getRequests().stream().skip(requestCount).anyMatch(request -> request.getQuery("uploads") != null));
+        assertArrayEquals(content, server.getObject(BUCKET_NAME, OBJECT_NAME));
+        assertFalse(checkpointFile.exists());
+    }
+
+    @Test
+    void resumeReuploadsPartWrittenHalfway() throws IOException {
+
+        server.fail(request -> request.isUploadPart() && "3".equals(request.getQuery("partNumber")), 1, 403, "AccessDenied");
+        assertThrows(OSSException.class, () -> uploader.upload(BUCKET_NAME, OBJECT_NAME, file, checkpointFile));
+
+        // 进程在追加分片记录时退出, 最后一行只写了一半
+        String record = System.lineSeparator() + "part.5=" + UploadCheckpoint.formatPart(new PartETag(5, "\"0123456789ABCDEF\"", PART_SIZE, 42L));
+        String torn = record.substring(0, record.length() - 2);
+        Files.write(checkpointFile.toPath(), torn.getBytes(StandardCharsets.ISO_8859_1), StandardOpenOption.APPEND);
+        UploadCheckpoint checkpoint = UploadCheckpoint.load(checkpointFile);
+        assertNotNull(checkpoint);
+        assertFalse(checkpoint.isCompleted(5));
+
+        int requestCount = server.getRequests().size();
+        uploader.upload(BUCKET_NAME, OBJECT_NAME, file, checkpointFile);
+
+        assertTrue(uploadedParts(requestCount).contains(5));
+        assertArrayEquals(content, server.getObject(BUCKET_NAME, OBJECT_NAME));
+    }
+
+    @Test
+    void recordAppendedAfterTornLineIsKept() throws IOException {
+
+        UploadCheckpoint checkpoint = new UploadCheckpoint(checkpointFile, "uploadId", BUCKET_NAME, OBJECT_NAME, PART_SIZE, 0L, 0L);
+        checkpoint.save();
+
+        // 写了一半的记录后面紧接着追加下一个分片的记录
+        Files.write(checkpointFile.toPath(), "part.4=\"0123".getBytes(StandardCharsets.ISO_8859_1), StandardOpenOption.APPEND);
+        checkpoint.complete(new PartETag(5, "\"0123456789ABCDEF\"", PART_SIZE, 42L));
+
+        UploadCheckpoint loaded = UploadCheckpoint.load(checkpointFile);
+        assertNotNull(loaded);
+        assertFalse(loaded.isCompleted(4));
+        assertTrue(loaded.isCompleted(5));
+        assertEquals("\"0123456789ABCDEF\"", loaded.getPartETags().get(0).getETag());
+    }
+
+    @Test
+    void resumeRestartsWhenRecordedPartIsInvalid() throws IOException {
+
+        server.fail(request -> request.isUploadPart() && "3".equals(request.getQuery("partNumber")), 1, 403, "AccessDenied");
+        assertThrows(OSSException.class, () -> uploader.upload(BUCKET_NAME, OBJECT_NAME, file, checkpointFile));
+
+        // 断点记录的 ETag 与服务端的分片不一致
+        UploadCheckpoint checkpoint = UploadCheckpoint.load(checkpointFile);
+        assertNotNull(checkpoint);
+        assertTrue(checkpoint.isCompleted(1));
+        checkpoint.complete(new PartETag(1, "\"0123456789ABCDEF\"", PART_SIZE, 42L));
+
+        int requestCount = server.getRequests().size();
+        TransferProgress progress = new TransferProgress("put", BUCKET_NAME, OBJECT_NAME, content.length, 0L);
+        uploader.upload(BUCKET_NAME, OBJECT_NAME, file, checkpointFile, progress);
+
+        assertEquals(IntStream.rangeClosed(1, PART_COUNT).boxed().collect(Collectors.toSet()), uploadedParts(requestCount));
+        assertArrayEquals(content, server.getObject(BUCKET_NAME, OBJECT_NAME));
+        assertEquals(content.length, progress.getBytesTransferred());
+        assertFalse(checkpointFile.exists());
+    }
+
+    @Test
+    void resumeRestartsWhenUploadIsGone() throws IOException {
+
+        server.fail(request -> request.isUploadPart() && "3".equals(request.getQuery("partNumber")), 1, 403, "AccessDenied");
+        assertThrows(OSSException.class, () -> uploader.upload(BUCKET_NAME, OBJECT_NAME, file, checkpointFile));
+
+        // 服务端的生命周期规则清理了未完成的上传
+        UploadCheckpoint checkpoint = UploadCheckpoint.load(checkpointFile);
+        assertNotNull(checkpoint);
+        oss.abortMultipartUpload(new AbortMultipartUploadRequest(BUCKET_NAME, OBJECT_NAME, checkpoint.getUploadId()));
+
+        int requestCount = server.getRequests().size();
+        uploader.upload(BUCKET_NAME, OBJECT_NAME, file, checkpointFile);
+
+        assertEquals(IntStream.rangeClosed(1, PART_COUNT).boxed().collect(Collectors.toSet()), uploadedParts(requestCount));
+        assertArrayEquals(content, server.getObject(BUCKET_NAME, OBJECT_NAME));
+    }
+
+    @Test
+    void resumeRestartsWhenFileChanged() throws IOException {
+
+        server.fail(request -> request.isUploadPart() && "3".equals(request.getQuery("partNumber")), 1, 403, "AccessDenied");
+        assertThrows(OSSException.class, () -> uploader.upload(BUCKET_NAME, OBJECT_NAME, file, checkpointFile));
+
+        ThreadLocalRandom.current().nextBytes(content);
+        Files.write(file.toPath(), content);
+        assertTrue(file.setLastModified(file.lastModified() + 1000));
+
+        int requestCount = server.getRequests().size();
+        uploader.upload(BUCKET_NAME, OBJECT_NAME, file, checkpointFile);
+
+        assertEquals(PART_COUNT, uploadedParts(requestCount).size());
+        assertArrayEquals(content, server.getObject(BUCKET_NAME, OBJECT_NAME));
+    }
+
+    @Test
+    void parsePartIgnoresTornLines() {
+
+        PartETag partETag = UploadCheckpoint.parsePart(2, UploadCheckpoint.formatPart(new PartETag(2, "\"ETAG\"", 100L, 42L)));
+        assertNotNull(partETag);
+        assertEquals("\"ETAG\"", partETag.getETag());
+        assertEquals(100L, partETag.getPartSize());
+        assertEquals(Long.valueOf(42L), partETag.getPartCRC());
+
+        String value = UploadCheckpoint.formatPart(new PartETag(2, "\"ETAG\"", 100L, 42L));
+        for (int length = 0; length < value.length(); length++) {
+            assertNull(UploadCheckpoint.parsePart(2, value.substring(0, length)), value.substring(0, length));
+        }
+
+        // 其他分片的记录和没有校验值的旧格式
+        assertNull(UploadCheckpoint.parsePart(3, value));
+        assertNull(UploadCheckpoint.parsePart(2, "\"ETAG\""));
+        assertNull(UploadCheckpoint.parsePart(2, "\"ETAG\";100;42;"));
+    }
+
+    private Set<Integer> uploadedParts(int fromRequest) {
+        List<OssStandInServer.Request> requests = server.getRequests();
+        return requests.subList(fromRequest, requests.size()).stream()
+                .filter(OssStandInServer.Request::isUploadPart)
+                .map(request -> Integer.valueOf(request.getQuery("partNumber")))
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+}
@@ -0,0 +1,140 @@
+package cn.darkjrong.storage.oss;
+
+import cn.darkjrong.storage.metrics.StorageErrorRecorder;
+import cn.darkjrong.storage.oss.domain.CopyResult;
+import com.aliyun.oss.ClientBuilderConfiguration;
+import com.aliyun.oss.OSS;
+import com.aliyun.oss.OSSClientBuilder;
+import com.aliyun.oss.model.OSSObjectSummary;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 按前缀拷贝测试, 目标文件名为 目标前缀 + 源文件名去掉源前缀
+ *
+ * @author Rong.Jia
+ * @date 2020/07/06 11:40
+ */
+class ObjectCopierTest {
+
+    private static final String SOURCE_BUCKET = "source";
+    private static final String TARGET_BUCKET = "target";
+    private static final List<String> SOURCE_KEYS = Arrays.asList("logs/a.txt", "logs/2020/b.txt", "logs/2020/07/c.txt");
+
+    private OssStandInServer server;
+    private OSS oss;
+    private ExecutorService executor;
+    private ObjectCopier copier;
+    private final Set<String> copied = ConcurrentHashMap.newKeySet();
+    private final Set<String> succeed = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void setUp() throws IOException {
+
+        server = new OssStandInServer(0);
+        server.createBucket(TARGET_BUCKET);
+        server.start();
+
+        ClientBuilderConfiguration configuration = new ClientBuilderConfiguration();
+        configuration.setSLDEnabled(Boolean.TRUE);
+        oss = new OSSClientBuilder().build(server.getEndpoint(), "accessKeyId", "accessKeySecret", configuration);
+
+        executor = Executors.newFixedThreadPool(2);
+        copier = new ObjectCopier(oss, executor, executor, MultipartUploader.MIN_PART_SIZE, 2,
+                (bucketName, objectName) -> copied.add(bucketName + "/" + objectName), StorageErrorRecorder.NONE);
+
+        for (String key : SOURCE_KEYS) {
+            server.putObject(SOURCE_BUCKET, key, key.getBytes(StandardCharsets.UTF_8));
+        }
+        server.putObject(SOURCE_BUCKET, "logsx/d.txt", new byte[1]);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        oss.shutdown();
+        server.close();
+    }
+
+    @Test
+    void copyByPrefixMapsKeysUnderTargetPrefix() {
+
+        CopyResult result = copier.copyByPrefix(SOURCE_BUCKET, "logs/", list(SOURCE_BUCKET, "logs/"),
+                TARGET_BUCKET, "archive/", succeed::add);
+
+        assertTrue(result.getFailedKeys().isEmpty());
+        assertEquals(SOURCE_KEYS.size(), result.getCopiedCount());
+        assertEquals(Arrays.asList("archive/2020/07/c.txt", "archive/2020/b.txt", "archive/a.txt"), server.getObjectNames(TARGET_BUCKET));
+        assertArrayEquals("logs/2020/07/c.txt".getBytes(StandardCharsets.UTF_8), server.getObject(TARGET_BUCKET, "archive/2020/07/c.txt"));
+        assertEquals(new HashSet<>(SOURCE_KEYS), succeed);
+        assertTrue(copied.contains(TARGET_BUCKET + "/archive/a.txt"));
+    }
+
+    @Test
+    void copyByPrefixWithoutTargetPrefixKeepsRelativeKeys() {
+
+        CopyResult result = copier.copyByPrefix(SOURCE_BUCKET, "logs/2020/", list(SOURCE_BUCKET, "logs/2020/"),
+                TARGET_BUCKET, null, succeed::add);
+
+        assertEquals(2, result.getCopiedCount());
+        assertEquals(Arrays.asList("07/c.txt", "b.txt"), server.getObjectNames(TARGET_BUCKET));
+    }
+
+    @Test
+    void copyByPrefixWithinBucketToSiblingPrefix() {
+
+        CopyResult result = copier.copyByPrefix(SOURCE_BUCKET, "logs/", list(SOURCE_BUCKET, "logs/"),
+                SOURCE_BUCKET, "backup/logs/", succeed::add);
+
+        assertEquals(SOURCE_KEYS.size(), result.getCopiedCount());
+        assertArrayEquals("logs/a.txt".getBytes(StandardCharsets.UTF_8), server.getObject(SOURCE_BUCKET, "backup/logs/a.txt"));
+    }
+
+    @Test
+    void copyByPrefixRejectsNestedTargetInSameBucket() {
+
+        assertThrows(IllegalArgumentException.class, () -> copier.copyByPrefix(SOURCE_BUCKET, "logs/", list(SOURCE_BUCKET, "logs/"),
+                SOURCE_BUCKET, "logs/copy/", succeed::add));
+        assertThrows(IllegalArgumentException.class, () -> copier.copyByPrefix(SOURCE_BUCKET, null, list(SOURCE_BUCKET, ""),
+                SOURCE_BUCKET, "copy/", succeed::add));
+
+        // 不同存储空间不会列举到拷贝结果
+        CopyResult result = copier.copyByPrefix(SOURCE_BUCKET, "logs/", list(SOURCE_BUCKET, "logs/"),
+                TARGET_BUCKET, "logs/copy/", succeed::add);
+        assertEquals(SOURCE_KEYS.size(), result.getCopiedCount());
+    }
+
+    @Test
+    void objectChangedAfterListingIsReportedAsFailed() {
+
+        Iterator<OSSObjectSummary> summaries = list(SOURCE_BUCKET, "logs/");
+        server.putObject(SOURCE_BUCKET, "logs/a.txt", "changed".getBytes(StandardCharsets.UTF_8));
+
+        CopyResult result = copier.copyByPrefix(SOURCE_BUCKET, "logs/", summaries, TARGET_BUCKET, "archive/", succeed::add);
+
+        assertEquals(Collections.singleton("logs/a.txt"), result.getFailedKeys().keySet());
+        assertEquals(SOURCE_KEYS.size() - 1, result.getCopiedCount());
+        assertNull(server.getObject(TARGET_BUCKET, "archive/a.txt"));
+        assertFalse(succeed.contains("logs/a.txt"));
+    }
+
+    private Iterator<OSSObjectSummary> list(String bucketName, String prefix) {
+        return oss.listObjects(bucketName, prefix).getObjectSummaries().iterator();
+    }
+
+}
@@ -0,0 +1,94 @@
+package cn.darkjrong.storage.oss;
+
+import com.aliyun.oss.ClientBuilderConfiguration;
+import com.aliyun.oss.OSS;
+import com.aliyun.oss.OSSClientBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.ReflectionUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.nio.channels.Channels;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * OssClient 测试, 使用进程内 OSS 替身服务
+ *
+ * @author Rong.Jia
+ * @date 2020/07/08 16:00
+ */
+class OssClientTest {
+
+    private static final String BUCKET_NAME = "test";
+    private static final long MULTIPART_THRESHOLD = 2 * 1024 * 1024L;
+
+    private OssStandInServer server;
+    private OSS oss;
+    private OssClient ossClient;
+
+    @BeforeEach
+    void setUp() throws IOException {
+
+        server = new OssStandInServer(0);
+        server.createBucket(BUCKET_NAME);
+        server.start();
+
+        ClientBuilderConfiguration configuration = new ClientBuilderConfiguration();
+        configuration.setSLDEnabled(Boolean.TRUE);
+        oss = new OSSClientBuilder().build(server.getEndpoint(), "accessKeyId", "accessKeySecret", configuration);
+
+        ossClient = new OssClient(server.getEndpoint(), null, 0);
+        ossClient.setPartSize(MultipartUploader.MIN_PART_SIZE);
+        ossClient.setMultipartThreshold(MULTIPART_THRESHOLD);
+        Field field = ReflectionUtils.findField(OssClient.class, "oss");
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, ossClient, oss);
+        ossClient.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ossClient.destroy();
+        oss.shutdown();
+        server.close();
+    }
+
+    @Test
+    void streamOfUnknownSizeBelowThresholdIsPutFromMemory() throws IOException {
+
+        byte[] content = new byte[(int) (MULTIPART_THRESHOLD * 3 / 4)];
+        ThreadLocalRandom.current().nextBytes(content);
+
+        ossClient.uploadObject(BUCKET_NAME, "stream/object", unknownSize(content), -1L);
+
+        List<OssStandInServer.Request> requests = server.getRequests();
+        assertEquals(1, requests.size());
+        assertEquals("PUT", requests.get(0).getMethod());
+        assertEquals(String.valueOf(content.length), requests.get(0).getHeader("Content-Length"));
+        assertArrayEquals(content, server.getObject(BUCKET_NAME, "stream/object"));
+    }
+
+    @Test
+    void urlCacheRefreshRatioMustBeBetweenZeroAndOne() {
+
+        assertThrows(IllegalArgumentException.class, () -> ossClient.setUrlCacheRefreshRatio(0));
+        assertThrows(IllegalArgumentException.class, () -> ossClient.setUrlCacheRefreshRatio(1));
+        assertThrows(IllegalArgumentException.class, () -> ossClient.setUrlCacheRefreshRatio(Double.NaN));
+        ossClient.setUrlCacheRefreshRatio(0.8);
+    }
+
+    /**
+     * 不支持 mark、无法得知大小的输入流
+     */
+    private static InputStream unknownSize(byte[] content) {
+        return Channels.newInputStream(Channels.newChannel(new ByteArrayInputStream(content)));
+    }
+
+}
@@ -0,0 +1,1280 @@
+package cn.darkjrong.storage.oss;
+
+import com.aliyun.oss.common.utils.CRC64;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.util.DigestUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 进程内 OSS 替身服务, 数据保存在内存中, 用于无网络环境下压测 OssClient
+ *
+ * 支持 OssClient 使用的接口子集: 普通上传, 范围下载, 元信息, 列举, 追加上传,
+ * 分片上传(初始化/上传分片/列举分片/完成/取消), 拷贝, 删除, 批量删除. 不校验签名, 仅支持 path-style 访问
+ *
+ * 可注入每个请求的延迟和单连接带宽, 模拟真实网络; 单元测试可注入错误响应、截断下载, 并查看收到的请求
+ *
+ * @author Rong.Jia
+ * @date 2020/06/24 09:30
+ */
+public class OssStandInServer implements Closeable {
+
+    private static final String XML_CONTENT_TYPE = "application/xml";
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+    private static final int BUFFER_SIZE = 8192;
+    private static final int DEFAULT_MAX_KEYS = 100;
+    private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d*)-(\\d*)");
+    private static final Pattern PART_PATTERN = Pattern.compile("<PartNumber>(\\d+)</PartNumber>\\s*<ETag>(.*?)</ETag>");
+    private static final Pattern KEY_PATTERN = Pattern.compile("<Key>(.*?)</Key>");
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor;
+
+    /**
+     * 每个请求的注入延迟, 单位毫秒
+     */
+    private final long latencyMillis;
+
+    /**
+     * 单连接带宽, 单位字节/秒, 不大于0时不限速
+     */
+    private final long bandwidth;
+
+    private final ConcurrentMap<String, ConcurrentSkipListMap<String, StoredObject>> buckets = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, MultipartUpload> uploads = new ConcurrentHashMap<>();
+    private final AtomicLong requestId = new AtomicLong();
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+    private final List<Fault> faults = new CopyOnWriteArrayList<>();
+
+    /**
+     * 批量删除时不删除的文件名
+     */
+    private volatile Predicate<String> undeletable = objectName -> false;
+
+    /**
+     * 创建不限速, 无延迟的替身服务
+     *
+     * @param port 端口, 0 为随机端口
+     */
+    public OssStandInServer(int port) throws IOException {
+        this(port, 0L, 0L);
+    }
+
+    /**
+     * 创建替身服务
+     *
+     * @param port          端口, 0 为随机端口
+     * @param latencyMillis 每个请求的注入延迟, 单位毫秒
+     * @param bandwidth     单连接带宽, 单位字节/秒, 不大于0时不限速
+     */
+    public OssStandInServer(int port, long latencyMillis, long bandwidth) throws IOException {
+
+        this.latencyMillis = latencyMillis;
+        this.bandwidth = bandwidth;
+        this.executor = Executors.newCachedThreadPool();
+
+        this.serverSocket = new ServerSocket(port, 0, InetAddress.getByName("127.0.0.1"));
+    }
+
+    public void start() {
+        executor.execute(this::accept);
+    }
+
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // 忽略
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * OSSClientBuilder 使用的访问地址
+     *
+     * @return 访问地址, 如 http://127.0.0.1:8080
+     */
+    public String getEndpoint() {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort();
+    }
+
+    /**
+     * 创建存储空间, 已存在时忽略
+     *
+     * @param bucketName 存储空间
+     */
+    public void createBucket(String bucketName) {
+        buckets.computeIfAbsent(bucketName, name -> new ConcurrentSkipListMap<>());
+    }
+
+    /**
+     * 写入文件, 不经过 HTTP
+     *
+     * @param bucketName 存储空间
+     * @param objectName 文件名
+     * @param content    内容
+     */
+    public void putObject(String bucketName, String objectName, byte[] content) {
+        createBucket(bucketName);
+        buckets.get(bucketName).put(objectName, new StoredObject(content, DEFAULT_CONTENT_TYPE, "Normal"));
+    }
+
+    /**
+     * 读取文件内容, 不经过 HTTP
+     *
+     * @param bucketName 存储空间
+     * @param objectName 文件名
+     * @return 内容, 不存在时返回null
+     */
+    public byte[] getObject(String bucketName, String objectName) {
+        ConcurrentSkipListMap<String, StoredObject> bucket = buckets.get(bucketName);
+        StoredObject object = bucket == null ? null : bucket.get(objectName);
+        return object == null ? null : object.content;
+    }
+
+    /**
+     * 存储空间中的全部文件名, 按字典序排列
+     *
+     * @param bucketName 存储空间
+     * @return 文件名
+     */
+    public List<String> getObjectNames(String bucketName) {
+        ConcurrentSkipListMap<String, StoredObject> bucket = buckets.get(bucketName);
+        return bucket == null ? Collections.emptyList() : new ArrayList<>(bucket.keySet());
+    }
+
+    /**
+     * 已收到的请求, 按到达顺序排列
+     *
+     * @return 请求
+     */
+    public List<Request> getRequests() {
+        return new ArrayList<>(requests);
+    }
+
+    /**
+     * 接下来 times 个匹配的请求直接返回错误
+     *
+     * @param matcher 匹配请求
+     * @param times   生效次数
+     * @param status  HTTP 状态码, 4xx 不会被 SDK 重试
+     * @param code    错误码
+     */
+    public void fail(Predicate<Request> matcher, int times, int status, String code) {
+        faults.add(new Fault(matcher, times, status, code, null));
+    }
+
+    /**
+     * 接下来 times 个匹配的下载请求只返回一半内容后断开连接
+     *
+     * @param matcher   匹配请求
+     * @param times     生效次数
+     * @param onTrigger 断开前执行, 如替换文件, 可为空
+     */
+    public void truncate(Predicate<Request> matcher, int times, Runnable onTrigger) {
+        faults.add(new Fault(matcher, times, 0, null, onTrigger));
+    }
+
+    /**
+     * 批量删除时跳过匹配的文件, 响应中不包含这些文件
+     *
+     * @param undeletable 匹配文件名
+     */
+    public void setUndeletable(Predicate<String> undeletable) {
+        this.undeletable = undeletable;
+    }
+
+    private Fault fault(Request request) {
+        for (Fault fault : faults) {
+            if (fault.matcher.test(request) && fault.remaining.getAndDecrement() > 0) {
+                if (fault.onTrigger != null) {
+                    fault.onTrigger.run();
+                }
+                return fault;
+            }
+        }
+        return null;
+    }
+
+    private void accept() {
+
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(Boolean.TRUE);
+                executor.execute(() -> serve(socket));
+            } catch (IOException | RejectedExecutionException e) {
+                // 服务关闭
+            }
+        }
+    }
+
+    /**
+     * 同一连接上循环处理请求, 直到客户端断开、要求关闭或响应被截断
+     */
+    private void serve(Socket socket) {
+
+        try (Socket connection = socket;
+             InputStream in = new BufferedInputStream(connection.getInputStream());
+             OutputStream out = new BufferedOutputStream(connection.getOutputStream())) {
+
+            Exchange exchange;
+            while ((exchange = Exchange.read(in, out)) != null) {
+                handle(exchange);
+                if (!exchange.isComplete() || "close".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Connection"))) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            // 客户端断开
+        }
+    }
+
+    private void handle(Exchange exchange) throws IOException {
+
+        try {
+            if (latencyMillis > 0) {
+                TimeUnit.MILLISECONDS.sleep(latencyMillis);
+            }
+
+            String path = URLDecoder.decode(exchange.getRequestURI().getRawPath(), StandardCharsets.UTF_8.name());
+            path = StringUtils.removeStart(path, "/");
+            String bucketName = StringUtils.substringBefore(path, "/");
+            String objectName = StringUtils.substringAfter(path, "/");
+            Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+
+            exchange.getResponseHeaders().set("x-oss-request-id", Long.toHexString(requestId.incrementAndGet()));
+
+            Request request = new Request(exchange.getRequestMethod(), bucketName, objectName, query, exchange.getRequestHeaders());
+            requests.add(request);
+            Fault fault = fault(request);
+
+            if (fault != null && fault.status > 0) {
+                error(exchange, fault.status, fault.code, "Injected fault");
+            } else if (StringUtils.isEmpty(bucketName)) {
+                error(exchange, 400, "InvalidArgument", "Service operations are not supported");
+            } else if (StringUtils.isEmpty(objectName)) {
+                handleBucket(exchange, bucketName, query);
+            } else {
+                handleObject(exchange, bucketName, objectName, query, fault != null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            error(exchange, 500, "InternalError", String.valueOf(e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleBucket(Exchange exchange, String bucketName, Map<String, String> query) throws IOException, InterruptedException {
+
+        String method = exchange.getRequestMethod();
+        if ("PUT".equals(method)) {
+            createBucket(bucketName);
+            send(exchange, 200, null, null);
+            return;
+        }
+
+        ConcurrentSkipListMap<String, StoredObject> bucket = buckets.get(bucketName);
+        if (bucket == null) {
+            error(exchange, 404, "NoSuchBucket", "The specified bucket does not exist.");
+        } else if ("GET".equals(method)) {
+            listObjects(exchange, bucketName, bucket, query);
+        } else if ("POST".equals(method) && query.containsKey("delete")) {
+            deleteObjects(exchange, bucket);
+        } else {
+            error(exchange, 405, "MethodNotAllowed", method);
+        }
+    }
+
+    private void handleObject(Exchange exchange, String bucketName, String objectName, Map<String, String> query,
+                              boolean truncate) throws IOException, InterruptedException {
+
+        ConcurrentSkipListMap<String, StoredObject> bucket = buckets.get(bucketName);
+        if (bucket == null) {
+            error(exchange, 404, "NoSuchBucket", "The specified bucket does not exist.");
+            return;
+        }
+
+        String method = exchange.getRequestMethod();
+        switch (method) {
+            case "PUT":
+                if (query.containsKey("uploadId")) {
+                    uploadPart(exchange, query.get("uploadId"), Integer.parseInt(query.get("partNumber")));
+                } else if (exchange.getRequestHeaders().containsKey("x-oss-copy-source")) {
+                    copyObject(exchange, bucket, objectName);
+                } else {
+                    putObject(exchange, bucket, objectName);
+                }
+                break;
+            case "POST":
+                if (query.containsKey("uploads")) {
+                    initiateMultipartUpload(exchange, bucketName, objectName);
+                } else if (query.containsKey("uploadId")) {
+                    completeMultipartUpload(exchange, bucket, bucketName, objectName, query.get("uploadId"));
+                } else if (query.containsKey("append")) {
+                    appendObject(exchange, bucket, objectName, Long.parseLong(query.get("position")));
+                } else {
+                    error(exchange, 400, "InvalidArgument", "Unsupported POST operation");
+                }
+                break;
+            case "GET":
+                if (query.containsKey("uploadId")) {
+                    listParts(exchange, bucketName, objectName, query.get("uploadId"));
+                } else {
+                    getObject(exchange, bucket.get(objectName), Boolean.FALSE, truncate);
+                }
+                break;
+            case "HEAD":
+                getObject(exchange, bucket.get(objectName), Boolean.TRUE, Boolean.FALSE);
+                break;
+            case "DELETE":
+                if (query.containsKey("uploadId")) {
+                    uploads.remove(query.get("uploadId"));
+                } else {
+                    bucket.remove(objectName);
+                }
+                send(exchange, 204, null, null);
+                break;
+            default:
+                error(exchange, 405, "MethodNotAllowed", method);
+        }
+    }
+
+    private void putObject(Exchange exchange, ConcurrentSkipListMap<String, StoredObject> bucket, String objectName) throws IOException, InterruptedException {
+
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        StoredObject object = new StoredObject(read(exchange), StringUtils.defaultIfEmpty(contentType, DEFAULT_CONTENT_TYPE), "Normal");
+        bucket.put(objectName, object);
+
+        objectHeaders(exchange.getResponseHeaders(), object);
+        send(exchange, 200, null, null);
+    }
+
+    private void copyObject(Exchange exchange, ConcurrentSkipListMap<String, StoredObject> bucket, String objectName) throws IOException, InterruptedException {
+
+        String source = URLDecoder.decode(exchange.getRequestHeaders().getFirst("x-oss-copy-source"), StandardCharsets.UTF_8.name());
+        source = StringUtils.removeStart(source, "/");
+        ConcurrentSkipListMap<String, StoredObject> sourceBucket = buckets.get(StringUtils.substringBefore(source, "/"));
+        StoredObject object = sourceBucket == null ? null : sourceBucket.get(StringUtils.substringAfter(source, "/"));
+        if (object == null) {
+            error(exchange, 404, "NoSuchKey", "The specified key does not exist.");
+            return;
+        }
+
+        String ifMatch = exchange.getRequestHeaders().getFirst("x-oss-copy-source-if-match");
+        if (ifMatch != null && !eTagMatches(ifMatch, object.eTag)) {
+            error(exchange, 412, "PreconditionFailed", "At least one of the pre-conditions you specified did not hold.");
+            return;
+        }
+
+        StoredObject copied = new StoredObject(object.content, object.contentType, "Normal");
+        bucket.put(objectName, copied);
+
+        String xml = "<CopyObjectResult>"
+                + "<ETag>" + escape(copied.eTag) + "</ETag>"
+                + "<LastModified>" + iso8601(copied.lastModified) + "</LastModified>"
+                + "</CopyObjectResult>";
+        send(exchange, 200, XML_CONTENT_TYPE, xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void deleteObjects(Exchange exchange, ConcurrentSkipListMap<String, StoredObject> bucket) throws IOException, InterruptedException {
+
+        String body = new String(read(exchange), StandardCharsets.UTF_8);
+
+        StringBuilder xml = new StringBuilder("<DeleteResult>");
+        Matcher matcher = KEY_PATTERN.matcher(body);
+        while (matcher.find()) {
+            String objectName = unescape(matcher.group(1));
+            if (!undeletable.test(objectName)) {
+                bucket.remove(objectName);
+                xml.append("<Deleted><Key>").append(escape(objectName)).append("</Key></Deleted>");
+            }
+        }
+        xml.append("</DeleteResult>");
+
+        send(exchange, 200, XML_CONTENT_TYPE, xml.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void appendObject(Exchange exchange, ConcurrentSkipListMap<String, StoredObject> bucket, String objectName, long position) throws IOException, InterruptedException {
+
+        byte[] content = read(exchange);
+
+        StoredObject object;
+        synchronized (bucket) {
+            StoredObject current = bucket.get(objectName);
+            long length = current == null ? 0L : current.content.length;
+            if (current != null && !"Appendable".equals(current.type)) {
+                error(exchange, 409, "ObjectNotAppendable", "The object is not appendable");
+                return;
+            }
+            if (position != length) {
+                exchange.getResponseHeaders().set("x-oss-next-append-position", String.valueOf(length));
+                error(exchange, 409, "PositionNotEqualToLength", "Position is not equal to file length");
+                return;
+            }
+
+            byte[] merged = current == null ? content : concat(Arrays.asList(current.content, content));
+            String contentType = current == null ? exchange.getRequestHeaders().getFirst("Content-Type") : current.contentType;
+            object = new StoredObject(merged, StringUtils.defaultIfEmpty(contentType, DEFAULT_CONTENT_TYPE), "Appendable");
+            bucket.put(objectName, object);
+        }
+
+        objectHeaders(exchange.getResponseHeaders(), object);
+        exchange.getResponseHeaders().set("x-oss-next-append-position", String.valueOf(object.content.length));
+        send(exchange, 200, null, null);
+    }
+
+    private void initiateMultipartUpload(Exchange exchange, String bucketName, String objectName) throws IOException, InterruptedException {
+
+        String uploadId = UUID.randomUUID().toString().replace("-", "").toUpperCase();
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        uploads.put(uploadId, new MultipartUpload(StringUtils.defaultIfEmpty(contentType, DEFAULT_CONTENT_TYPE)));
+
+        String xml = "<InitiateMultipartUploadResult>"
+                + "<Bucket>" + escape(bucketName) + "</Bucket>"
+                + "<Key>" + escape(objectName) + "</Key>"
+                + "<UploadId>" + uploadId + "</UploadId>"
+                + "</InitiateMultipartUploadResult>";
+        send(exchange, 200, XML_CONTENT_TYPE, xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void uploadPart(Exchange exchange, String uploadId, int partNumber) throws IOException, InterruptedException {
+
+        MultipartUpload upload = uploads.get(uploadId);
+        if (upload == null) {
+            error(exchange, 404, "NoSuchUpload", "The specified upload does not exist.");
+            return;
+        }
+
+        byte[] content = read(exchange);
+        upload.parts.put(partNumber, content);
+
+        exchange.getResponseHeaders().set("ETag", eTag(content));
+        exchange.getResponseHeaders().set("x-oss-hash-crc64ecma", crc64(content));
+        send(exchange, 200, null, null);
+    }
+
+    private void listParts(Exchange exchange, String bucketName, String objectName, String uploadId) throws IOException, InterruptedException {
+
+        MultipartUpload upload = uploads.get(uploadId);
+        if (upload == null) {
+            error(exchange, 404, "NoSuchUpload", "The specified upload does not exist.");
+            return;
+        }
+
+        StringBuilder xml = new StringBuilder("<ListPartsResult>")
+                .append("<Bucket>").append(escape(bucketName)).append("</Bucket>")
+                .append("<Key>").append(escape(objectName)).append("</Key>")
+                .append("<UploadId>").append(uploadId).append("</UploadId>")
+                .append("<PartNumberMarker>0</PartNumberMarker>")
+                .append("<NextPartNumberMarker>0</NextPartNumberMarker>")
+                .append("<MaxParts>1000</MaxParts>")
+                .append("<IsTruncated>false</IsTruncated>");
+        for (Map.Entry<Integer, byte[]> part : new TreeMap<>(upload.parts).entrySet()) {
+            xml.append("<Part>")
+                    .append("<PartNumber>").append(part.getKey()).append("</PartNumber>")
+                    .append("<LastModified>").append(iso8601(new Date())).append("</LastModified>")
+                    .append("<ETag>").append(escape(eTag(part.getValue()))).append("</ETag>")
+                    .append("<Size>").append(part.getValue().length).append("</Size>")
+                    .append("</Part>");
+        }
+        xml.append("</ListPartsResult>");
+
+        send(exchange, 200, XML_CONTENT_TYPE, xml.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void completeMultipartUpload(Exchange exchange, ConcurrentSkipListMap<String, StoredObject> bucket,
+                                         String bucketName, String objectName, String uploadId) throws IOException, InterruptedException {
+
+        String body = new String(read(exchange), StandardCharsets.UTF_8);
+
+        MultipartUpload upload = uploads.get(uploadId);
+        if (upload == null) {
+            error(exchange, 404, "NoSuchUpload", "The specified upload does not exist.");
+            return;
+        }
+
+        // 分片不存在或 ETag 不一致时上传事件保留, 与 OSS 一致
+        List<byte[]> parts = new ArrayList<>();
+        Matcher matcher = PART_PATTERN.matcher(body);
+        while (matcher.find()) {
+            byte[] part = upload.parts.get(Integer.parseInt(matcher.group(1)));
+            if (part == null || !eTagMatches(unescape(matcher.group(2)), eTag(part))) {
+                error(exchange, 400, "InvalidPart", "One or more of the specified parts could not be found.");
+                return;
+            }
+            parts.add(part);
+        }
+        uploads.remove(uploadId);
+
+        StoredObject object = new StoredObject(concat(parts), upload.contentType, "Multipart");
+        bucket.put(objectName, object);
+
+        String xml = "<CompleteMultipartUploadResult>"
+                + "<Location>" + escape(getEndpoint() + "/" + bucketName + "/" + objectName) + "</Location>"
+                + "<Bucket>" + escape(bucketName) + "</Bucket>"
+                + "<Key>" + escape(objectName) + "</Key>"
+                + "<ETag>" + escape(object.eTag) + "</ETag>"
+                + "</CompleteMultipartUploadResult>";
+        exchange.getResponseHeaders().set("x-oss-hash-crc64ecma", object.crc64);
+        send(exchange, 200, XML_CONTENT_TYPE, xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void getObject(Exchange exchange, StoredObject object, boolean head, boolean truncate) throws IOException, InterruptedException {
+
+        if (object == null) {
+            error(exchange, 404, "NoSuchKey", "The specified key does not exist.");
+            return;
+        }
+
+        String ifMatch = exchange.getRequestHeaders().getFirst("If-Match");
+        if (ifMatch != null && !eTagMatches(ifMatch, object.eTag)) {
+            error(exchange, 412, "PreconditionFailed", "At least one of the pre-conditions you specified did not hold.");
+            return;
+        }
+
+        HeaderMap headers = exchange.getResponseHeaders();
+        objectHeaders(headers, object);
+        headers.set("Content-Type", object.contentType);
+        headers.set("Last-Modified", rfc822(object.lastModified));
+        headers.set("Accept-Ranges", "bytes");
+
+        long length = object.content.length;
+        long start = 0L;
+        long end = length - 1;
+        int status = 200;
+
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        Matcher matcher = range == null ? null : RANGE_PATTERN.matcher(range);
+        if (matcher != null && matcher.matches() && length > 0) {
+            if (matcher.group(1).isEmpty()) {
+                start = Math.max(0L, length - Long.parseLong(matcher.group(2)));
+            } else {
+                start = Long.parseLong(matcher.group(1));
+                if (!matcher.group(2).isEmpty()) {
+                    end = Math.min(end, Long.parseLong(matcher.group(2)));
+                }
+            }
+
+            if (start >= length || start > end) {
+                headers.set("Content-Range", "bytes */" + length);
+                error(exchange, 416, "InvalidRange", "The requested range cannot be satisfied.");
+                return;
+            }
+
+            status = 206;
+            headers.set("Content-Range", "bytes " + start + "-" + end + "/" + length);
+            // 范围下载不返回整个文件的 crc
+            headers.remove("x-oss-hash-crc64ecma");
+        }
+
+        long contentLength = end - start + 1;
+        if (head) {
+            headers.set("Content-Length", String.valueOf(length));
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+
+        exchange.sendResponseHeaders(status, contentLength == 0 ? -1 : contentLength);
+        if (truncate) {
+            // 未写满 Content-Length 时断开连接, 客户端读到不完整的响应体
+            write(exchange.getResponseBody(), object.content, (int) start, (int) contentLength / 2);
+            return;
+        }
+        write(exchange.getResponseBody(), object.content, (int) start, (int) contentLength);
+    }
+
+    private void listObjects(Exchange exchange, String bucketName, ConcurrentSkipListMap<String, StoredObject> bucket,
+                             Map<String, String> query) throws IOException, InterruptedException {
+
+        String prefix = StringUtils.defaultString(query.get("prefix"));
+        String marker = StringUtils.defaultString(query.get("marker"));
+        String delimiter = StringUtils.defaultString(query.get("delimiter"));
+        int maxKeys = query.containsKey("max-keys") ? Integer.parseInt(query.get("max-keys")) : DEFAULT_MAX_KEYS;
+
+        StringBuilder contents = new StringBuilder();
+        Set<String> commonPrefixes = new TreeSet<>();
+        String lastKey = null;
+        int count = 0;
+        boolean truncated = false;
+
+        NavigableMap<String, StoredObject> tail = marker.isEmpty() ? bucket.tailMap(prefix, true) : bucket.tailMap(marker, false);
+        for (Map.Entry<String, StoredObject> entry : tail.entrySet()) {
+
+            String key = entry.getKey();
+            if (!key.startsWith(prefix)) {
+                if (key.compareTo(prefix) > 0) {
+                    break;
+                }
+                continue;
+            }
+            if (count >= maxKeys) {
+                truncated = true;
+                break;
+            }
+
+            String rest = key.substring(prefix.length());
+            if (!delimiter.isEmpty() && rest.contains(delimiter)) {
+                String commonPrefix = prefix + StringUtils.substringBefore(rest, delimiter) + delimiter;
+                if (commonPrefixes.add(commonPrefix)) {
+                    count++;
+                }
+            } else {
+                StoredObject object = entry.getValue();
+                contents.append("<Contents>")
+                        .append("<Key>").append(escape(key)).append("</Key>")
+                        .append("<LastModified>").append(iso8601(object.lastModified)).append("</LastModified>")
+                        .append("<ETag>").append(escape(object.eTag)).append("</ETag>")
+                        .append("<Type>").append(object.type).append("</Type>")
+                        .append("<Size>").append(object.content.length).append("</Size>")
+                        .append("<StorageClass>Standard</StorageClass>")
+                        .append("<Owner><ID>standin</ID><DisplayName>standin</DisplayName></Owner>")
+                        .append("</Contents>");
+                count++;
+            }
+            lastKey = key;
+        }
+
+        StringBuilder xml = new StringBuilder("<ListBucketResult>")
+                .append("<Name>").append(escape(bucketName)).append("</Name>")
+                .append("<Prefix>").append(escape(prefix)).append("</Prefix>")
+                .append("<Marker>").append(escape(marker)).append("</Marker>")
+                .append("<MaxKeys>").append(maxKeys).append("</MaxKeys>")
+                .append("<Delimiter>").append(escape(delimiter)).append("</Delimiter>")
+                .append("<IsTruncated>").append(truncated).append("</IsTruncated>");
+        if (truncated && lastKey != null) {
+            xml.append("<NextMarker>").append(escape(lastKey)).append("</NextMarker>");
+        }
+        xml.append(contents);
+        for (String commonPrefix : commonPrefixes) {
+            xml.append("<CommonPrefixes><Prefix>").append(escape(commonPrefix)).append("</Prefix></CommonPrefixes>");
+        }
+        xml.append("</ListBucketResult>");
+
+        send(exchange, 200, XML_CONTENT_TYPE, xml.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void error(Exchange exchange, int status, String code, String message) throws IOException {
+
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><Error>"
+                + "<Code>" + code + "</Code>"
+                + "<Message>" + escape(message) + "</Message>"
+                + "<RequestId>" + exchange.getResponseHeaders().getFirst("x-oss-request-id") + "</RequestId>"
+                + "<HostId>127.0.0.1</HostId>"
+                + "</Error>";
+
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+
+        byte[] body = xml.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", XML_CONTENT_TYPE);
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private void send(Exchange exchange, int status, String contentType, byte[] body) throws IOException, InterruptedException {
+
+        if (contentType != null) {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+        }
+
+        if (body == null || body.length == 0) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+
+        exchange.sendResponseHeaders(status, body.length);
+        write(exchange.getResponseBody(), body, 0, body.length);
+    }
+
+    private static void objectHeaders(HeaderMap headers, StoredObject object) {
+        headers.set("ETag", object.eTag);
+        headers.set("x-oss-object-type", object.type);
+        headers.set("x-oss-hash-crc64ecma", object.crc64);
+    }
+
+    /**
+     * 按注入带宽读取请求体
+     */
+    private byte[] read(Exchange exchange) throws IOException, InterruptedException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long begin = System.nanoTime();
+        long total = 0L;
+
+        try (InputStream in = exchange.getRequestBody()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                total += read;
+                throttle(begin, total);
+            }
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * 按注入带宽写出响应体
+     */
+    private void write(OutputStream out, byte[] content, int offset, int length) throws IOException, InterruptedException {
+
+        long begin = System.nanoTime();
+        int written = 0;
+        while (written < length) {
+            int size = Math.min(BUFFER_SIZE, length - written);
+            out.write(content, offset + written, size);
+            written += size;
+            throttle(begin, written);
+        }
+        out.flush();
+    }
+
+    private void throttle(long begin, long transferred) throws InterruptedException {
+
+        if (bandwidth <= 0) {
+            return;
+        }
+
+        long expected = TimeUnit.SECONDS.toNanos(transferred) / bandwidth;
+        long ahead = expected - (System.nanoTime() - begin);
+        if (ahead > 0) {
+            TimeUnit.NANOSECONDS.sleep(ahead);
+        }
+    }
+
+    private static Map<String, String> query(String rawQuery) throws IOException {
+
+        Map<String, String> query = new HashMap<>();
+        if (StringUtils.isEmpty(rawQuery)) {
+            return query;
+        }
+
+        for (String pair : StringUtils.split(rawQuery, '&')) {
+            String name = URLDecoder.decode(StringUtils.substringBefore(pair, "="), StandardCharsets.UTF_8.name());
+            String value = URLDecoder.decode(StringUtils.substringAfter(pair, "="), StandardCharsets.UTF_8.name());
+            query.put(name, value);
+        }
+
+        return query;
+    }
+
+    private static byte[] concat(List<byte[]> parts) {
+
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+
+        byte[] content = new byte[length];
+        int position = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, content, position, part.length);
+            position += part.length;
+        }
+
+        return content;
+    }
+
+    private static String eTag(byte[] content) {
+        return "\"" + DigestUtils.md5DigestAsHex(content).toUpperCase() + "\"";
+    }
+
+    /**
+     * SDK 取得的 ETag 可能已去掉引号
+     */
+    private static boolean eTagMatches(String condition, String eTag) {
+        return StringUtils.strip(condition, "\"").equals(StringUtils.strip(eTag, "\""));
+    }
+
+    private static String crc64(byte[] content) {
+        CRC64 crc64 = new CRC64();
+        crc64.update(content, 0, content.length);
+        return Long.toUnsignedString(crc64.getValue());
+    }
+
+    private static String escape(String value) {
+        return StringUtils.replaceEach(value, new String[]{"&", "<", ">", "\"", "'"},
+                new String[]{"&amp;", "&lt;", "&gt;", "&quot;", "&apos;"});
+    }
+
+    private static String unescape(String value) {
+        return StringUtils.replaceEach(value, new String[]{"&lt;", "&gt;", "&quot;", "&apos;", "&amp;"},
+                new String[]{"<", ">", "\"", "'", "&"});
+    }
+
+    private static String rfc822(Date date) {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format.format(date);
+    }
+
+    private static String iso8601(Date date) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(date);
+    }
+
+    /**
+     * 单独启动: java -cp benchmarks.jar cn.darkjrong.storage.oss.OssStandInServer [端口] [延迟毫秒] [带宽字节/秒] [存储空间...]
+     */
+    public static void main(String[] args) throws IOException {
+
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        long latencyMillis = args.length > 1 ? Long.parseLong(args[1]) : 0L;
+        long bandwidth = args.length > 2 ? Long.parseLong(args[2]) : 0L;
+
+        OssStandInServer server = new OssStandInServer(port, latencyMillis, bandwidth);
+        for (int i = 3; i < args.length; i++) {
+            server.createBucket(args[i]);
+        }
+        server.start();
+
+        System.out.println("OSS stand-in listening on " + server.getEndpoint());
+    }
+
+    /**
+     * 收到的请求
+     */
+    public static class Request {
+
+        private final String method;
+        private final String bucketName;
+        private final String objectName;
+        private final Map<String, String> query;
+        private final HeaderMap headers;
+
+        private Request(String method, String bucketName, String objectName, Map<String, String> query, HeaderMap headers) {
+            this.method = method;
+            this.bucketName = bucketName;
+            this.objectName = objectName;
+            this.query = query;
+            this.headers = headers;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getBucketName() {
+            return bucketName;
+        }
+
+        public String getObjectName() {
+            return objectName;
+        }
+
+        public String getQuery(String name) {
+            return query.get(name);
+        }
+
+        public String getHeader(String name) {
+            return headers.getFirst(name);
+        }
+
+        /**
+         * 是否为上传分片请求
+         */
+        public boolean isUploadPart() {
+            return "PUT".equals(method) && query.containsKey("partNumber");
+        }
+
+        /**
+         * 是否为范围下载请求
+         */
+        public boolean isRangeGet() {
+            return "GET".equals(method) && headers.containsKey("Range");
+        }
+    }
+
+    /**
+     * 单个请求及其响应
+     *
+     * 响应头按设置时的大小写原样写出, SDK 按大小写敏感读取响应头, JDK 自带的 HttpServer 会改写为首字母大写
+     */
+    private static class Exchange {
+
+        private final String method;
+        private final URI requestURI;
+        private final HeaderMap requestHeaders;
+        private final InputStream requestBody;
+        private final HeaderMap responseHeaders = new HeaderMap();
+        private final OutputStream out;
+
+        /**
+         * 声明的响应体长度中尚未写出的部分
+         */
+        private long remaining;
+
+        private Exchange(String method, URI requestURI, HeaderMap requestHeaders, InputStream requestBody, OutputStream out) {
+            this.method = method;
+            this.requestURI = requestURI;
+            this.requestHeaders = requestHeaders;
+            this.requestBody = requestBody;
+            this.out = out;
+        }
+
+        /**
+         * 读取请求行和请求头
+         *
+         * @return 请求, 连接已关闭时返回null
+         */
+        private static Exchange read(InputStream in, OutputStream out) throws IOException {
+
+            String requestLine = readLine(in);
+            while (requestLine != null && requestLine.isEmpty()) {
+                requestLine = readLine(in);
+            }
+            if (requestLine == null) {
+                return null;
+            }
+
+            String[] parts = StringUtils.split(requestLine, ' ');
+            HeaderMap headers = new HeaderMap();
+            String line;
+            while ((line = readLine(in)) != null && !line.isEmpty()) {
+                headers.set(StringUtils.substringBefore(line, ":").trim(), StringUtils.substringAfter(line, ":").trim());
+            }
+
+            InputStream body;
+            if ("chunked".equalsIgnoreCase(headers.getFirst("Transfer-Encoding"))) {
+                body = new ChunkedInputStream(in);
+            } else {
+                body = new BoundedInputStream(in, Long.parseLong(StringUtils.defaultIfEmpty(headers.getFirst("Content-Length"), "0")));
+            }
+
+            if ("100-continue".equalsIgnoreCase(headers.getFirst("Expect"))) {
+                out.write("HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+                out.flush();
+            }
+
+            return new Exchange(parts[0], URI.create(parts[1]), headers, body, out);
+        }
+
+        String getRequestMethod() {
+            return method;
+        }
+
+        URI getRequestURI() {
+            return requestURI;
+        }
+
+        HeaderMap getRequestHeaders() {
+            return requestHeaders;
+        }
+
+        InputStream getRequestBody() {
+            return requestBody;
+        }
+
+        HeaderMap getResponseHeaders() {
+            return responseHeaders;
+        }
+
+        /**
+         * 写出状态行和响应头
+         *
+         * @param status 状态码
+         * @param length 响应体长度, -1 表示没有响应体; HEAD 请求保留已设置的 Content-Length
+         */
+        void sendResponseHeaders(int status, long length) throws IOException {
+
+            boolean head = "HEAD".equals(method);
+            if (!head || !responseHeaders.containsKey("Content-Length")) {
+                responseHeaders.set("Content-Length", String.valueOf(head ? 0L : Math.max(length, 0L)));
+            }
+
+            StringBuilder builder = new StringBuilder("HTTP/1.1 ").append(status).append(' ').append(reason(status)).append("\r\n");
+            for (Map.Entry<String, String> header : responseHeaders.entrySet()) {
+                builder.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+            }
+            builder.append("\r\n");
+            out.write(builder.toString().getBytes(StandardCharsets.ISO_8859_1));
+
+            remaining = head ? 0L : Math.max(length, 0L);
+        }
+
+        OutputStream getResponseBody() {
+            return new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    remaining--;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    remaining -= len;
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    out.flush();
+                }
+            };
+        }
+
+        /**
+         * 响应体是否已按声明的长度写完, 未写完时需要断开连接
+         */
+        boolean isComplete() {
+            return remaining == 0;
+        }
+
+        /**
+         * 写出响应并读完未读取的请求体, 以便复用连接
+         */
+        void close() throws IOException {
+            out.flush();
+            if (isComplete()) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                while (requestBody.read(buffer) != -1) {
+                    // 丢弃
+                }
+            }
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+
+            StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = in.read()) != -1 && c != '\n') {
+                if (c != '\r') {
+                    line.append((char) c);
+                }
+            }
+
+            return c == -1 && line.length() == 0 ? null : line.toString();
+        }
+
+        private static String reason(int status) {
+            switch (status) {
+                case 200:
+                    return "OK";
+                case 204:
+                    return "No Content";
+                case 206:
+                    return "Partial Content";
+                case 400:
+                    return "Bad Request";
+                case 403:
+                    return "Forbidden";
+                case 404:
+                    return "Not Found";
+                case 405:
+                    return "Method Not Allowed";
+                case 409:
+                    return "Conflict";
+                case 412:
+                    return "Precondition Failed";
+                case 416:
+                    return "Requested Range Not Satisfiable";
+                default:
+                    return status >= 500 ? "Internal Server Error" : "Error";
+            }
+        }
+    }
+
+    /**
+     * 名称不区分大小写, 保留首次设置时的大小写
+     */
+    private static class HeaderMap {
+
+        private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+        String getFirst(String name) {
+            return headers.get(name);
+        }
+
+        boolean containsKey(String name) {
+            return headers.containsKey(name);
+        }
+
+        void set(String name, String value) {
+            headers.put(name, value);
+        }
+
+        void remove(String name) {
+            headers.remove(name);
+        }
+
+        Set<Map.Entry<String, String>> entrySet() {
+            return headers.entrySet();
+        }
+    }
+
+    /**
+     * 按 Content-Length 读取请求体, 不关闭连接
+     */
+    private static class BoundedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        private BoundedInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n == -1) {
+                throw new EOFException("premature end of request body");
+            }
+            remaining -= n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * 读取分块编码的请求体, 不关闭连接
+     */
+    private static class ChunkedInputStream extends FilterInputStream {
+
+        private long remaining;
+        private boolean eof;
+
+        private ChunkedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+
+            if (eof) {
+                return -1;
+            }
+
+            if (remaining == 0) {
+                String size = Exchange.readLine(in);
+                if (size == null) {
+                    throw new EOFException("premature end of chunked request body");
+                }
+                remaining = Long.parseLong(StringUtils.substringBefore(size, ";").trim(), 16);
+                if (remaining == 0) {
+                    String trailer;
+                    while ((trailer = Exchange.readLine(in)) != null && !trailer.isEmpty()) {
+                        // 忽略尾部头
+                    }
+                    eof = true;
+                    return -1;
+                }
+            }
+
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n == -1) {
+                throw new EOFException("premature end of chunked request body");
+            }
+            remaining -= n;
+            if (remaining == 0) {
+                Exchange.readLine(in);
+            }
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class Fault {
+
+        private final Predicate<Request> matcher;
+        private final AtomicInteger remaining;
+        private final int status;
+        private final String code;
+        private final Runnable onTrigger;
+
+        private Fault(Predicate<Request> matcher, int times, int status, String code, Runnable onTrigger) {
+            this.matcher = matcher;
+            this.remaining = new AtomicInteger(times);
+            this.status = status;
+            this.code = code;
+            this.onTrigger = onTrigger;
+        }
+    }
+
+    private static class StoredObject {
+
+        private final byte[] content;
+        private final String contentType;
+        private final String type;
+        private final String eTag;
+        private final String crc64;
+        private final Date lastModified = new Date();
+
+        private StoredObject(byte[] content, String contentType, String type) {
+            this.content = content;
+            this.contentType = contentType;
+            this.type = type;
+            this.eTag = eTag(content);
+            this.crc64 = OssStandInServer.crc64(content);
+        }
+    }
+
+    private static class MultipartUpload {
+
+        private final String contentType;
+        private final ConcurrentMap<Integer, byte[]> parts = new ConcurrentHashMap<>();
+
+        private MultipartUpload(String contentType) {
+            this.contentType = contentType;
+        }
+    }
+
+}
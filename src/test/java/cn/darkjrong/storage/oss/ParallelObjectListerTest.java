@@ -0,0 +1,133 @@
+package cn.darkjrong.storage.oss;
+
+import com.aliyun.oss.ClientBuilderConfiguration;
+import com.aliyun.oss.OSS;
+import com.aliyun.oss.OSSClientBuilder;
+import com.aliyun.oss.model.OSSObjectSummary;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分片并发列举测试, 每次列举使用独立的线程池, 流消费完毕或关闭后线程退出
+ *
+ * @author Rong.Jia
+ * @date 2020/07/08 10:20
+ */
+class ParallelObjectListerTest {
+
+    private static final String BUCKET_NAME = "test";
+    private static final int PARALLELISM = 3;
+    private static final int MAX_KEYS = 2;
+
+    private OssStandInServer server;
+    private OSS oss;
+    private ParallelObjectLister lister;
+    private List<String> objectNames;
+
+    @BeforeEach
+    void setUp() throws IOException {
+
+        server = new OssStandInServer(0);
+        server.start();
+
+        ClientBuilderConfiguration configuration = new ClientBuilderConfiguration();
+        configuration.setSLDEnabled(Boolean.TRUE);
+        oss = new OSSClientBuilder().build(server.getEndpoint(), "accessKeyId", "accessKeySecret", configuration);
+
+        lister = new ParallelObjectLister(oss, BUCKET_NAME, PARALLELISM, MAX_KEYS);
+
+        objectNames = IntStream.range(0, 60)
+                .mapToObj(i -> String.format("list/%d/%02d", i % 6, i))
+                .sorted()
+                .collect(Collectors.toList());
+        objectNames.forEach(objectName -> server.putObject(BUCKET_NAME, objectName, new byte[1]));
+        server.putObject(BUCKET_NAME, "list/top", new byte[1]);
+    }
+
+    @AfterEach
+    void tearDown() {
+        oss.shutdown();
+        server.close();
+    }
+
+    @Test
+    void orderedListingReturnsAllKeysAndReleasesThreads() throws InterruptedException {
+
+        List<String> keys = lister.listByDelimiter("list/", "/", true)
+                .map(OSSObjectSummary::getKey)
+                .collect(Collectors.toList());
+
+        List<String> expected = Stream.concat(objectNames.stream(), Stream.of("list/top")).sorted().collect(Collectors.toList());
+        assertEquals(expected, keys);
+        awaitNoListThreads();
+    }
+
+    @Test
+    void unorderedListingByRangesReturnsAllKeys() throws InterruptedException {
+
+        List<String> keys = lister.listByRanges("list/", Arrays.asList("list/1/", "list/3/", "list/5/"), false)
+                .map(OSSObjectSummary::getKey)
+                .sorted()
+                .collect(Collectors.toList());
+
+        List<String> expected = Stream.concat(objectNames.stream(), Stream.of("list/top")).sorted().collect(Collectors.toList());
+        assertEquals(expected, keys);
+        awaitNoListThreads();
+    }
+
+    @Test
+    void closingShortCircuitedStreamStopsShards() throws InterruptedException {
+
+        try (Stream<OSSObjectSummary> stream = lister.listByDelimiter("list/", "/", false)) {
+            assertTrue(stream.findFirst().isPresent());
+        }
+        awaitNoListThreads();
+    }
+
+    @Test
+    void readingAfterCloseFailsInsteadOfHanging() {
+
+        Stream<OSSObjectSummary> stream = lister.listByDelimiter("list/", "/", true);
+        Iterator<OSSObjectSummary> iterator = stream.iterator();
+        assertTrue(iterator.hasNext());
+        iterator.next();
+        stream.close();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> assertThrows(IllegalStateException.class, () -> {
+                    while (iterator.hasNext()) {
+                        iterator.next();
+                    }
+                }));
+    }
+
+    /**
+     * 等待列举线程全部退出
+     */
+    private static void awaitNoListThreads() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (listThreads() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20L);
+        }
+        assertEquals(0, listThreads());
+    }
+
+    private static long listThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.isAlive() && thread.getName().startsWith("oss-list-"))
+                .count();
+    }
+
+}
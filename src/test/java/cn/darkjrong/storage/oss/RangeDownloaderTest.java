@@ -0,0 +1,125 @@
+package cn.darkjrong.storage.oss;
+
+import com.aliyun.oss.ClientBuilderConfiguration;
+import com.aliyun.oss.OSS;
+import com.aliyun.oss.OSSClientBuilder;
+import com.aliyun.oss.OSSException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分段下载测试, 截断响应模拟连接中断, 重试时以 ETag 保证各分段来自同一版本
+ *
+ * @author Rong.Jia
+ * @date 2020/07/06 10:15
+ */
+class RangeDownloaderTest {
+
+    private static final String BUCKET_NAME = "test";
+    private static final String OBJECT_NAME = "range/object";
+    private static final long PART_SIZE = 64 * 1024L;
+    private static final int RETRIES = 2;
+
+    @TempDir
+    Path dir;
+
+    private OssStandInServer server;
+    private OSS oss;
+    private ExecutorService executor;
+    private byte[] content;
+    private File file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+
+        server = new OssStandInServer(0);
+        server.start();
+
+        ClientBuilderConfiguration configuration = new ClientBuilderConfiguration();
+        configuration.setSLDEnabled(Boolean.TRUE);
+        oss = new OSSClientBuilder().build(server.getEndpoint(), "accessKeyId", "accessKeySecret", configuration);
+
+        executor = Executors.newFixedThreadPool(2);
+
+        content = new byte[(int) (PART_SIZE * 4)];
+        ThreadLocalRandom.current().nextBytes(content);
+        server.putObject(BUCKET_NAME, OBJECT_NAME, content);
+        file = dir.resolve("download").toFile();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        oss.shutdown();
+        server.close();
+    }
+
+    @Test
+    void retryResumesFromWrittenPosition() throws IOException {
+
+        server.truncate(request -> request.isRangeGet() && request.getHeader("Range").startsWith("bytes=" + PART_SIZE + "-"), 1, null);
+
+        new RangeDownloader(oss, executor, PART_SIZE, RETRIES, IntegrityMode.CRC64).download(BUCKET_NAME, OBJECT_NAME, file);
+
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+
+        // 截断的分段只重新请求未写入的部分
+        List<String> ranges = server.getRequests().stream()
+                .filter(OssStandInServer.Request::isRangeGet)
+                .map(request -> request.getHeader("Range"))
+                .collect(Collectors.toList());
+        assertEquals(5, ranges.size());
+        assertTrue(ranges.contains("bytes=" + (PART_SIZE + PART_SIZE / 2) + "-" + (2 * PART_SIZE - 1)));
+    }
+
+    @Test
+    void everyRangeIsPinnedToTheSameETag() throws IOException {
+
+        new RangeDownloader(oss, executor, PART_SIZE, RETRIES).download(BUCKET_NAME, OBJECT_NAME, file);
+
+        List<String> eTags = server.getRequests().stream()
+                .filter(OssStandInServer.Request::isRangeGet)
+                .map(request -> request.getHeader("If-Match"))
+                .distinct()
+                .collect(Collectors.toList());
+        assertEquals(1, eTags.size());
+        assertNotNull(eTags.get(0));
+    }
+
+    @Test
+    void objectReplacedDuringDownloadFails() throws IOException {
+
+        byte[] replaced = new byte[content.length];
+        ThreadLocalRandom.current().nextBytes(replaced);
+        server.truncate(OssStandInServer.Request::isRangeGet, 1, () -> server.putObject(BUCKET_NAME, OBJECT_NAME, replaced));
+
+        RangeDownloader downloader = new RangeDownloader(oss, executor, PART_SIZE, RETRIES);
+        OSSException e = assertThrows(OSSException.class, () -> downloader.download(BUCKET_NAME, OBJECT_NAME, file));
+
+        assertEquals("PreconditionFailed", e.getErrorCode());
+
+        // 文件被替换后不再重试, 同一范围不会被重复请求
+        List<String> ranges = server.getRequests().stream()
+                .filter(OssStandInServer.Request::isRangeGet)
+                .map(request -> request.getHeader("Range"))
+                .collect(Collectors.toList());
+        assertEquals(ranges.size(), ranges.stream().distinct().count(), "range requests: " + ranges);
+        assertFalse(file.exists());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+}
@@ -0,0 +1,121 @@
+package cn.darkjrong.storage.oss;
+
+import com.aliyun.oss.ClientBuilderConfiguration;
+import com.aliyun.oss.OSS;
+import com.aliyun.oss.OSSClientBuilder;
+import com.aliyun.oss.event.ProgressEventType;
+import com.aliyun.oss.event.ProgressPublisher;
+import com.aliyun.oss.model.ObjectMetadata;
+import com.aliyun.oss.model.PutObjectRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 传输进度事件测试, SDK 重试时已累加的字节数回退, 完成状态由调用方设置
+ *
+ * @author Rong.Jia
+ * @date 2020/07/08 14:30
+ */
+class TransferProgressListenerTest {
+
+    private static final String BUCKET_NAME = "test";
+    private static final String OBJECT_NAME = "progress/object";
+    private static final int SIZE = 256 * 1024;
+
+    private OssStandInServer server;
+    private OSS oss;
+
+    @BeforeEach
+    void setUp() throws IOException {
+
+        server = new OssStandInServer(0);
+        server.createBucket(BUCKET_NAME);
+        server.start();
+
+        ClientBuilderConfiguration configuration = new ClientBuilderConfiguration();
+        configuration.setSLDEnabled(Boolean.TRUE);
+        oss = new OSSClientBuilder().build(server.getEndpoint(), "accessKeyId", "accessKeySecret", configuration);
+    }
+
+    @AfterEach
+    void tearDown() {
+        oss.shutdown();
+        server.close();
+    }
+
+    @Test
+    void retriedUploadCountsEveryByteOnce() {
+
+        byte[] content = new byte[SIZE];
+        ThreadLocalRandom.current().nextBytes(content);
+        server.fail(request -> "PUT".equals(request.getMethod()), 1, 500, "InternalError");
+
+        TransferProgress progress = new TransferProgress("put", BUCKET_NAME, OBJECT_NAME, SIZE, 0L);
+        TransferProgressListener listener = new TransferProgressListener(progress);
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(SIZE);
+        PutObjectRequest request = new PutObjectRequest(BUCKET_NAME, OBJECT_NAME, listener.track(new ByteArrayInputStream(content)), metadata);
+        request.setProgressListener(listener);
+
+        oss.putObject(request);
+
+        assertEquals(2, server.getRequests().stream().filter(r -> "PUT".equals(r.getMethod())).count());
+        assertEquals(SIZE, progress.getBytesTransferred());
+        assertEquals(TransferProgress.State.RUNNING, progress.getState());
+        assertArrayEquals(content, server.getObject(BUCKET_NAME, OBJECT_NAME));
+    }
+
+    @Test
+    void resetRewindsBytesCountedSinceMark() throws IOException {
+
+        TransferProgress progress = new TransferProgress("put", BUCKET_NAME, OBJECT_NAME, 100L, 0L);
+        TransferProgressListener listener = new TransferProgressListener(progress);
+        InputStream content = listener.track(new ByteArrayInputStream(new byte[100]));
+
+        content.mark(100);
+        ProgressPublisher.publishRequestBytesTransferred(listener, 60L);
+        content.reset();
+        assertEquals(0L, progress.getBytesTransferred());
+
+        ProgressPublisher.publishRequestBytesTransferred(listener, 100L);
+        assertEquals(100L, progress.getBytesTransferred());
+    }
+
+    @Test
+    void completedEventDoesNotFinishProgress() {
+
+        TransferProgress progress = new TransferProgress("get", BUCKET_NAME, OBJECT_NAME, -1L, 0L);
+        TransferProgressListener listener = new TransferProgressListener(progress);
+
+        ProgressPublisher.publishResponseContentLength(listener, 100L);
+        ProgressPublisher.publishResponseBytesTransferred(listener, 100L);
+        ProgressPublisher.publishProgress(listener, ProgressEventType.TRANSFER_COMPLETED_EVENT);
+
+        assertEquals(TransferProgress.State.RUNNING, progress.getState());
+        progress.fail();
+        assertEquals(TransferProgress.State.FAILED, progress.getState());
+    }
+
+    @Test
+    void bytesBeyondContentLengthAreIgnored() {
+
+        TransferProgress progress = new TransferProgress("put", BUCKET_NAME, OBJECT_NAME, -1L, 0L);
+        TransferProgressListener listener = new TransferProgressListener(progress);
+
+        ProgressPublisher.publishRequestContentLength(listener, 100L);
+        ProgressPublisher.publishRequestBytesTransferred(listener, 80L);
+        ProgressPublisher.publishRequestBytesTransferred(listener, 80L);
+
+        assertEquals(100L, progress.getBytesTransferred());
+        assertEquals(100, progress.getPercent());
+    }
+
+}